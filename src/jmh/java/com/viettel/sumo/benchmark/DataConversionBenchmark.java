@@ -0,0 +1,45 @@
+package com.viettel.sumo.benchmark;
+
+import com.viettel.sumo.config.WebsterConfig;
+import com.viettel.sumo.model.IntersectionConfiguration;
+import com.viettel.sumo.model.IntersectionPlan;
+import com.viettel.sumo.util.SumoDataConverter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of intersection configurations into Webster plans, done when a configuration is loaded.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataConversionBenchmark {
+    @Param({"1", "16", "256"})
+    private int intersections;
+
+    @Param({"2", "4", "8"})
+    private int stages;
+
+    private SumoDataConverter converter;
+    private List<IntersectionConfiguration> configs;
+
+    @Setup
+    public void setUp() {
+        converter = new SumoDataConverter(new WebsterConfig());
+        configs = SyntheticIntersections.configurations(intersections, stages);
+    }
+
+    @Benchmark
+    public void compilePlans(Blackhole blackhole) {
+        for (IntersectionConfiguration config : configs) {
+            IntersectionPlan plan = converter.compilePlan(config);
+            blackhole.consume(plan);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.viettel.sumo.benchmark;
+
+import com.viettel.sumo.config.WebsterConfig;
+import com.viettel.sumo.model.IntersectionConfiguration;
+import com.viettel.sumo.model.IntersectionPlan;
+import com.viettel.sumo.service.WebsterBatch;
+import com.viettel.sumo.util.FlowHistory;
+import com.viettel.sumo.util.SumoDataConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flow history maintenance of the control loop without the TraCI reads: recording one step of lane counts
+ * for every intersection, as SumoService.collectFlowData does, and averaging the windows into the
+ * Webster batch before an optimization.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FlowHistoryBenchmark {
+    private static final int COUNT_SAMPLES = 4096;
+
+    @Param({"16", "256"})
+    private int intersections;
+
+    @Param({"2", "8"})
+    private int stages;
+
+    @Param({"60", "900"})
+    private int window;
+
+    private FlowHistory[] histories;
+    private WebsterBatch batch;
+    private int[] counts;
+    private int step;
+
+    @Setup
+    public void setUp() {
+        SumoDataConverter converter = new SumoDataConverter(new WebsterConfig());
+        List<IntersectionPlan> plans = new ArrayList<>(intersections);
+        List<FlowHistory> historyList = new ArrayList<>(intersections);
+        for (IntersectionConfiguration config : SyntheticIntersections.configurations(intersections, stages)) {
+            plans.add(converter.compilePlan(config));
+            historyList.add(new FlowHistory(SyntheticIntersections.topology(config), window));
+        }
+        histories = historyList.toArray(new FlowHistory[0]);
+        batch = new WebsterBatch(plans, historyList);
+
+        SplittableRandom random = new SplittableRandom(42);
+        counts = new int[COUNT_SAMPLES];
+        for (int i = 0; i < COUNT_SAMPLES; i++) {
+            counts[i] = random.nextInt(12);
+        }
+        for (int s = 0; s < window; s++) {
+            recordStep();
+        }
+    }
+
+    @Benchmark
+    public void recordStep() {
+        int sample = step++;
+        for (FlowHistory history : histories) {
+            int laneCount = history.getTopology().getLaneCount();
+            for (int lane = 0; lane < laneCount; lane++) {
+                history.record(lane, counts[sample++ & (COUNT_SAMPLES - 1)]);
+            }
+            history.commit();
+        }
+    }
+
+    @Benchmark
+    public WebsterBatch loadFlows() {
+        batch.loadFlows();
+        return batch;
+    }
+}
@@ -0,0 +1,155 @@
+package com.viettel.sumo.benchmark;
+
+import com.viettel.sumo.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic intersections for the benchmarks, so no SUMO network or binary is needed.
+ * Stage s of an intersection serves the straight and left flows of approach "D{s}", each on its own lane,
+ * and maps onto the s-th green phase of a program with a yellow phase after every green phase.
+ */
+final class SyntheticIntersections {
+    private static final String[] ROUTES = {"straight", "left"};
+
+    private SyntheticIntersections() {
+    }
+
+    static List<IntersectionConfiguration> configurations(int intersections, int stages) {
+        List<IntersectionConfiguration> configs = new ArrayList<>(intersections);
+        for (int i = 0; i < intersections; i++) {
+            configs.add(configuration("J" + i, stages));
+        }
+        return configs;
+    }
+
+    static IntersectionConfiguration configuration(String sumoId, int stages) {
+        List<IntersectionConfiguration.StageConfig> stageConfigs = new ArrayList<>(stages);
+        List<IntersectionConfiguration.RoadConfig> roads = new ArrayList<>(stages);
+        for (int s = 0; s < stages; s++) {
+            String direction = "D" + s;
+
+            IntersectionConfiguration.StageConfig stage = new IntersectionConfiguration.StageConfig();
+            stage.setId((long) s + 1);
+            stage.setOldId("stage" + (s + 1));
+            stage.setPhaseIndex(s);
+            stage.setMinGreenTime(10);
+            stage.setMaxGreenTime(90);
+            stage.setYellow(3);
+            stage.setRedClear(2);
+            stage.setWeight(1.0);
+            List<IntersectionConfiguration.LampConfig> lamps = new ArrayList<>();
+            List<IntersectionConfiguration.FlowConfig> flows = new ArrayList<>();
+            for (int r = 0; r < ROUTES.length; r++) {
+                IntersectionConfiguration.LampConfig lamp = new IntersectionConfiguration.LampConfig();
+                lamp.setDirection(direction);
+                lamp.setRoute(ROUTES[r]);
+                lamps.add(lamp);
+
+                IntersectionConfiguration.FlowConfig flow = new IntersectionConfiguration.FlowConfig();
+                flow.setDirection(direction);
+                flow.setRoute(ROUTES[r]);
+                flow.setLane(sumoId + "_" + direction + "_" + r);
+                flows.add(flow);
+            }
+            stage.setLamps(lamps);
+            stageConfigs.add(stage);
+
+            IntersectionConfiguration.RoadConfig road = new IntersectionConfiguration.RoadConfig();
+            road.setDirection(direction);
+            road.setNumberOfLanes(ROUTES.length);
+            road.setFlows(flows);
+            roads.add(road);
+        }
+
+        IntersectionConfiguration config = new IntersectionConfiguration();
+        config.setSumoId(sumoId);
+        config.setIntersectionId(sumoId);
+        config.setSaturationVolume(1800.0);
+        config.setStages(stageConfigs);
+        config.setRoads(roads);
+        return config;
+    }
+
+    /**
+     * Topology matching {@link #configuration(String, int)}: one incoming lane and one link per flow.
+     */
+    static IntersectionTopology topology(IntersectionConfiguration config) {
+        List<String> lanes = new ArrayList<>();
+        for (IntersectionConfiguration.RoadConfig road : config.getRoads()) {
+            for (IntersectionConfiguration.FlowConfig flow : road.getFlows()) {
+                lanes.add(flow.getLane());
+            }
+        }
+        int[][] laneLinkIndices = new int[lanes.size()][];
+        for (int l = 0; l < lanes.size(); l++) {
+            laneLinkIndices[l] = new int[]{l};
+        }
+
+        int stages = config.getStages().size();
+        List<SignalPhase> phases = new ArrayList<>(2 * stages);
+        for (int s = 0; s < stages; s++) {
+            phases.add(new SignalPhase(30, state(lanes.size(), s, 'G'), 30, 30, new int[0], ""));
+            phases.add(new SignalPhase(3, state(lanes.size(), s, 'y'), 3, 3, new int[0], ""));
+        }
+        return new IntersectionTopology(config.getSumoId(), lanes, laneLinkIndices, lanes.size(),
+                new SignalProgram("0", 0, phases));
+    }
+
+    /**
+     * Webster input of a configuration with random flows of up to 600 vehicles per hour.
+     */
+    static WebsterInputDTO input(IntersectionConfiguration config, SplittableRandom random) {
+        List<StageDTO> stages = new ArrayList<>();
+        for (IntersectionConfiguration.StageConfig stageConfig : config.getStages()) {
+            StageDTO stage = new StageDTO();
+            stage.setId(stageConfig.getId());
+            stage.setOldId(stageConfig.getOldId());
+            stage.setWeight(stageConfig.getWeight());
+            stage.setMinGreenTime(stageConfig.getMinGreenTime());
+            stage.setMaxGreenTime(stageConfig.getMaxGreenTime());
+            stage.setYellow(stageConfig.getYellow());
+            stage.setRedClear(stageConfig.getRedClear());
+            for (IntersectionConfiguration.LampConfig lampConfig : stageConfig.getLamps()) {
+                LampDTO lamp = new LampDTO();
+                lamp.setDirection(lampConfig.getDirection());
+                lamp.setRoute(lampConfig.getRoute());
+                stage.getLamps().add(lamp);
+            }
+            stages.add(stage);
+        }
+
+        List<RoadDTO> roads = new ArrayList<>();
+        for (IntersectionConfiguration.RoadConfig roadConfig : config.getRoads()) {
+            RoadDTO road = new RoadDTO();
+            road.setDirection(roadConfig.getDirection());
+            road.setNumberOfLanes(roadConfig.getNumberOfLanes());
+            List<FlowDataDTO> flows = new ArrayList<>();
+            for (IntersectionConfiguration.FlowConfig flowConfig : roadConfig.getFlows()) {
+                FlowDataDTO flow = new FlowDataDTO();
+                flow.setDirection(flowConfig.getDirection());
+                flow.setRoute(flowConfig.getRoute());
+                flow.setFlowData(random.nextInt(600));
+                flows.add(flow);
+            }
+            road.setFlows(flows);
+            roads.add(road);
+        }
+
+        WebsterInputDTO input = new WebsterInputDTO();
+        input.setSaturationVolume(config.getSaturationVolume());
+        input.setStages(stages);
+        input.setRoads(roads);
+        return input;
+    }
+
+    private static String state(int links, int greenStage, char green) {
+        char[] state = new char[links];
+        for (int l = 0; l < links; l++) {
+            state[l] = l / ROUTES.length == greenStage ? green : 'r';
+        }
+        return new String(state);
+    }
+}
@@ -0,0 +1,84 @@
+package com.viettel.sumo.benchmark;
+
+import com.viettel.sumo.config.WebsterConfig;
+import com.viettel.sumo.model.IntersectionConfiguration;
+import com.viettel.sumo.model.IntersectionPlan;
+import com.viettel.sumo.model.WebsterInputDTO;
+import com.viettel.sumo.service.WebsterBatch;
+import com.viettel.sumo.service.WebsterService;
+import com.viettel.sumo.util.SumoDataConverter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One optimization over all intersections: through the DTO adapter, one call per intersection,
+ * and through the batch kernel the control loop uses, sequentially and split over the fork-join pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebsterBenchmark {
+    @Param({"1", "16", "256", "4096"})
+    private int intersections;
+
+    @Param({"2", "4", "8"})
+    private int stages;
+
+    private WebsterService websterService;
+    private WebsterService parallelWebsterService;
+    private List<WebsterInputDTO> inputs;
+    private WebsterBatch batch;
+
+    @Setup
+    public void setUp() {
+        WebsterConfig websterConfig = new WebsterConfig();
+        websterConfig.setParallelThreshold(0);
+        websterService = new WebsterService(websterConfig);
+        WebsterConfig parallelConfig = new WebsterConfig();
+        parallelConfig.setParallelThreshold(1);
+        parallelWebsterService = new WebsterService(parallelConfig);
+        SumoDataConverter converter = new SumoDataConverter(websterConfig);
+
+        SplittableRandom random = new SplittableRandom(42);
+        inputs = new ArrayList<>(intersections);
+        List<IntersectionPlan> plans = new ArrayList<>(intersections);
+        for (IntersectionConfiguration config : SyntheticIntersections.configurations(intersections, stages)) {
+            inputs.add(SyntheticIntersections.input(config, random));
+            plans.add(converter.compilePlan(config));
+        }
+
+        batch = new WebsterBatch(plans, null);
+        for (int i = 0; i < intersections; i++) {
+            for (int f = 0; f < plans.get(i).getFlowCount(); f++) {
+                batch.setFlow(i, f, random.nextInt(600));
+            }
+        }
+    }
+
+    @Benchmark
+    public void calculateWebster(Blackhole blackhole) {
+        for (WebsterInputDTO input : inputs) {
+            blackhole.consume(websterService.calculateWebster(input));
+        }
+    }
+
+    @Benchmark
+    public double calculateBatch() {
+        websterService.calculateBatch(batch);
+        return batch.getCycle(intersections - 1);
+    }
+
+    @Benchmark
+    public double calculateBatchParallel() {
+        parallelWebsterService.calculateBatch(batch);
+        return batch.getCycle(intersections - 1);
+    }
+}
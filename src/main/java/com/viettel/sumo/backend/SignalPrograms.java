@@ -0,0 +1,45 @@
+package com.viettel.sumo.backend;
+
+import com.viettel.sumo.model.SignalPhase;
+import com.viettel.sumo.model.SignalProgram;
+import org.eclipse.sumo.libtraci.IntVector;
+import org.eclipse.sumo.libtraci.TraCILogic;
+import org.eclipse.sumo.libtraci.TraCIPhase;
+import org.eclipse.sumo.libtraci.TraCIPhaseVector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conversion between libtraci program logics and the cached {@link SignalProgram} model.
+ */
+final class SignalPrograms {
+    private SignalPrograms() {
+    }
+
+    static SignalProgram fromLogic(TraCILogic logic) {
+        List<SignalPhase> phases = new ArrayList<>();
+        for (TraCIPhase phase : logic.getPhases()) {
+            IntVector next = phase.getNext();
+            int[] nextPhases = new int[next.size()];
+            for (int i = 0; i < nextPhases.length; i++) {
+                nextPhases[i] = next.get(i);
+            }
+            phases.add(new SignalPhase(phase.getDuration(), phase.getState(), phase.getMinDur(), phase.getMaxDur(),
+                    nextPhases, phase.getName()));
+        }
+        return new SignalProgram(logic.getProgramID(), logic.getType(), phases);
+    }
+
+    /**
+     * @param currentPhaseIndex phase the light continues in once the logic is installed
+     */
+    static TraCILogic toLogic(SignalProgram program, int currentPhaseIndex) {
+        TraCIPhaseVector phases = new TraCIPhaseVector();
+        for (SignalPhase phase : program.getPhases()) {
+            phases.add(new TraCIPhase(phase.duration(), phase.state(), phase.minDuration(), phase.maxDuration(),
+                    new IntVector(phase.next()), phase.name()));
+        }
+        return new TraCILogic(program.getProgramId(), program.getType(), currentPhaseIndex, phases);
+    }
+}
@@ -0,0 +1,173 @@
+package com.viettel.sumo.backend;
+
+import com.viettel.sumo.model.SignalProgram;
+import com.viettel.sumo.model.SignalProgramPosition;
+import com.viettel.sumo.model.TraciCommand;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * The simulator operations the services use, for one simulation session.
+ * Calls other than {@link #start} and {@link #close} must be made inside {@link #run} or {@link #call}, which
+ * serialise them against the other users of the simulator; a group of calls in one {@code run} is not
+ * interleaved with calls of other threads.
+ */
+public interface SimulationBackend {
+
+    /**
+     * Launch the simulation.
+     * @param configPath scenario configuration, ignored by backends without scenarios
+     */
+    void start(String configPath, boolean guiMode, double stepLength);
+
+    void close();
+
+    default void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    <T> T call(Supplier<T> action);
+
+    /**
+     * Report every TraCI round trip of this backend to the counter. Backends without a simulator process have
+     * no round trips to report.
+     */
+    default void setCallCounter(ObjIntConsumer<TraciCommand> callCounter) {
+    }
+
+    /**
+     * Advance the simulation by one step and fetch the step statistics.
+     */
+    void step();
+
+    double getTime();
+
+    /**
+     * Write the complete simulator state (vehicles, signal positions, time) to a file.
+     * @throws UnsupportedOperationException if the backend cannot save its state
+     */
+    void saveState(String file);
+
+    /**
+     * Replace the simulator state by one written with {@link #saveState}; the simulation continues at the
+     * time of the state.
+     * @throws UnsupportedOperationException if the backend cannot load a state
+     */
+    void loadState(String file);
+
+    int getMinExpectedNumber();
+
+    /**
+     * @return vehicles that arrived during the last step
+     */
+    int getArrivedNumber();
+
+    /**
+     * @return vehicles that started teleporting during the last step
+     */
+    int getTeleportStartingNumber();
+
+    List<String> getTrafficLightIds();
+
+    /**
+     * @return the incoming lane of every controlled link of the light, by link index; a link index can be
+     * served by several lanes
+     */
+    List<List<String>> getControlledLinkLanes(String tlID);
+
+    /**
+     * @return all programs installed for the light
+     */
+    List<SignalProgram> getPrograms(String tlID);
+
+    String getProgram(String tlID);
+
+    int getPhase(String tlID);
+
+    void setProgram(String tlID, String programId);
+
+    void setPhase(String tlID, int phaseIndex);
+
+    /**
+     * Install or replace a program of the light.
+     * @param currentPhaseIndex phase the light continues in if the program is the active one
+     */
+    void setProgramLogic(String tlID, SignalProgram program, int currentPhaseIndex);
+
+    /**
+     * Subscribe to the active program and phase of the lights, read with {@link #getProgramPositions()}.
+     */
+    void subscribeProgramPositions(Collection<String> tlIDs);
+
+    /**
+     * @return the active program and phase of the subscribed lights as of the last step
+     */
+    Map<String, SignalProgramPosition> getProgramPositions();
+
+    /**
+     * @return the subscribed phase of the light as of the last step, or -1 if there is no result for the light
+     */
+    int getSubscribedPhase(String tlID);
+
+    /**
+     * Subscribe to the vehicle and halting counts and the mean speed of the lanes, read with the getSubscribed*
+     * methods.
+     */
+    void subscribeLanes(Collection<String> lanes);
+
+    /**
+     * Subscribe to the vehicles on the induction loops, read with {@link #getSubscribedLoopEntries}.
+     */
+    void subscribeInductionLoops(Collection<String> loopIDs);
+
+    /**
+     * Fetch the subscribed lane and induction loop results of the last step.
+     */
+    void fetchSubscriptions();
+
+    /**
+     * @return the subscribed vehicle count of the lane, or -1 if there is no result for the lane
+     */
+    int getSubscribedVehicleNumber(String lane);
+
+    int getSubscribedHaltingNumber(String lane);
+
+    /**
+     * @return the subscribed mean speed of the vehicles on the lane in m/s, or -1 if there is no result for the lane
+     */
+    double getSubscribedMeanSpeed(String lane);
+
+    int getLaneVehicleNumber(String lane);
+
+    int getLaneHaltingNumber(String lane);
+
+    double getLaneMeanSpeed(String lane);
+
+    /**
+     * @return the length of the lane in meters
+     */
+    double getLaneLength(String lane);
+
+    /**
+     * @return the lane of every induction loop of the network, by loop id
+     */
+    Map<String, String> getInductionLoopLanes();
+
+    /**
+     * @return the vehicles that reached the subscribed loop during the last step, each counted once however many
+     * steps it occupies the loop; -1 if there is no result for the loop
+     */
+    int getSubscribedLoopEntries(String loopID);
+
+    /**
+     * Polling counterpart of {@link #getSubscribedLoopEntries}.
+     */
+    int getInductionLoopEntries(String loopID);
+}
@@ -0,0 +1,23 @@
+package com.viettel.sumo.backend;
+
+import com.viettel.sumo.config.SyntheticConfig;
+import com.viettel.sumo.model.SimulationBackendType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class SimulationBackendFactory {
+    private final TraciConnections traciConnections;
+    private final SyntheticConfig syntheticConfig;
+
+    /**
+     * @param label connection label of the session
+     */
+    public SimulationBackend create(SimulationBackendType type, String label) {
+        return switch (type) {
+            case TRACI -> new TraciSimulationBackend(label, traciConnections);
+            case SYNTHETIC -> new SyntheticSimulationBackend(syntheticConfig);
+        };
+    }
+}
@@ -0,0 +1,498 @@
+package com.viettel.sumo.backend;
+
+import com.viettel.sumo.config.SyntheticConfig;
+import com.viettel.sumo.model.IntersectionConfiguration;
+import com.viettel.sumo.model.SignalPhase;
+import com.viettel.sumo.model.SignalProgram;
+import com.viettel.sumo.model.SignalProgramPosition;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * In-memory stand-in for SUMO: a set of independent intersections with one single-lane approach per stage.
+ * <p>
+ * Every lane receives Poisson arrivals around its own base rate, modulated by a sinusoidal demand profile, and
+ * discharges its queue at the saturation flow while its link shows green (or the light is off). Lights run
+ * their active program phase by phase like SUMO, so green times written by the optimization change the
+ * queues. Intersection "S{i}" has lanes "S{i}_A{a}_0", each with an induction loop "e1_S{i}_A{a}" at the stop
+ * line counting the departing vehicles, and a program with a green and a yellow phase per approach;
+ * {@link #intersectionConfigurations(SyntheticConfig)} describes the same layout for the Webster optimization.
+ * <p>
+ * State is kept in primitive arrays so a step over thousands of intersections stays cheap and the cost of the
+ * control loop itself can be profiled.
+ */
+public class SyntheticSimulationBackend implements SimulationBackend {
+    private static final String PROGRAM_ID = "0";
+    private static final double LANE_LENGTH = 100;
+
+    private final SyntheticConfig config;
+    private final int approaches;
+
+    private List<String> trafficLightIds = List.of();
+    private Map<String, Integer> lightIndices = Map.of();
+    private Map<String, Integer> laneIndices = Map.of();
+    private Map<String, Integer> loopIndices = Map.of();
+    private List<Map<String, SignalProgram>> programs = List.of();
+    private SignalProgram[] activePrograms;
+    private int[] phases;
+    private double[] phaseRemaining;
+    private Set<String> positionSubscriptions = Set.of();
+
+    private double[] laneRates;
+    private int[] queues;
+    private double[] dischargeCredits;
+    private int[] laneVehicles;
+    private int[] laneHalting;
+    private int[] laneDeparted;
+
+    private SplittableRandom random;
+    private double stepLength;
+    private double time;
+    private int arrivedNumber;
+
+    public SyntheticSimulationBackend(SyntheticConfig config) {
+        this.config = config;
+        this.approaches = config.getApproaches();
+    }
+
+    /**
+     * Intersection configurations of the synthetic network: stage a of "S{i}" serves approach "A{a}" and maps
+     * onto the a-th green phase of the program.
+     */
+    public static Map<String, IntersectionConfiguration> intersectionConfigurations(SyntheticConfig config) {
+        Map<String, IntersectionConfiguration> configs = new LinkedHashMap<>();
+        for (int i = 0; i < config.getIntersections(); i++) {
+            String sumoId = lightId(i);
+            List<IntersectionConfiguration.StageConfig> stages = new ArrayList<>();
+            List<IntersectionConfiguration.RoadConfig> roads = new ArrayList<>();
+            for (int a = 0; a < config.getApproaches(); a++) {
+                String direction = "A" + a;
+
+                IntersectionConfiguration.LampConfig lamp = new IntersectionConfiguration.LampConfig();
+                lamp.setDirection(direction);
+                lamp.setRoute("straight");
+                IntersectionConfiguration.StageConfig stage = new IntersectionConfiguration.StageConfig();
+                stage.setId((long) a + 1);
+                stage.setOldId("stage" + (a + 1));
+                stage.setPhaseIndex(a);
+                stage.setMinGreenTime(10);
+                stage.setMaxGreenTime(90);
+                stage.setYellow(config.getYellowTime());
+                stage.setRedClear(0);
+                stage.setWeight(1.0);
+                stage.setLamps(List.of(lamp));
+                stages.add(stage);
+
+                IntersectionConfiguration.FlowConfig flow = new IntersectionConfiguration.FlowConfig();
+                flow.setDirection(direction);
+                flow.setRoute("straight");
+                flow.setLane(laneId(i, a));
+                IntersectionConfiguration.RoadConfig road = new IntersectionConfiguration.RoadConfig();
+                road.setDirection(direction);
+                road.setNumberOfLanes(1);
+                road.setFlows(List.of(flow));
+                roads.add(road);
+            }
+
+            IntersectionConfiguration intersection = new IntersectionConfiguration();
+            intersection.setSumoId(sumoId);
+            intersection.setIntersectionId(sumoId);
+            intersection.setSaturationVolume(config.getSaturationFlow());
+            intersection.setStages(stages);
+            intersection.setRoads(roads);
+            configs.put(sumoId, intersection);
+        }
+        return configs;
+    }
+
+    @Override
+    public synchronized void start(String configPath, boolean guiMode, double stepLength) {
+        int lights = config.getIntersections();
+        int lanes = lights * approaches;
+        this.stepLength = stepLength;
+        this.time = 0;
+        this.random = new SplittableRandom(config.getSeed());
+
+        List<String> ids = new ArrayList<>(lights);
+        Map<String, Integer> lightIndexMap = new HashMap<>();
+        Map<String, Integer> laneIndexMap = new HashMap<>();
+        Map<String, Integer> loopIndexMap = new HashMap<>();
+        List<Map<String, SignalProgram>> programMaps = new ArrayList<>(lights);
+        activePrograms = new SignalProgram[lights];
+        phases = new int[lights];
+        phaseRemaining = new double[lights];
+        SignalProgram initialProgram = initialProgram();
+        for (int i = 0; i < lights; i++) {
+            ids.add(lightId(i));
+            lightIndexMap.put(lightId(i), i);
+            for (int a = 0; a < approaches; a++) {
+                laneIndexMap.put(laneId(i, a), i * approaches + a);
+                loopIndexMap.put(loopId(i, a), i * approaches + a);
+            }
+            Map<String, SignalProgram> lightPrograms = new HashMap<>();
+            lightPrograms.put(PROGRAM_ID, initialProgram);
+            programMaps.add(lightPrograms);
+            activePrograms[i] = initialProgram;
+            // Offset the lights so they do not all switch in the same step
+            phases[i] = random.nextInt(initialProgram.getPhaseCount());
+            phaseRemaining[i] = 1 + random.nextInt((int) initialProgram.getPhases().get(phases[i]).duration());
+        }
+        trafficLightIds = List.copyOf(ids);
+        lightIndices = Map.copyOf(lightIndexMap);
+        laneIndices = Map.copyOf(laneIndexMap);
+        loopIndices = Map.copyOf(loopIndexMap);
+        programs = programMaps;
+        positionSubscriptions = Set.of();
+
+        laneRates = new double[lanes];
+        queues = new int[lanes];
+        dischargeCredits = new double[lanes];
+        laneVehicles = new int[lanes];
+        laneHalting = new int[lanes];
+        laneDeparted = new int[lanes];
+        for (int l = 0; l < lanes; l++) {
+            // Spread the base rates so every intersection has a critical approach
+            laneRates[l] = config.getArrivalRate() * (0.5 + random.nextDouble());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        trafficLightIds = List.of();
+        activePrograms = null;
+    }
+
+    @Override
+    public synchronized <T> T call(Supplier<T> action) {
+        return action.get();
+    }
+
+    @Override
+    public void step() {
+        double demand = 1 + config.getDemandAmplitude() * Math.sin(2 * Math.PI * time / config.getDemandPeriod());
+        double dischargePerStep = config.getSaturationFlow() * stepLength / 3600;
+        int arrived = 0;
+
+        for (int i = 0; i < activePrograms.length; i++) {
+            advancePhase(i);
+            String state = activePrograms[i].getPhases().get(phases[i]).state();
+
+            for (int a = 0; a < approaches; a++) {
+                int lane = i * approaches + a;
+                int queue = queues[lane] + poisson(laneRates[lane] * demand * stepLength / 3600);
+
+                int departed = 0;
+                if (a < state.length() && isServed(state.charAt(a))) {
+                    dischargeCredits[lane] += dischargePerStep;
+                    departed = Math.min(queue, (int) dischargeCredits[lane]);
+                    dischargeCredits[lane] -= departed;
+                    if (queue == departed) {
+                        // An empty lane cannot bank unused green
+                        dischargeCredits[lane] = Math.min(dischargeCredits[lane], 1);
+                    }
+                } else {
+                    dischargeCredits[lane] = 0;
+                }
+
+                queues[lane] = queue - departed;
+                laneVehicles[lane] = queue;
+                laneHalting[lane] = queue - departed;
+                laneDeparted[lane] = departed;
+                arrived += departed;
+            }
+        }
+
+        arrivedNumber = arrived;
+        time += stepLength;
+    }
+
+    @Override
+    public double getTime() {
+        return time;
+    }
+
+    @Override
+    public void saveState(String file) {
+        throw new UnsupportedOperationException("Synthetic simulations have no state snapshots");
+    }
+
+    @Override
+    public void loadState(String file) {
+        throw new UnsupportedOperationException("Synthetic simulations have no state snapshots");
+    }
+
+    @Override
+    public int getMinExpectedNumber() {
+        int vehicles = 0;
+        for (int queue : queues) {
+            vehicles += queue;
+        }
+        return vehicles;
+    }
+
+    @Override
+    public int getArrivedNumber() {
+        return arrivedNumber;
+    }
+
+    @Override
+    public int getTeleportStartingNumber() {
+        return 0;
+    }
+
+    @Override
+    public List<String> getTrafficLightIds() {
+        return trafficLightIds;
+    }
+
+    @Override
+    public List<List<String>> getControlledLinkLanes(String tlID) {
+        int light = lightIndex(tlID);
+        List<List<String>> links = new ArrayList<>(approaches);
+        for (int a = 0; a < approaches; a++) {
+            links.add(List.of(laneId(light, a)));
+        }
+        return links;
+    }
+
+    @Override
+    public List<SignalProgram> getPrograms(String tlID) {
+        return List.copyOf(programs.get(lightIndex(tlID)).values());
+    }
+
+    @Override
+    public String getProgram(String tlID) {
+        return activePrograms[lightIndex(tlID)].getProgramId();
+    }
+
+    @Override
+    public int getPhase(String tlID) {
+        return phases[lightIndex(tlID)];
+    }
+
+    @Override
+    public void setProgram(String tlID, String programId) {
+        int light = lightIndex(tlID);
+        SignalProgram program = programs.get(light).get(programId);
+        if (program == null) {
+            throw new IllegalArgumentException("Traffic light " + tlID + " has no program " + programId);
+        }
+        activePrograms[light] = program;
+        switchPhase(light, 0);
+    }
+
+    @Override
+    public void setPhase(String tlID, int phaseIndex) {
+        int light = lightIndex(tlID);
+        if (phaseIndex < 0 || phaseIndex >= activePrograms[light].getPhaseCount()) {
+            throw new IllegalArgumentException("Traffic light " + tlID + " has no phase " + phaseIndex);
+        }
+        switchPhase(light, phaseIndex);
+    }
+
+    @Override
+    public void setProgramLogic(String tlID, SignalProgram program, int currentPhaseIndex) {
+        int light = lightIndex(tlID);
+        programs.get(light).put(program.getProgramId(), program);
+        if (activePrograms[light].getProgramId().equals(program.getProgramId())) {
+            activePrograms[light] = program;
+            int phase = Math.min(currentPhaseIndex, program.getPhaseCount() - 1);
+            if (phase != phases[light]) {
+                switchPhase(light, phase);
+            } else {
+                phaseRemaining[light] = Math.min(phaseRemaining[light], program.getPhases().get(phase).duration());
+            }
+        }
+    }
+
+    @Override
+    public void subscribeProgramPositions(Collection<String> tlIDs) {
+        positionSubscriptions = Set.copyOf(tlIDs);
+    }
+
+    @Override
+    public Map<String, SignalProgramPosition> getProgramPositions() {
+        Map<String, SignalProgramPosition> positions = new HashMap<>();
+        for (String tlID : positionSubscriptions) {
+            int light = lightIndex(tlID);
+            positions.put(tlID, new SignalProgramPosition(activePrograms[light].getProgramId(), phases[light]));
+        }
+        return positions;
+    }
+
+    @Override
+    public int getSubscribedPhase(String tlID) {
+        return positionSubscriptions.contains(tlID) ? phases[lightIndex(tlID)] : -1;
+    }
+
+    @Override
+    public void subscribeLanes(Collection<String> lanes) {
+        // Every lane is always available
+    }
+
+    @Override
+    public void subscribeInductionLoops(Collection<String> loopIDs) {
+        // Every loop is always available
+    }
+
+    @Override
+    public void fetchSubscriptions() {
+        // Counts are read straight from the model
+    }
+
+    @Override
+    public int getSubscribedVehicleNumber(String lane) {
+        Integer index = laneIndices.get(lane);
+        return index != null ? laneVehicles[index] : -1;
+    }
+
+    @Override
+    public int getSubscribedHaltingNumber(String lane) {
+        Integer index = laneIndices.get(lane);
+        return index != null ? laneHalting[index] : -1;
+    }
+
+    @Override
+    public double getSubscribedMeanSpeed(String lane) {
+        Integer index = laneIndices.get(lane);
+        return index != null ? meanSpeed(index) : -1;
+    }
+
+    @Override
+    public int getLaneVehicleNumber(String lane) {
+        return laneVehicles[laneIndex(lane)];
+    }
+
+    @Override
+    public int getLaneHaltingNumber(String lane) {
+        return laneHalting[laneIndex(lane)];
+    }
+
+    @Override
+    public double getLaneMeanSpeed(String lane) {
+        return meanSpeed(laneIndex(lane));
+    }
+
+    @Override
+    public double getLaneLength(String lane) {
+        laneIndex(lane);
+        return LANE_LENGTH;
+    }
+
+    /**
+     * Queues have no positions, so the mean speed is the one at which the vehicles on the lane would cover its
+     * length in the time the departed ones took: the flow estimate vehicles * speed * step / length then yields
+     * the departures.
+     */
+    private double meanSpeed(int lane) {
+        return laneVehicles[lane] > 0 ? laneDeparted[lane] * LANE_LENGTH / (laneVehicles[lane] * stepLength) : 0;
+    }
+
+    @Override
+    public Map<String, String> getInductionLoopLanes() {
+        Map<String, String> lanes = new HashMap<>();
+        for (int i = 0; i < trafficLightIds.size(); i++) {
+            for (int a = 0; a < approaches; a++) {
+                lanes.put(loopId(i, a), laneId(i, a));
+            }
+        }
+        return lanes;
+    }
+
+    @Override
+    public int getSubscribedLoopEntries(String loopID) {
+        Integer index = loopIndices.get(loopID);
+        return index != null ? laneDeparted[index] : -1;
+    }
+
+    @Override
+    public int getInductionLoopEntries(String loopID) {
+        Integer index = loopIndices.get(loopID);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown induction loop " + loopID);
+        }
+        return laneDeparted[index];
+    }
+
+    private SignalProgram initialProgram() {
+        List<SignalPhase> programPhases = new ArrayList<>(2 * approaches);
+        for (int a = 0; a < approaches; a++) {
+            char[] green = new char[approaches];
+            Arrays.fill(green, 'r');
+            green[a] = 'G';
+            char[] yellow = green.clone();
+            yellow[a] = 'y';
+            programPhases.add(phase(config.getGreenTime(), new String(green)));
+            programPhases.add(phase(config.getYellowTime(), new String(yellow)));
+        }
+        return new SignalProgram(PROGRAM_ID, 0, programPhases);
+    }
+
+    private void advancePhase(int light) {
+        phaseRemaining[light] -= stepLength;
+        if (phaseRemaining[light] <= 0) {
+            int next = (phases[light] + 1) % activePrograms[light].getPhaseCount();
+            phases[light] = next;
+            phaseRemaining[light] += activePrograms[light].getPhases().get(next).duration();
+        }
+    }
+
+    private void switchPhase(int light, int phase) {
+        phases[light] = phase;
+        phaseRemaining[light] = activePrograms[light].getPhases().get(phase).duration();
+    }
+
+    /**
+     * Knuth's method, fine for the small means of one step of one lane.
+     */
+    private int poisson(double mean) {
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+
+    private static boolean isServed(char signal) {
+        return signal == 'G' || signal == 'g' || signal == 'O' || signal == 'o';
+    }
+
+    private int lightIndex(String tlID) {
+        Integer index = lightIndices.get(tlID);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown traffic light " + tlID);
+        }
+        return index;
+    }
+
+    private int laneIndex(String lane) {
+        Integer index = laneIndices.get(lane);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown lane " + lane);
+        }
+        return index;
+    }
+
+    private static String lightId(int light) {
+        return "S" + light;
+    }
+
+    private static String laneId(int light, int approach) {
+        return "S" + light + "_A" + approach + "_0";
+    }
+
+    /**
+     * @return the id of the induction loop at the stop line of a lane
+     */
+    public static String loopId(int light, int approach) {
+        return "e1_S" + light + "_A" + approach;
+    }
+
+    private static SignalPhase phase(double duration, String state) {
+        return new SignalPhase(duration, state, duration, duration, new int[0], "");
+    }
+}
@@ -0,0 +1,82 @@
+package com.viettel.sumo.backend;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.sumo.libtraci.Simulation;
+import org.eclipse.sumo.libtraci.StringVector;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serialises access to libtraci across simulations.
+ * libtraci keeps the active connection in process-wide state, so every interaction with a simulation
+ * selects that simulation's connection label first and must not interleave with calls for another label.
+ * Work that does not talk to SUMO (flow aggregation, Webster) runs outside the lock and in parallel.
+ * <p>
+ * This limits throughput. A TraCI call, including {@code Simulation.step}, blocks until SUMO answers, and the
+ * Java binding cannot address a connection other than the active one. The lock therefore spans the whole call,
+ * not just the connection switch, and only one SUMO process of this JVM computes a step at a time. N SUMO
+ * sessions whose steps are dominated by SUMO each advance at roughly 1/N of the rate of a single session. Only
+ * their Java-side work overlaps, and synthetic sessions do not take the lock. To step SUMO runs truly in
+ * parallel, run them in separate JVMs, as sweeps do with their worker processes.
+ * The native library is loaded when the first simulation starts, so the application also runs without it
+ * when only other backends are used.
+ */
+@Component
+@Slf4j
+public class TraciConnections {
+    private static final int START_RETRIES = 60;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private String activeLabel;
+    private boolean libraryLoaded;
+
+    /**
+     * Launch SUMO and open a connection under the given label on a free port.
+     */
+    public void start(String label, StringVector sumoCmd) {
+        lock.lock();
+        try {
+            if (!libraryLoaded) {
+                System.loadLibrary("libtracijni");
+                libraryLoaded = true;
+                log.info("Loaded libtracijni successfully");
+            }
+            Simulation.start(sumoCmd, -1, START_RETRIES, label);
+            activeLabel = label;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close the connection with the given label and shut down its SUMO process.
+     */
+    public void close(String label) {
+        run(label, () -> {
+            Simulation.close();
+            activeLabel = null;
+        });
+    }
+
+    public void run(String label, Runnable action) {
+        call(label, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T call(String label, Supplier<T> action) {
+        lock.lock();
+        try {
+            if (!label.equals(activeLabel)) {
+                Simulation.switchConnection(label);
+                activeLabel = label;
+            }
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
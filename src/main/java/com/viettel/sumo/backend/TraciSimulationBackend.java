@@ -0,0 +1,355 @@
+package com.viettel.sumo.backend;
+
+import com.viettel.sumo.model.SignalProgram;
+import com.viettel.sumo.model.SignalProgramPosition;
+import com.viettel.sumo.model.TraciCommand;
+import org.eclipse.sumo.libtraci.*;
+
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Backend driving a SUMO process through libtraci under the connection label of its session.
+ * Every libtraci call that goes to SUMO is counted where it is made; subscription results are read from the
+ * libtraci cache filled by the step and are not counted.
+ */
+public class TraciSimulationBackend implements SimulationBackend {
+    private final String label;
+    private final TraciConnections traciConnections;
+    private ObjIntConsumer<TraciCommand> callCounter = (command, calls) -> {
+    };
+
+    private int arrivedNumber;
+    private int teleportStartingNumber;
+    private SubscriptionResults laneResults;
+    private SubscriptionResults loopResults;
+    private SubscriptionResults lightResults; // fetched on first use after a step
+    /**
+     * Vehicles on each read induction loop in the previous step, to count every vehicle once
+     */
+    private final Map<String, LoopVehicles> loopVehicles = new HashMap<>();
+
+    public TraciSimulationBackend(String label, TraciConnections traciConnections) {
+        this.label = label;
+        this.traciConnections = traciConnections;
+    }
+
+    @Override
+    public void start(String configPath, boolean guiMode, double stepLength) {
+        traciConnections.start(label, new StringVector(new String[]{
+                guiMode ? "sumo-gui" : "sumo",
+                "-c", configPath,
+                "--step-length", String.valueOf(stepLength),
+                "--start"
+        }));
+        run(() -> {
+            Simulation.subscribe(new IntVector(new int[]{
+                    Constants.VAR_ARRIVED_VEHICLES_NUMBER,
+                    Constants.VAR_TELEPORT_STARTING_VEHICLES_NUMBER
+            }));
+            count(TraciCommand.SUBSCRIBE, 1);
+        });
+    }
+
+    @Override
+    public void close() {
+        traciConnections.close(label);
+        laneResults = null;
+        loopResults = null;
+        lightResults = null;
+        loopVehicles.clear();
+    }
+
+    @Override
+    public <T> T call(Supplier<T> action) {
+        return traciConnections.call(label, action);
+    }
+
+    @Override
+    public void setCallCounter(ObjIntConsumer<TraciCommand> callCounter) {
+        this.callCounter = callCounter;
+    }
+
+    @Override
+    public void step() {
+        Simulation.step();
+        count(TraciCommand.SIMULATION_STEP, 1);
+        lightResults = null;
+        TraCIResults stepResults = Simulation.getSubscriptionResults();
+        arrivedNumber = TraCIInt.cast(stepResults.get(Constants.VAR_ARRIVED_VEHICLES_NUMBER)).getValue();
+        teleportStartingNumber = TraCIInt.cast(
+                stepResults.get(Constants.VAR_TELEPORT_STARTING_VEHICLES_NUMBER)).getValue();
+    }
+
+    @Override
+    public double getTime() {
+        count(TraciCommand.SIMULATION_READ, 1);
+        return Simulation.getTime();
+    }
+
+    @Override
+    public void saveState(String file) {
+        Simulation.saveState(file);
+        count(TraciCommand.SIMULATION_WRITE, 1);
+    }
+
+    @Override
+    public void loadState(String file) {
+        Simulation.loadState(file);
+        count(TraciCommand.SIMULATION_WRITE, 1);
+        lightResults = null;
+        // The vehicles seen on the loops belong to the replaced state
+        loopVehicles.clear();
+    }
+
+    @Override
+    public int getMinExpectedNumber() {
+        count(TraciCommand.SIMULATION_READ, 1);
+        return Simulation.getMinExpectedNumber();
+    }
+
+    @Override
+    public int getArrivedNumber() {
+        return arrivedNumber;
+    }
+
+    @Override
+    public int getTeleportStartingNumber() {
+        return teleportStartingNumber;
+    }
+
+    @Override
+    public List<String> getTrafficLightIds() {
+        count(TraciCommand.TRAFFIC_LIGHT_READ, 1);
+        return new ArrayList<>(TrafficLight.getIDList());
+    }
+
+    @Override
+    public List<List<String>> getControlledLinkLanes(String tlID) {
+        TraCILinkVectorVector controlledLinks = TrafficLight.getControlledLinks(tlID);
+        count(TraciCommand.TRAFFIC_LIGHT_READ, 1);
+        List<List<String>> lanes = new ArrayList<>(controlledLinks.size());
+        for (TraCILinkVector links : controlledLinks) {
+            List<String> linkLanes = new ArrayList<>(links.size());
+            for (TraCILink link : links) {
+                linkLanes.add(link.getFromLane());
+            }
+            lanes.add(linkLanes);
+        }
+        return lanes;
+    }
+
+    @Override
+    public List<SignalProgram> getPrograms(String tlID) {
+        List<SignalProgram> programs = new ArrayList<>();
+        count(TraciCommand.TRAFFIC_LIGHT_READ, 1);
+        for (TraCILogic logic : TrafficLight.getCompleteRedYellowGreenDefinition(tlID)) {
+            programs.add(SignalPrograms.fromLogic(logic));
+        }
+        return programs;
+    }
+
+    @Override
+    public String getProgram(String tlID) {
+        count(TraciCommand.TRAFFIC_LIGHT_READ, 1);
+        return TrafficLight.getProgram(tlID);
+    }
+
+    @Override
+    public int getPhase(String tlID) {
+        count(TraciCommand.TRAFFIC_LIGHT_READ, 1);
+        return TrafficLight.getPhase(tlID);
+    }
+
+    @Override
+    public void setProgram(String tlID, String programId) {
+        TrafficLight.setProgram(tlID, programId);
+        count(TraciCommand.TRAFFIC_LIGHT_WRITE, 1);
+    }
+
+    @Override
+    public void setPhase(String tlID, int phaseIndex) {
+        TrafficLight.setPhase(tlID, phaseIndex);
+        count(TraciCommand.TRAFFIC_LIGHT_WRITE, 1);
+    }
+
+    @Override
+    public void setProgramLogic(String tlID, SignalProgram program, int currentPhaseIndex) {
+        TrafficLight.setProgramLogic(tlID, SignalPrograms.toLogic(program, currentPhaseIndex));
+        count(TraciCommand.TRAFFIC_LIGHT_WRITE, 1);
+    }
+
+    @Override
+    public void subscribeProgramPositions(Collection<String> tlIDs) {
+        IntVector programSubscriptionVars = new IntVector(new int[]{
+                Constants.TL_CURRENT_PROGRAM,
+                Constants.TL_CURRENT_PHASE
+        });
+        for (String tlID : tlIDs) {
+            TrafficLight.subscribe(tlID, programSubscriptionVars);
+            count(TraciCommand.SUBSCRIBE, 1);
+        }
+    }
+
+    @Override
+    public Map<String, SignalProgramPosition> getProgramPositions() {
+        Map<String, SignalProgramPosition> positions = new HashMap<>();
+        SubscriptionResults results = TrafficLight.getAllSubscriptionResults();
+        for (Map.Entry<String, TraCIResults> entry : results.entrySet()) {
+            TraCIResults values = entry.getValue();
+            positions.put(entry.getKey(), new SignalProgramPosition(
+                    TraCIString.cast(values.get(Constants.TL_CURRENT_PROGRAM)).getValue(),
+                    TraCIInt.cast(values.get(Constants.TL_CURRENT_PHASE)).getValue()));
+        }
+        return positions;
+    }
+
+    @Override
+    public int getSubscribedPhase(String tlID) {
+        if (lightResults == null) {
+            lightResults = TrafficLight.getAllSubscriptionResults();
+        }
+        TraCIResults results = lightResults.get(tlID);
+        return results != null ? TraCIInt.cast(results.get(Constants.TL_CURRENT_PHASE)).getValue() : -1;
+    }
+
+    @Override
+    public void subscribeLanes(Collection<String> lanes) {
+        IntVector laneSubscriptionVars = new IntVector(new int[]{
+                Constants.LAST_STEP_VEHICLE_NUMBER,
+                Constants.LAST_STEP_VEHICLE_HALTING_NUMBER,
+                Constants.LAST_STEP_MEAN_SPEED
+        });
+        for (String lane : lanes) {
+            Lane.subscribe(lane, laneSubscriptionVars);
+            count(TraciCommand.SUBSCRIBE, 1);
+        }
+    }
+
+    @Override
+    public void subscribeInductionLoops(Collection<String> loopIDs) {
+        IntVector loopSubscriptionVars = new IntVector(new int[]{Constants.LAST_STEP_VEHICLE_ID_LIST});
+        for (String loopID : loopIDs) {
+            InductionLoop.subscribe(loopID, loopSubscriptionVars);
+            count(TraciCommand.SUBSCRIBE, 1);
+        }
+    }
+
+    @Override
+    public void fetchSubscriptions() {
+        laneResults = Lane.getAllSubscriptionResults();
+        loopResults = InductionLoop.getAllSubscriptionResults();
+    }
+
+    @Override
+    public int getSubscribedVehicleNumber(String lane) {
+        TraCIResults results = laneResults != null ? laneResults.get(lane) : null;
+        return results != null ? TraCIInt.cast(results.get(Constants.LAST_STEP_VEHICLE_NUMBER)).getValue() : -1;
+    }
+
+    @Override
+    public int getSubscribedHaltingNumber(String lane) {
+        TraCIResults results = laneResults != null ? laneResults.get(lane) : null;
+        return results != null
+                ? TraCIInt.cast(results.get(Constants.LAST_STEP_VEHICLE_HALTING_NUMBER)).getValue()
+                : -1;
+    }
+
+    @Override
+    public double getSubscribedMeanSpeed(String lane) {
+        TraCIResults results = laneResults != null ? laneResults.get(lane) : null;
+        return results != null ? TraCIDouble.cast(results.get(Constants.LAST_STEP_MEAN_SPEED)).getValue() : -1;
+    }
+
+    @Override
+    public int getLaneVehicleNumber(String lane) {
+        count(TraciCommand.LANE_READ, 1);
+        return Lane.getLastStepVehicleNumber(lane);
+    }
+
+    @Override
+    public int getLaneHaltingNumber(String lane) {
+        count(TraciCommand.LANE_READ, 1);
+        return Lane.getLastStepHaltingNumber(lane);
+    }
+
+    @Override
+    public double getLaneMeanSpeed(String lane) {
+        count(TraciCommand.LANE_READ, 1);
+        return Lane.getLastStepMeanSpeed(lane);
+    }
+
+    @Override
+    public double getLaneLength(String lane) {
+        count(TraciCommand.LANE_READ, 1);
+        return Lane.getLength(lane);
+    }
+
+    @Override
+    public Map<String, String> getInductionLoopLanes() {
+        Map<String, String> lanes = new HashMap<>();
+        StringVector loopIDs = InductionLoop.getIDList();
+        for (String loopID : loopIDs) {
+            lanes.put(loopID, InductionLoop.getLaneID(loopID));
+        }
+        count(TraciCommand.DETECTOR_READ, 1 + loopIDs.size());
+        return lanes;
+    }
+
+    @Override
+    public int getSubscribedLoopEntries(String loopID) {
+        TraCIResults results = loopResults != null ? loopResults.get(loopID) : null;
+        return results != null
+                ? countEntries(loopID,
+                        TraCIStringList.cast(results.get(Constants.LAST_STEP_VEHICLE_ID_LIST)).getValue())
+                : -1;
+    }
+
+    @Override
+    public int getInductionLoopEntries(String loopID) {
+        count(TraciCommand.DETECTOR_READ, 1);
+        return countEntries(loopID, InductionLoop.getLastStepVehicleIDs(loopID));
+    }
+
+    private void count(TraciCommand command, int calls) {
+        callCounter.accept(command, calls);
+    }
+
+    /**
+     * A loop reports the vehicles on it in the last step, so a slow vehicle shows up in several steps; only
+     * vehicles that were not on the loop in the previous step are new. A loop rarely holds more than one vehicle,
+     * so the id lists are short.
+     */
+    private int countEntries(String loopID, List<String> vehicles) {
+        LoopVehicles seen = loopVehicles.computeIfAbsent(loopID, id -> new LoopVehicles());
+        if (vehicles.isEmpty() && seen.current.isEmpty()) {
+            return 0;
+        }
+
+        seen.swap();
+        int entries = 0;
+        for (String vehicle : vehicles) {
+            seen.current.add(vehicle);
+            if (!seen.previous.contains(vehicle)) {
+                entries++;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * The vehicles on a loop in the current and the previous step; the two sets are reused step after step.
+     */
+    private static class LoopVehicles {
+        Set<String> current = new HashSet<>();
+        Set<String> previous = new HashSet<>();
+
+        void swap() {
+            Set<String> older = previous;
+            previous = current;
+            current = older;
+            current.clear();
+        }
+    }
+}
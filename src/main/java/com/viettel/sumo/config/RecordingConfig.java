@@ -0,0 +1,14 @@
+package com.viettel.sumo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "recording")
+@Data
+public class RecordingConfig {
+    private boolean enabled = false; // record lane counts and optimization decisions of every run
+    private String path = "./recordings";
+    private int regionSizeMb = 64; // size of the memory-mapped regions of a recording
+}
@@ -0,0 +1,15 @@
+package com.viettel.sumo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "snapshot")
+@Data
+public class SnapshotConfig {
+    private boolean enabled = false; // save snapshots of running SUMO simulations on the schedule
+    private String path = "./snapshots";
+    private double intervalSeconds = 3600; // simulation seconds between scheduled snapshots
+    private int keep = 5; // scheduled snapshots kept per simulation, named snapshots are never pruned
+}
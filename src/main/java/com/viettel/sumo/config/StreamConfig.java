@@ -0,0 +1,15 @@
+package com.viettel.sumo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "stream")
+@Data
+public class StreamConfig {
+    private int frameIntervalMs = 250; // coalescing window of the live stream
+    private int heartbeatSeconds = 15;
+    private int senderThreads = 4;
+    private int maxClients = 500; // per simulation
+}
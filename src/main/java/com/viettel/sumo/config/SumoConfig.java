@@ -1,5 +1,7 @@
 package com.viettel.sumo.config;
 
+import com.viettel.sumo.model.FlowSamplingMode;
+import com.viettel.sumo.model.SimulationBackendType;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
@@ -14,5 +16,12 @@ public class SumoConfig {
     private boolean guiMode = true;
     private double stepLength = 1.0;
     private int optimizationInterval = 300; // seconds
+    private double optimizationChangeThreshold = 0.1; // relative flow change to re-optimize a light, 0 = always
+    private double realTimeFactor = 1.0; // simulated seconds per wall-clock second, 0 = as fast as possible
     private String intersectionConfigPath;
+    private String scenariosPath = "./sumo"; // directory the scenario files named by API requests must lie in
+    private boolean watchIntersectionConfig = true; // reload intersection configurations when their file changes
+    private String networkCachePath = "./network-cache"; // topology snapshots of parsed networks, empty = none
+    private FlowSamplingMode flowSamplingMode = FlowSamplingMode.SUBSCRIPTION;
+    private SimulationBackendType backend = SimulationBackendType.TRACI;
 }
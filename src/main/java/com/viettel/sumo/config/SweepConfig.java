@@ -0,0 +1,15 @@
+package com.viettel.sumo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "sweep")
+@Data
+public class SweepConfig {
+    private int workers = 0; // concurrent worker processes, 0 = one per available core
+    private String resultsPath = "./sweeps";
+    private int runTimeoutMinutes = 120;
+    private int maxRuns = 10000;
+}
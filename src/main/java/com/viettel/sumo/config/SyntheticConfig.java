@@ -0,0 +1,20 @@
+package com.viettel.sumo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "synthetic")
+@Data
+public class SyntheticConfig {
+    private int intersections = 100;
+    private int approaches = 4; // one lane and one stage per approach
+    private double arrivalRate = 300; // mean vehicles per hour and lane
+    private double demandAmplitude = 0.5; // relative amplitude of the sinusoidal demand profile
+    private double demandPeriod = 3600; // seconds
+    private double saturationFlow = 1800; // vehicles per hour of green and lane
+    private int greenTime = 30; // seconds, initial program
+    private int yellowTime = 3; // seconds
+    private long seed = 42;
+}
@@ -0,0 +1,15 @@
+package com.viettel.sumo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "timeseries")
+@Data
+public class TimeSeriesConfig {
+    private boolean enabled = true;
+    private int[] resolutions = {1, 60, 900}; // bucket width of each tier in simulation seconds
+    private int[] retentions = {300, 360, 192}; // buckets kept per tier: 5 min, 6 h and 48 h
+    private int maxSeries = 4000; // per simulation, bounds the memory of the store
+}
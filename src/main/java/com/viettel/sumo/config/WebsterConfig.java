@@ -12,4 +12,6 @@ public class WebsterConfig {
     private int baseLostTime = 15;
     private int minGreenTimePerStage =15;
     private int flowDataCollectionWindow = 60; // seconds
+    private int parallelThreshold = 512; // ready intersections from which a batch is calculated in parallel, 0 = never
+    private int parallelChunk = 64; // intersections per fork-join task
 }
@@ -0,0 +1,44 @@
+package com.viettel.sumo.controller;
+
+import com.viettel.sumo.model.ReplayRequest;
+import com.viettel.sumo.service.FlowReplayService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * REST controller for offline replays of flow recordings against other Webster parameters.
+ */
+@RestController
+@RequestMapping("/api/replays")
+@Slf4j
+@RequiredArgsConstructor
+public class ReplayController {
+    private final FlowReplayService flowReplayService;
+
+    @GetMapping("/recordings")
+    public ResponseEntity<?> getRecordings() {
+        try {
+            return ResponseEntity.ok(flowReplayService.getRecordings());
+        } catch (IOException e) {
+            log.error("Failed to list flow recordings", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
+        }
+    }
+
+    @PostMapping
+    public ResponseEntity<?> replay(@RequestBody ReplayRequest request) {
+        try {
+            return ResponseEntity.ok(flowReplayService.replay(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            log.error("Failed to replay {}", request.getRecording(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
+        }
+    }
+}
@@ -1,27 +1,71 @@
 package com.viettel.sumo.controller;
 
+import com.viettel.sumo.event.TopologyChangedEvent;
+import com.viettel.sumo.model.IntersectionReloadDTO;
+import com.viettel.sumo.model.KpiReportDTO;
+import com.viettel.sumo.model.SimulationSpeedDTO;
+import com.viettel.sumo.model.SimulationJob;
+import com.viettel.sumo.service.LiveStateService;
+import com.viettel.sumo.service.SimulationJobService;
 import com.viettel.sumo.service.SimulationService;
+import com.viettel.sumo.service.SimulationSession;
+import com.viettel.sumo.service.SimulationSessionRegistry;
+import com.viettel.sumo.service.SumoService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * REST controller for the lifecycle of a simulation.
+ * The un-scoped /api/simulation endpoints act on the default simulation,
+ * /api/simulations/{simulationId} on the given one.
+ */
 @RestController
-@RequestMapping("/api/simulation")
+@RequestMapping({"/api/simulation", "/api/simulations/{simulationId}"})
 @Slf4j
 @RequiredArgsConstructor
 public class SimulationController {
+    private static final long COMMAND_TIMEOUT_SECONDS = 30;
+
+    private final SimulationSessionRegistry sessionRegistry;
     private final SimulationService simulationService;
+    private final SumoService sumoService;
+    private final SimulationJobService simulationJobService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LiveStateService liveStateService;
 
+    /**
+     * @param snapshot id of a saved snapshot to continue from instead of starting at the scenario's begin
+     */
     @PostMapping("/start")
-    public ResponseEntity<String> startSimulation() {
-        if (simulationService.isSimulationRunning()) {
+    public ResponseEntity<String> startSimulation(@PathVariable(required = false) String simulationId,
+                                                  @RequestParam(required = false) String snapshot) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        if (simulationService.isSimulationRunning(session)) {
             return ResponseEntity.badRequest().body("Simulation is already running");
         }
 
         try {
-            simulationService.startSimulation();
-            return ResponseEntity.ok("Simulation started successfully");
+            simulationService.startSimulation(session, snapshot);
+            if (!simulationService.isSimulationRunning(session)) {
+                return ResponseEntity.internalServerError().body("Failed to start simulation, see the server log");
+            }
+            return ResponseEntity.ok(snapshot != null
+                    ? "Simulation started from snapshot " + snapshot
+                    : "Simulation started successfully");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             log.error("Failed to start simulation", e);
             return ResponseEntity.internalServerError().body("Failed to start simulation: " + e.getMessage());
@@ -29,13 +73,14 @@ public class SimulationController {
     }
 
     @PostMapping("/stop")
-    public ResponseEntity<String> stopSimulation() {
-        if (!simulationService.isSimulationRunning()) {
+    public ResponseEntity<String> stopSimulation(@PathVariable(required = false) String simulationId) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        if (!simulationService.isSimulationRunning(session)) {
             return ResponseEntity.badRequest().body("No simulation is running");
         }
 
         try {
-            simulationService.stopSimulation();
+            simulationService.stopSimulation(session);
             return ResponseEntity.ok("Simulation stopped successfully");
         } catch (Exception e) {
             log.error("Failed to stop simulation", e);
@@ -44,23 +89,157 @@ public class SimulationController {
     }
 
     @GetMapping("/status")
-    public ResponseEntity<String> getSimulationStatus() {
-        boolean running = simulationService.isSimulationRunning();
+    public ResponseEntity<String> getSimulationStatus(@PathVariable(required = false) String simulationId) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        boolean running = simulationService.isSimulationRunning(session);
         return ResponseEntity.ok(running ? "Simulation is running" : "Simulation is not running");
     }
 
+    @PostMapping("/pause")
+    public ResponseEntity<String> pauseSimulation(@PathVariable(required = false) String simulationId) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        if (!simulationService.isSimulationRunning(session)) {
+            return ResponseEntity.badRequest().body("No simulation is running");
+        }
+
+        simulationService.pauseSimulation(session);
+        return ResponseEntity.ok("Simulation paused");
+    }
+
+    @PostMapping("/resume")
+    public ResponseEntity<String> resumeSimulation(@PathVariable(required = false) String simulationId) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        if (!simulationService.isSimulationRunning(session)) {
+            return ResponseEntity.badRequest().body("No simulation is running");
+        }
+
+        simulationService.resumeSimulation(session);
+        return ResponseEntity.ok("Simulation resumed");
+    }
+
+    /**
+     * Set the pace of the stepping loop.
+     * @param factor simulated seconds per wall-clock second, 0 runs as fast as possible
+     */
+    @PostMapping("/speed/{factor}")
+    public ResponseEntity<String> setSimulationSpeed(@PathVariable(required = false) String simulationId,
+                                                     @PathVariable double factor) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        try {
+            simulationService.setRealTimeFactor(session, factor);
+            return ResponseEntity.ok(factor > 0
+                    ? "Simulation speed set to " + factor + "x real time"
+                    : "Simulation speed set to as fast as possible");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/speed")
+    public ResponseEntity<SimulationSpeedDTO> getSimulationSpeed(@PathVariable(required = false) String simulationId) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        return ResponseEntity.ok(simulationService.getSimulationSpeed(session));
+    }
+
+    /**
+     * Delay, queue length and throughput of the monitored intersections since the KPI window began.
+     * @param intersection SUMO id of the traffic light to report, all monitored lights if absent
+     */
+    @GetMapping("/kpis")
+    public ResponseEntity<KpiReportDTO> getKpis(@PathVariable(required = false) String simulationId,
+                                                @RequestParam(required = false) String intersection) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        return ResponseEntity.ok(simulationService.getKpis(session, intersection));
+    }
+
+    @PostMapping("/kpis/reset")
+    public CompletableFuture<ResponseEntity<?>> resetKpis(@PathVariable(required = false) String simulationId) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        return simulationService.resetKpis(session)
+                .orTimeout(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .handle((windowStart, failure) -> commandResponse(
+                        "KPI window restarted at " + windowStart + " s", failure, "KPI reset"));
+    }
+
+    /**
+     * Submit a job running the simulation for a number of steps as fast as possible.
+     * Returns immediately; progress is available under the jobs endpoint of the simulation.
+     */
     @PostMapping("/run/{steps}")
-    public ResponseEntity<String> runSimulationForSteps(@PathVariable int steps) {
+    public ResponseEntity<String> runSimulationForSteps(@PathVariable(required = false) String simulationId,
+                                                        @PathVariable int steps) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
         if (steps <= 0) {
             return ResponseEntity.badRequest().body("Number of steps must be positive");
         }
 
         try {
-            simulationService.runSimulationFor(steps);
-            return ResponseEntity.ok("Simulation ran for " + steps + " steps");
+            SimulationJob job = simulationJobService.submit(session, steps, 0);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body("Started simulation job " + job.getId() + " for " + steps + " steps");
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             log.error("Failed to run simulation for steps", e);
             return ResponseEntity.internalServerError().body("Failed to run simulation: " + e.getMessage());
         }
     }
+
+    @PostMapping("/topology/rebuild")
+    public ResponseEntity<String> rebuildTopology(@PathVariable(required = false) String simulationId) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        if (!simulationService.isSimulationRunning(session)) {
+            return ResponseEntity.badRequest().body("No simulation is running");
+        }
+
+        eventPublisher.publishEvent(new TopologyChangedEvent(session.getId(), "requested via REST"));
+        return ResponseEntity.ok("Topology index rebuilt");
+    }
+
+    /**
+     * Reload the intersection configurations from the session's file without restarting the simulation.
+     * The configurations in use are kept if the file does not parse or an intersection does not compile.
+     */
+    @PostMapping("/intersections/reload")
+    public CompletableFuture<ResponseEntity<?>> reloadIntersections(
+            @PathVariable(required = false) String simulationId) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        CompletableFuture<IntersectionReloadDTO> reload;
+        try {
+            reload = sumoService.reloadIntersectionConfigurations(session);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+        return reload.orTimeout(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .handle((result, failure) -> commandResponse(result, failure, "Reload"));
+    }
+
+    /**
+     * Server-Sent Events stream of the simulation: "step" summaries, "mode" changes and "optimization" results.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSimulation(@PathVariable(required = false) String simulationId) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        try {
+            return liveStateService.subscribe(session);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    private ResponseEntity<?> commandResponse(Object result, Throwable failure, String command) {
+        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+        if (cause == null) {
+            return ResponseEntity.ok(result);
+        }
+        if (cause instanceof IllegalArgumentException || cause instanceof IllegalStateException) {
+            return ResponseEntity.badRequest().body(cause.getMessage());
+        }
+        if (cause instanceof TimeoutException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(command + " still queued after " + COMMAND_TIMEOUT_SECONDS + " seconds");
+        }
+        log.error("{} failed", command, cause);
+        return ResponseEntity.internalServerError().body(command + " failed: " + cause.getMessage());
+    }
 }
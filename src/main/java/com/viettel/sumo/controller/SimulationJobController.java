@@ -0,0 +1,70 @@
+package com.viettel.sumo.controller;
+
+import com.viettel.sumo.model.SimulationJob;
+import com.viettel.sumo.service.SimulationJobService;
+import com.viettel.sumo.service.SimulationSession;
+import com.viettel.sumo.service.SimulationSessionRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST controller for long simulation runs.
+ * A job is submitted and returns immediately; progress and the final summary are polled by job id.
+ */
+@RestController
+@RequestMapping({"/api/simulation/jobs", "/api/simulations/{simulationId}/jobs"})
+@Slf4j
+@RequiredArgsConstructor
+public class SimulationJobController {
+    private final SimulationSessionRegistry sessionRegistry;
+    private final SimulationJobService simulationJobService;
+
+    /**
+     * Submit a job running the simulation for a number of steps
+     * @param steps number of steps to execute
+     * @param realTimeFactor pace of the job, 0 (default) runs as fast as possible
+     */
+    @PostMapping
+    public ResponseEntity<?> submitJob(@PathVariable(required = false) String simulationId,
+                                       @RequestParam int steps,
+                                       @RequestParam(defaultValue = "0") double realTimeFactor) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(simulationJobService.submit(session, steps, realTimeFactor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to submit simulation job", e);
+            return ResponseEntity.internalServerError().body("Failed to submit simulation job: " + e.getMessage());
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<List<SimulationJob>> getJobs(@PathVariable(required = false) String simulationId) {
+        return ResponseEntity.ok(simulationJobService.getJobs(sessionRegistry.resolve(simulationId)));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<SimulationJob> getJob(@PathVariable(required = false) String simulationId,
+                                                @PathVariable String jobId) {
+        return simulationJobService.getJob(sessionRegistry.resolve(simulationId), jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{jobId}/cancel")
+    public ResponseEntity<SimulationJob> cancelJob(@PathVariable(required = false) String simulationId,
+                                                   @PathVariable String jobId) {
+        return simulationJobService.cancel(sessionRegistry.resolve(simulationId), jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
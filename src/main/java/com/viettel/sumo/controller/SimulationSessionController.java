@@ -0,0 +1,58 @@
+package com.viettel.sumo.controller;
+
+import com.viettel.sumo.model.SimulationSessionDTO;
+import com.viettel.sumo.model.SimulationSessionRequest;
+import com.viettel.sumo.service.SimulationSession;
+import com.viettel.sumo.service.SimulationSessionRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST controller for creating and removing simulations.
+ * Each simulation runs its own SUMO process; its lifecycle, traffic control and jobs are managed
+ * under /api/simulations/{simulationId}/...
+ */
+@RestController
+@RequestMapping("/api/simulations")
+@Slf4j
+@RequiredArgsConstructor
+public class SimulationSessionController {
+    private final SimulationSessionRegistry sessionRegistry;
+
+    @GetMapping
+    public ResponseEntity<List<SimulationSessionDTO>> getSimulations() {
+        return ResponseEntity.ok(sessionRegistry.getSessions().stream()
+                .map(sessionRegistry::describe)
+                .toList());
+    }
+
+    @PostMapping
+    public ResponseEntity<?> createSimulation(@RequestBody SimulationSessionRequest request) {
+        try {
+            SimulationSession session = sessionRegistry.create(request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(sessionRegistry.describe(session));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{simulationId}")
+    public ResponseEntity<SimulationSessionDTO> getSimulation(@PathVariable String simulationId) {
+        return ResponseEntity.ok(sessionRegistry.describe(sessionRegistry.resolve(simulationId)));
+    }
+
+    @DeleteMapping("/{simulationId}")
+    public ResponseEntity<String> removeSimulation(@PathVariable String simulationId) {
+        try {
+            sessionRegistry.remove(simulationId);
+            return ResponseEntity.ok("Simulation " + simulationId + " removed");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.viettel.sumo.controller;
+
+import com.viettel.sumo.model.SimulationSnapshot;
+import com.viettel.sumo.service.SimulationSession;
+import com.viettel.sumo.service.SimulationSessionRegistry;
+import com.viettel.sumo.service.SimulationSnapshotService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * REST controller for the saved states of a simulation.
+ * A simulation continues from a snapshot through POST /start?snapshot={id}.
+ */
+@RestController
+@RequestMapping({"/api/simulation/snapshots", "/api/simulations/{simulationId}/snapshots"})
+@Slf4j
+@RequiredArgsConstructor
+public class SnapshotController {
+    private static final long COMMAND_TIMEOUT_SECONDS = 30;
+
+    private final SimulationSessionRegistry sessionRegistry;
+    private final SimulationSnapshotService snapshotService;
+
+    /**
+     * List the snapshots taken of the simulation's scenario
+     */
+    @GetMapping
+    public List<SimulationSnapshot> getSnapshots(@PathVariable(required = false) String simulationId) {
+        return snapshotService.list(sessionRegistry.resolve(simulationId));
+    }
+
+    /**
+     * Save the running simulation under a name, e.g. "warm-0700"; the snapshot is taken between two steps
+     */
+    @PostMapping
+    public CompletableFuture<ResponseEntity<?>> saveSnapshot(@PathVariable(required = false) String simulationId,
+                                                             @RequestParam String name) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        return session.getStepper().submit(null, () -> snapshotService.save(session, name))
+                .orTimeout(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .handle((snapshot, failure) -> {
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    if (cause == null) {
+                        return ResponseEntity.ok(snapshot);
+                    }
+                    if (cause instanceof IllegalArgumentException || cause instanceof IllegalStateException
+                            || cause instanceof UnsupportedOperationException) {
+                        return ResponseEntity.badRequest().body(cause.getMessage());
+                    }
+                    if (cause instanceof TimeoutException) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .body("Snapshot still queued after " + COMMAND_TIMEOUT_SECONDS + " seconds");
+                    }
+                    log.error("Failed to save snapshot {} of simulation {}", name, session.getId(), cause);
+                    return ResponseEntity.internalServerError().body("Failed to save snapshot: " + cause.getMessage());
+                });
+    }
+}
@@ -0,0 +1,63 @@
+package com.viettel.sumo.controller;
+
+import com.viettel.sumo.model.Sweep;
+import com.viettel.sumo.model.SweepRequest;
+import com.viettel.sumo.model.SweepRun;
+import com.viettel.sumo.service.SweepService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST controller for parameter sweeps: submit a grid or sampled set of Webster/SUMO parameters,
+ * follow progress and read the ranked results.
+ */
+@RestController
+@RequestMapping("/api/sweeps")
+@Slf4j
+@RequiredArgsConstructor
+public class SweepController {
+    private final SweepService sweepService;
+
+    @PostMapping
+    public ResponseEntity<?> submitSweep(@RequestBody SweepRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(sweepService.submit(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<List<Sweep>> getSweeps() {
+        return ResponseEntity.ok(sweepService.getSweeps());
+    }
+
+    @GetMapping("/{sweepId}")
+    public ResponseEntity<Sweep> getSweep(@PathVariable String sweepId) {
+        return sweepService.getSweep(sweepId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Runs of the sweep ranked best first. Available while the sweep is still running.
+     */
+    @GetMapping("/{sweepId}/results")
+    public ResponseEntity<List<SweepRun>> getResults(@PathVariable String sweepId) {
+        return sweepService.getSweep(sweepId)
+                .map(sweep -> ResponseEntity.ok(sweepService.rank(sweep)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{sweepId}/cancel")
+    public ResponseEntity<Sweep> cancelSweep(@PathVariable String sweepId) {
+        return sweepService.cancel(sweepId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,80 @@
+package com.viettel.sumo.controller;
+
+import com.viettel.sumo.model.TimeSeriesAggregation;
+import com.viettel.sumo.model.TimeSeriesCatalogDTO;
+import com.viettel.sumo.model.TimeSeriesDTO;
+import com.viettel.sumo.service.SimulationSession;
+import com.viettel.sumo.service.SimulationSessionRegistry;
+import com.viettel.sumo.util.TimeSeries;
+import com.viettel.sumo.util.TimeSeriesStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * REST controller for the recorded time series of a simulation.
+ * Times are simulation seconds; a query defaults to the last hour of the run.
+ */
+@RestController
+@RequestMapping({"/api/simulation/timeseries", "/api/simulations/{simulationId}/timeseries"})
+@RequiredArgsConstructor
+public class TimeSeriesController {
+    private static final double DEFAULT_RANGE_SECONDS = 3600;
+
+    private final SimulationSessionRegistry sessionRegistry;
+
+    /**
+     * List the recorded series
+     * @param prefix only series whose name starts with it, e.g. "lane.vehicles:"
+     */
+    @GetMapping
+    public ResponseEntity<?> getSeries(@PathVariable(required = false) String simulationId,
+                                       @RequestParam(required = false) String prefix) {
+        TimeSeriesStore store = sessionRegistry.resolve(simulationId).getTimeSeries();
+        if (store == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Time series are disabled");
+        }
+
+        return ResponseEntity.ok(new TimeSeriesCatalogDTO(store.getResolutions(), store.getRetentions(),
+                store.getMaxSeries(), store.memoryBytes(), store.names(prefix)));
+    }
+
+    /**
+     * Aggregate series over a time range
+     * @param series     names of the series
+     * @param resolution bucket width in seconds, 0 (default) for the finest resolution still holding the range
+     */
+    @GetMapping("/query")
+    public ResponseEntity<?> query(@PathVariable(required = false) String simulationId,
+                                   @RequestParam List<String> series,
+                                   @RequestParam(required = false) Double from,
+                                   @RequestParam(required = false) Double to,
+                                   @RequestParam(defaultValue = "0") int resolution,
+                                   @RequestParam(defaultValue = "MEAN") TimeSeriesAggregation aggregation) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        TimeSeriesStore store = session.getTimeSeries();
+        if (store == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Time series are disabled");
+        }
+
+        double end = to != null ? to : session.getCurrentSimTime();
+        double start = from != null ? from : end - DEFAULT_RANGE_SECONDS;
+        List<TimeSeriesDTO> results = new ArrayList<>();
+        for (String name : series) {
+            TimeSeries timeSeries = store.get(name);
+            if (timeSeries == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Unknown time series: " + name);
+            }
+            try {
+                results.add(timeSeries.query(start, end, resolution, aggregation));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        }
+        return ResponseEntity.ok(results);
+    }
+}
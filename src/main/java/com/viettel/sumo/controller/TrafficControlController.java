@@ -2,43 +2,67 @@ package com.viettel.sumo.controller;
 
 import com.viettel.sumo.model.TrafficControlMode;
 import com.viettel.sumo.model.TrafficControlResponse;
+import com.viettel.sumo.service.SimulationSession;
+import com.viettel.sumo.service.SimulationSessionRegistry;
 import com.viettel.sumo.service.TrafficControlService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 /**
  * REST controller for managing traffic light control modes.
  * Provide endpoints to switch between different operational modes
  * and query the current mode.
+ * The un-scoped /api/traffic-control endpoints act on the default simulation.
  */
 @RestController
-@RequestMapping("/api/traffic-control")
+@RequestMapping({"/api/traffic-control", "/api/simulations/{simulationId}/traffic-control"})
 @Slf4j
 @RequiredArgsConstructor
 public class TrafficControlController {
+    private static final long COMMAND_TIMEOUT_SECONDS = 30;
+
+    private final SimulationSessionRegistry sessionRegistry;
     private final TrafficControlService trafficControlService;
 
     /**
-     * Switch to a specific traffic control mode
+     * Switch to a specific traffic control mode.
+     * The switch runs on the simulation's stepping thread between two steps; the request completes once it ran.
      * @param mode The desired control mode
      * @return Response indicating success or failure
      */
     @PostMapping("/mode/{mode}")
-    public ResponseEntity<TrafficControlResponse> setControlMode(@PathVariable TrafficControlMode mode) {
-        try {
-            trafficControlService.setControlMode(mode);
-            return ResponseEntity.ok(TrafficControlResponse.success(
-                    "Successfully switched to " + mode, mode));
-        } catch (IllegalStateException e) {
-            return ResponseEntity.badRequest()
-                    .body(TrafficControlResponse.error(e.getMessage()));
-        } catch (Exception e) {
-            log.error("Failed to set control mode", e);
-            return ResponseEntity.internalServerError()
-                    .body(TrafficControlResponse.error("Failed to set control mode: " + e.getMessage()));
-        }
+    public CompletableFuture<ResponseEntity<TrafficControlResponse>> setControlMode(
+            @PathVariable(required = false) String simulationId, @PathVariable TrafficControlMode mode) {
+        SimulationSession session = sessionRegistry.resolve(simulationId);
+        return trafficControlService.requestControlMode(session, mode)
+                .orTimeout(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .handle((switchedMode, failure) -> {
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    if (cause == null) {
+                        return ResponseEntity.ok(TrafficControlResponse.success(
+                                "Successfully switched to " + mode, mode));
+                    }
+                    if (cause instanceof IllegalStateException) {
+                        return ResponseEntity.badRequest()
+                                .body(TrafficControlResponse.error(cause.getMessage()));
+                    }
+                    if (cause instanceof TimeoutException) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .body(TrafficControlResponse.error("Mode switch still queued after "
+                                        + COMMAND_TIMEOUT_SECONDS + " seconds"));
+                    }
+                    log.error("Failed to set control mode", cause);
+                    return ResponseEntity.internalServerError()
+                            .body(TrafficControlResponse.error("Failed to set control mode: " + cause.getMessage()));
+                });
     }
 
     /**
@@ -46,31 +70,34 @@ public class TrafficControlController {
      * @return The current mode
      */
     @GetMapping("/mode")
-    public ResponseEntity<TrafficControlMode> getCurrentMode() {
-        return ResponseEntity.ok(trafficControlService.getCurrentMode());
+    public ResponseEntity<TrafficControlMode> getCurrentMode(@PathVariable(required = false) String simulationId) {
+        return ResponseEntity.ok(trafficControlService.getCurrentMode(sessionRegistry.resolve(simulationId)));
     }
 
     /**
      * Convenience endpoint to activate red mode (emergency stop)
      */
     @PostMapping("/emergency-stop")
-    public ResponseEntity<TrafficControlResponse> activateEmergencyStop() {
-        return setControlMode(TrafficControlMode.RED_MODE);
+    public CompletableFuture<ResponseEntity<TrafficControlResponse>> activateEmergencyStop(
+            @PathVariable(required = false) String simulationId) {
+        return setControlMode(simulationId, TrafficControlMode.RED_MODE);
     }
 
     /**
      * Convenience endpoint to return to normal operation
      */
     @PostMapping("/resume-normal")
-    public ResponseEntity<TrafficControlResponse> resumeNormal() {
-        return setControlMode(TrafficControlMode.NORMAL_MODE);
+    public CompletableFuture<ResponseEntity<TrafficControlResponse>> resumeNormal(
+            @PathVariable(required = false) String simulationId) {
+        return setControlMode(simulationId, TrafficControlMode.NORMAL_MODE);
     }
 
     /**
      * Convenience endpoint to advance to next phase
      */
     @PostMapping("/next-phase")
-    public ResponseEntity<TrafficControlResponse> advanceToNextPhase() {
-        return setControlMode(TrafficControlMode.NEXT_PHASE_MODE);
+    public CompletableFuture<ResponseEntity<TrafficControlResponse>> advanceToNextPhase(
+            @PathVariable(required = false) String simulationId) {
+        return setControlMode(simulationId, TrafficControlMode.NEXT_PHASE_MODE);
     }
 }
\ No newline at end of file
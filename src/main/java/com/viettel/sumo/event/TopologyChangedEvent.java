@@ -0,0 +1,8 @@
+package com.viettel.sumo.event;
+
+/**
+ * Published when the network around the traffic lights of a running simulation has changed
+ * (for example after programs or lanes were modified externally), so the topology index must be rebuilt.
+ */
+public record TopologyChangedEvent(String simulationId, String reason) {
+}
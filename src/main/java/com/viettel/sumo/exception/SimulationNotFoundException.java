@@ -0,0 +1,11 @@
+package com.viettel.sumo.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class SimulationNotFoundException extends RuntimeException {
+    public SimulationNotFoundException(String simulationId) {
+        super("No simulation with id " + simulationId);
+    }
+}
@@ -0,0 +1,17 @@
+package com.viettel.sumo.model;
+
+/**
+ * Defines how per-step lane counts are read from SUMO.
+ */
+public enum FlowSamplingMode {
+
+    /**
+     * Query every monitored lane individually on each step
+     */
+    POLLING,
+
+    /**
+     * Subscribe to the monitored lanes once at start and read all results in a single bulk fetch per step
+     */
+    SUBSCRIPTION
+}
@@ -11,6 +11,7 @@ public class IntersectionConfiguration {
     private String sumoId;
     private String intersectionId;
     private Double saturationVolume;
+    private Integer optimizationInterval; // seconds, overrides sumo.optimizationInterval for this intersection
     private List<StageConfig> stages;
     private List<RoadConfig> roads;
 
@@ -57,5 +58,6 @@ public class IntersectionConfiguration {
         private String route;
         private double flowData;
         private String lane;
+        private String detector; // induction loop on the lane; when set the flow counts vehicles passing it
     }
 }
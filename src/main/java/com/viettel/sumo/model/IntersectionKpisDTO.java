@@ -0,0 +1,34 @@
+package com.viettel.sumo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Delay, queue length and throughput of one monitored intersection and its approaches since the KPI window began.
+ */
+@Data
+@AllArgsConstructor
+public class IntersectionKpisDTO {
+    private String sumoId;
+    private double meanHaltingVehicles;
+    private int maxHaltingVehicles;
+    private double waitingTime; // halted vehicle-seconds
+    private double vehiclesServed;
+    private double meanDelay; // halted seconds per served vehicle
+    private List<ApproachKpis> approaches;
+
+    @Data
+    @AllArgsConstructor
+    public static class ApproachKpis {
+        private String edge;
+        private int lanes;
+        private boolean measured; // served vehicles counted by induction loops on every lane, otherwise estimated
+        private double meanHaltingVehicles;
+        private int maxHaltingVehicles;
+        private double waitingTime;
+        private double vehiclesServed;
+        private double meanDelay;
+    }
+}
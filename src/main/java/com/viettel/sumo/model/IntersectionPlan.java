@@ -0,0 +1,231 @@
+package com.viettel.sumo.model;
+
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Webster input of one intersection compiled into primitive tables.
+ * Stages and flows are numbered in configuration order; the flows feeding a stage are listed in
+ * {@code stageFlowIndices[stageFlowOffsets[s] .. stageFlowOffsets[s + 1])} (a flow feeds a stage when
+ * one of the stage's lamps has the flow's direction and route).
+ * Plans are compiled once when the configuration is loaded and never modified; flow values live outside
+ * the plan (see {@code WebsterBatch}) so an optimization only has to fill a flow vector.
+ */
+@Getter
+public class IntersectionPlan {
+    private final String sumoId;
+    private final double saturationVolume;
+
+    private final int stageCount;
+    private final long[] stageIds;
+    private final String[] stageOldIds;
+    private final int[] phaseIndices;
+    private final int[] minGreenTimes;
+    private final int[] maxGreenTimes;
+    private final int[] yellowTimes;
+    private final int[] redClearTimes;
+    private final double[] weights;
+    private final int[] stageFlowOffsets;
+    private final int[] stageFlowIndices;
+
+    private final int flowCount;
+    private final String[] flowLanes;
+
+    /**
+     * Problems found while compiling, e.g. lamps no flow matches or flows without a lane
+     */
+    private final List<String> warnings;
+
+    private IntersectionPlan(String sumoId, double saturationVolume, List<Stage> stages, List<Flow> flows) {
+        this.sumoId = sumoId;
+        this.saturationVolume = saturationVolume;
+
+        stageCount = stages.size();
+        stageIds = new long[stageCount];
+        stageOldIds = new String[stageCount];
+        phaseIndices = new int[stageCount];
+        minGreenTimes = new int[stageCount];
+        maxGreenTimes = new int[stageCount];
+        yellowTimes = new int[stageCount];
+        redClearTimes = new int[stageCount];
+        weights = new double[stageCount];
+        stageFlowOffsets = new int[stageCount + 1];
+
+        flowCount = flows.size();
+        flowLanes = new String[flowCount];
+        Map<String, List<Integer>> flowsByKey = new HashMap<>();
+        for (int f = 0; f < flowCount; f++) {
+            flowLanes[f] = flows.get(f).lane();
+            flowsByKey.computeIfAbsent(flows.get(f).key(), k -> new ArrayList<>()).add(f);
+        }
+
+        List<String> problems = new ArrayList<>();
+        for (int f = 0; f < flowCount; f++) {
+            if (flowLanes[f] == null && sumoId != null) {
+                problems.add("flow " + flows.get(f).key() + " has no lane");
+            }
+        }
+
+        List<Integer> indices = new ArrayList<>();
+        for (int s = 0; s < stageCount; s++) {
+            Stage stage = stages.get(s);
+            stageIds[s] = stage.id();
+            stageOldIds[s] = stage.oldId();
+            phaseIndices[s] = stage.phaseIndex();
+            minGreenTimes[s] = stage.minGreenTime();
+            maxGreenTimes[s] = stage.maxGreenTime();
+            yellowTimes[s] = stage.yellow();
+            redClearTimes[s] = stage.redClear();
+            weights[s] = stage.weight();
+
+            stageFlowOffsets[s] = indices.size();
+            Set<Integer> stageFlows = new TreeSet<>();
+            for (String key : stage.lampKeys()) {
+                List<Integer> matching = flowsByKey.get(key);
+                if (matching != null) {
+                    stageFlows.addAll(matching);
+                } else {
+                    problems.add("lamp " + key + " of stage " + stage.id() + " matches no flow");
+                }
+            }
+            if (stage.phaseIndex() < 0 && sumoId != null) {
+                problems.add("stage " + stage.id() + " has no phase index");
+            }
+            indices.addAll(stageFlows);
+        }
+        stageFlowOffsets[stageCount] = indices.size();
+        stageFlowIndices = indices.stream().mapToInt(Integer::intValue).toArray();
+        warnings = List.copyOf(problems);
+    }
+
+    /**
+     * Compile the configuration of an intersection.
+     * @param defaultSaturationVolume used when the configuration does not set a saturation volume
+     * @throws IllegalArgumentException if a stage lacks a timing parameter
+     */
+    public static IntersectionPlan compile(IntersectionConfiguration config, double defaultSaturationVolume) {
+        List<Stage> stages = new ArrayList<>();
+        for (IntersectionConfiguration.StageConfig stageConfig : listOrEmpty(config.getStages())) {
+            List<String> lampKeys = new ArrayList<>();
+            for (IntersectionConfiguration.LampConfig lamp : listOrEmpty(stageConfig.getLamps())) {
+                lampKeys.add(key(lamp.getDirection(), lamp.getRoute()));
+            }
+            String stageName = config.getSumoId() + " stage " + stageConfig.getId();
+            stages.add(new Stage(
+                    require(stageConfig.getId(), stageName, "id"),
+                    stageConfig.getOldId(),
+                    stageConfig.getPhaseIndex() != null ? stageConfig.getPhaseIndex() : -1,
+                    require(stageConfig.getMinGreenTime(), stageName, "minGreenTime"),
+                    require(stageConfig.getMaxGreenTime(), stageName, "maxGreenTime"),
+                    require(stageConfig.getYellow(), stageName, "yellow"),
+                    require(stageConfig.getRedClear(), stageName, "redClear"),
+                    require(stageConfig.getWeight(), stageName, "weight"),
+                    lampKeys));
+        }
+
+        List<Flow> flows = new ArrayList<>();
+        for (IntersectionConfiguration.RoadConfig road : listOrEmpty(config.getRoads())) {
+            for (IntersectionConfiguration.FlowConfig flow : listOrEmpty(road.getFlows())) {
+                flows.add(new Flow(key(flow.getDirection(), flow.getRoute()), flow.getLane()));
+            }
+        }
+
+        double saturationVolume = config.getSaturationVolume() != null
+                ? config.getSaturationVolume()
+                : defaultSaturationVolume;
+        return new IntersectionPlan(config.getSumoId(), saturationVolume, stages, flows);
+    }
+
+    /**
+     * Compile a Webster input. Flow values are not part of the plan; they are read from the input's flows
+     * in road order.
+     */
+    public static IntersectionPlan compile(WebsterInputDTO input) {
+        List<Stage> stages = new ArrayList<>();
+        for (StageDTO stage : input.getStages()) {
+            List<String> lampKeys = new ArrayList<>();
+            for (LampDTO lamp : stage.getLamps()) {
+                lampKeys.add(key(lamp.getDirection(), lamp.getRoute()));
+            }
+            stages.add(new Stage(stage.getId(), stage.getOldId(), -1, stage.getMinGreenTime(),
+                    stage.getMaxGreenTime(), stage.getYellow(), stage.getRedClear(), stage.getWeight(), lampKeys));
+        }
+
+        List<Flow> flows = new ArrayList<>();
+        for (RoadDTO road : input.getRoads()) {
+            for (FlowDataDTO flow : road.getFlows()) {
+                flows.add(new Flow(key(flow.getDirection(), flow.getRoute()), null));
+            }
+        }
+        return new IntersectionPlan(null, input.getSaturationVolume(), stages, flows);
+    }
+
+    /**
+     * Resolve the lanes of the flows against a topology.
+     * @return the topology lane index of every flow, -1 where the lane is not an incoming lane of the intersection
+     */
+    public int[] resolveLanes(IntersectionTopology topology) {
+        int[] laneIndices = new int[flowCount];
+        for (int f = 0; f < flowCount; f++) {
+            laneIndices[f] = flowLanes[f] != null ? topology.getLaneIndex(flowLanes[f]) : -1;
+        }
+        return laneIndices;
+    }
+
+    /**
+     * Resolve the phase indices of the stages against a program.
+     * @return the program phase index of the green phase of every stage, -1 where the program has no such phase
+     */
+    public int[] resolveGreenPhases(SignalProgram program) {
+        int[] greenPhases = new int[stageCount];
+        for (int s = 0; s < stageCount; s++) {
+            greenPhases[s] = program.getGreenPhaseIndex(phaseIndices[s]);
+        }
+        return greenPhases;
+    }
+
+    /**
+     * @return the stages whose phase index has no green phase in the given program
+     */
+    public List<Long> findInvalidPhases(SignalProgram program) {
+        int[] greenPhases = resolveGreenPhases(program);
+        List<Long> invalid = new ArrayList<>();
+        for (int s = 0; s < stageCount; s++) {
+            if (greenPhases[s] < 0) {
+                invalid.add(stageIds[s]);
+            }
+        }
+        return invalid;
+    }
+
+    public int getStageFlowStart(int stage) {
+        return stageFlowOffsets[stage];
+    }
+
+    public int getStageFlowEnd(int stage) {
+        return stageFlowOffsets[stage + 1];
+    }
+
+    private static String key(String direction, String route) {
+        return direction + " " + route;
+    }
+
+    private static <T> List<T> listOrEmpty(List<T> list) {
+        return list != null ? list : List.of();
+    }
+
+    private static <T> T require(T value, String stageName, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException(stageName + " has no " + field);
+        }
+        return value;
+    }
+
+    private record Stage(long id, String oldId, int phaseIndex, int minGreenTime, int maxGreenTime,
+                         int yellow, int redClear, double weight, List<String> lampKeys) {
+    }
+
+    private record Flow(String key, String lane) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.viettel.sumo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class IntersectionReloadDTO {
+    private int intersections;
+    private List<String> added;
+    private List<String> changed;
+    private List<String> removed;
+}
@@ -0,0 +1,69 @@
+package com.viettel.sumo.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the network layout around one traffic light:
+ * its incoming lanes, the controlled link indices fed by each lane and the program
+ * that was active when the index was built.
+ */
+@Getter
+public class IntersectionTopology {
+    private final String sumoId;
+    private final List<String> incomingLanes;
+    private final Map<String, Integer> laneIndices;
+    @Getter(AccessLevel.NONE)
+    private final int[][] laneLinkIndices; // read through getLinkIndices, so no caller can change it
+    private final int linkCount;
+    private final SignalProgram program;
+
+    public IntersectionTopology(String sumoId, List<String> incomingLanes, int[][] laneLinkIndices,
+                                int linkCount, SignalProgram program) {
+        this.sumoId = sumoId;
+        this.incomingLanes = List.copyOf(incomingLanes);
+        this.laneLinkIndices = new int[laneLinkIndices.length][];
+        for (int i = 0; i < laneLinkIndices.length; i++) {
+            this.laneLinkIndices[i] = laneLinkIndices[i].clone();
+        }
+        this.linkCount = linkCount;
+        this.program = program;
+
+        Map<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < incomingLanes.size(); i++) {
+            indices.put(incomingLanes.get(i), i);
+        }
+        this.laneIndices = Map.copyOf(indices);
+    }
+
+    /**
+     * @return the position of the lane in {@link #getIncomingLanes()}, or -1 if the lane does not feed this light
+     */
+    public int getLaneIndex(String lane) {
+        Integer index = laneIndices.get(lane);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @return the controlled link indices (positions in the signal state string) fed by the given lane
+     */
+    public int[] getLinkIndices(int laneIndex) {
+        return laneLinkIndices[laneIndex].clone();
+    }
+
+    public int getLaneCount() {
+        return incomingLanes.size();
+    }
+
+    public String getProgramId() {
+        return program.getProgramId();
+    }
+
+    public int getPhaseCount() {
+        return program.getPhaseCount();
+    }
+}
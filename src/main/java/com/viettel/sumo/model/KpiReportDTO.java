@@ -0,0 +1,19 @@
+package com.viettel.sumo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class KpiReportDTO {
+    private TrafficControlMode controlMode;
+    private double windowStart;
+    private double simulationTime;
+    private long steps;
+    private double waitingTime; // halted vehicle-seconds on the monitored approaches
+    private double vehiclesServed;
+    private double meanDelay;
+    private List<IntersectionKpisDTO> intersections;
+}
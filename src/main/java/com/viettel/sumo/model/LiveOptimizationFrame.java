@@ -0,0 +1,19 @@
+package com.viettel.sumo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Summary of the latest Webster optimization as pushed to live stream clients.
+ */
+@Data
+@AllArgsConstructor
+public class LiveOptimizationFrame {
+    private String simulationId;
+    private double simulationTime;
+    private int intersections;      // intersections with flow data that were calculated
+    private int changedLights;      // lights whose program was rewritten
+    private int oversaturated;      // calculated intersections with Y >= 1
+    private double meanCycle;
+    private long calculationMicros;
+}
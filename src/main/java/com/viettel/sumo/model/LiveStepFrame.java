@@ -0,0 +1,20 @@
+package com.viettel.sumo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Latest state of a simulation as pushed to live stream clients.
+ */
+@Data
+@AllArgsConstructor
+public class LiveStepFrame {
+    private String simulationId;
+    private boolean running;
+    private boolean paused;
+    private double simulationTime;
+    private long stepsExecuted;
+    private double realTimeFactor;
+    private double achievedSpeed;
+    private int haltingVehicles; // on the incoming lanes of the monitored intersections
+}
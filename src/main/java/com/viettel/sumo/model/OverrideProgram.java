@@ -0,0 +1,49 @@
+package com.viettel.sumo.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Programs installed next to the regular program of every light, so emergency and maintenance modes
+ * only have to switch the active program instead of rewriting signal states light by light.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum OverrideProgram {
+    ALL_RED("override-red"),
+    FLASHING_YELLOW("override-yellow"),
+    OFF("override-off");
+
+    private static final double HOLD_DURATION = 3600;
+    private static final double FLASH_DURATION = 1;
+
+    private final String programId;
+
+    /**
+     * @param linkCount number of controlled links, i.e. the length of the light's state string
+     */
+    public SignalProgram build(int linkCount) {
+        return switch (this) {
+            case ALL_RED -> new SignalProgram(programId, 0, List.of(phase(HOLD_DURATION, "r".repeat(linkCount))));
+            case FLASHING_YELLOW -> new SignalProgram(programId, 0, List.of(
+                    phase(FLASH_DURATION, "y".repeat(linkCount)),
+                    phase(FLASH_DURATION, "O".repeat(linkCount))));
+            case OFF -> new SignalProgram(programId, 0, List.of(phase(HOLD_DURATION, "O".repeat(linkCount))));
+        };
+    }
+
+    public static boolean isOverride(String programId) {
+        for (OverrideProgram override : values()) {
+            if (override.programId.equals(programId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SignalPhase phase(double duration, String state) {
+        return new SignalPhase(duration, state, duration, duration, new int[0], "");
+    }
+}
@@ -0,0 +1,16 @@
+package com.viettel.sumo.model;
+
+import lombok.Data;
+
+/**
+ * Replay of a flow recording. Unset Webster parameters keep their webster.* configuration values.
+ */
+@Data
+public class ReplayRequest {
+    private String recording; // file name in recording.path
+    private String intersectionConfigPath;
+    private Double defaultSaturationVolume;
+    private Integer baseLostTime;
+    private Integer minGreenTimePerStage;
+    private Integer optimizationInterval; // seconds; optimize on this schedule instead of the recorded one
+}
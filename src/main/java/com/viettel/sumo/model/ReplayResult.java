@@ -0,0 +1,27 @@
+package com.viettel.sumo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of replaying a flow recording. Recorded and replayed decisions are only compared when the replay
+ * follows the recorded optimization schedule.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplayResult {
+    private String recording;
+    private long steps;
+    private double simulationTime;
+    private long optimizations;
+    private long intersectionsCalculated;
+    private long oversaturated;          // replayed calculations with Y >= 1
+    private long decisionsCompared;
+    private long decisionsChanged;       // compared decisions with a different cycle or green time
+    private double meanRecordedCycle;
+    private double meanReplayedCycle;
+    private double meanAbsCycleDifference;
+    private long elapsedMillis;
+}
@@ -0,0 +1,16 @@
+package com.viettel.sumo.model;
+
+/**
+ * One phase of a traffic light program, mirroring SUMO's phase definition without native handles.
+ */
+public record SignalPhase(double duration, String state, double minDuration, double maxDuration,
+                          int[] next, String name) {
+
+    public SignalPhaseKind kind() {
+        return SignalPhaseKind.of(state);
+    }
+
+    public SignalPhase withDuration(double newDuration) {
+        return new SignalPhase(newDuration, state, minDuration, maxDuration, next, name);
+    }
+}
@@ -0,0 +1,25 @@
+package com.viettel.sumo.model;
+
+public enum SignalPhaseKind {
+    GREEN,      // at least one movement has green and none shows yellow
+    YELLOW,     // transition from green, at least one movement shows yellow (or red-yellow)
+    RED_CLEAR;  // every movement is red or off
+
+    /**
+     * Classify a SUMO signal state string such as "GGgrrrrrrr".
+     */
+    public static SignalPhaseKind of(String state) {
+        boolean green = false;
+        for (int i = 0; i < state.length(); i++) {
+            switch (state.charAt(i)) {
+                case 'y', 'Y', 'u' -> {
+                    return YELLOW;
+                }
+                case 'G', 'g' -> green = true;
+                default -> {
+                }
+            }
+        }
+        return green ? GREEN : RED_CLEAR;
+    }
+}
@@ -0,0 +1,83 @@
+package com.viettel.sumo.model;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable copy of a traffic light program with its discovered phase structure.
+ * The green phases are the major phases stages map onto, in program order: stage phase index 0 is the
+ * first green phase, 1 the second and so on, whatever yellow and red-clear phases lie between them.
+ */
+@Getter
+public class SignalProgram {
+    private final String programId;
+    private final int type;
+    private final List<SignalPhase> phases;
+    private final int[] greenPhaseIndices;
+
+    public SignalProgram(String programId, int type, List<SignalPhase> phases) {
+        this.programId = programId;
+        this.type = type;
+        this.phases = List.copyOf(phases);
+
+        List<Integer> greens = new ArrayList<>();
+        for (int i = 0; i < phases.size(); i++) {
+            if (phases.get(i).kind() == SignalPhaseKind.GREEN) {
+                greens.add(i);
+            }
+        }
+        this.greenPhaseIndices = greens.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public int getPhaseCount() {
+        return phases.size();
+    }
+
+    public int getGreenPhaseCount() {
+        return greenPhaseIndices.length;
+    }
+
+    /**
+     * @return the program phase index of the n-th green phase, or -1 if the program has fewer green phases
+     */
+    public int getGreenPhaseIndex(int stagePhaseIndex) {
+        return stagePhaseIndex >= 0 && stagePhaseIndex < greenPhaseIndices.length
+                ? greenPhaseIndices[stagePhaseIndex]
+                : -1;
+    }
+
+    /**
+     * @return the index of the first green phase after the given phase, wrapping around; -1 without green phases
+     */
+    public int getNextGreenPhaseIndex(int phaseIndex) {
+        for (int greenPhaseIndex : greenPhaseIndices) {
+            if (greenPhaseIndex > phaseIndex) {
+                return greenPhaseIndex;
+            }
+        }
+        return greenPhaseIndices.length > 0 ? greenPhaseIndices[0] : -1;
+    }
+
+    /**
+     * @return a program with the given phase durations changed, or this program if no duration differs
+     */
+    public SignalProgram withDurations(int[] phaseIndices, int[] durations, int durationOffset) {
+        List<SignalPhase> updated = null;
+        for (int i = 0; i < phaseIndices.length; i++) {
+            int phaseIndex = phaseIndices[i];
+            if (phaseIndex < 0) {
+                continue;
+            }
+            double duration = durations[durationOffset + i];
+            if (phases.get(phaseIndex).duration() != duration) {
+                if (updated == null) {
+                    updated = new ArrayList<>(phases);
+                }
+                updated.set(phaseIndex, phases.get(phaseIndex).withDuration(duration));
+            }
+        }
+        return updated != null ? new SignalProgram(programId, type, updated) : this;
+    }
+}
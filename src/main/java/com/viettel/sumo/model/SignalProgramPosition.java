@@ -0,0 +1,7 @@
+package com.viettel.sumo.model;
+
+/**
+ * Program and phase a light was running before an override program took over.
+ */
+public record SignalProgramPosition(String programId, int phaseIndex) {
+}
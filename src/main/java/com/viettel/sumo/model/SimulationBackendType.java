@@ -0,0 +1,17 @@
+package com.viettel.sumo.model;
+
+/**
+ * Simulator a session runs against.
+ */
+public enum SimulationBackendType {
+
+    /**
+     * A SUMO process driven through libtraci
+     */
+    TRACI,
+
+    /**
+     * In-memory queue model of a grid of intersections, for load tests without SUMO (see synthetic.*)
+     */
+    SYNTHETIC
+}
@@ -0,0 +1,83 @@
+package com.viettel.sumo.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A bounded simulation run submitted through the REST API.
+ * Progress is written by the stepping thread and read by request threads, so all mutable state is volatile.
+ */
+@Getter
+public class SimulationJob {
+    private final String id;
+    private final String simulationId;
+    private final int requestedSteps;
+    private final double realTimeFactor;
+    private final Instant submittedAt = Instant.now();
+    private final double startSimTime;
+
+    private volatile SimulationJobStatus status = SimulationJobStatus.RUNNING;
+    private volatile int stepsCompleted;
+    private volatile double currentSimTime;
+    private volatile Instant finishedAt;
+    private volatile String message;
+
+    public SimulationJob(String id, String simulationId, int requestedSteps, double realTimeFactor,
+                         double startSimTime) {
+        this.id = id;
+        this.simulationId = simulationId;
+        this.requestedSteps = requestedSteps;
+        this.realTimeFactor = realTimeFactor;
+        this.startSimTime = startSimTime;
+        this.currentSimTime = startSimTime;
+    }
+
+    public void recordStep(double simTime) {
+        stepsCompleted++;
+        currentSimTime = simTime;
+    }
+
+    public void finish(SimulationJobStatus finalStatus, String finalMessage) {
+        message = finalMessage;
+        finishedAt = Instant.now();
+        status = finalStatus;
+    }
+
+    @JsonIgnore
+    public boolean isActive() {
+        return status == SimulationJobStatus.RUNNING;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return stepsCompleted >= requestedSteps;
+    }
+
+    public double getElapsedSeconds() {
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        return Duration.between(submittedAt, end).toMillis() / 1000.0;
+    }
+
+    public double getStepsPerSecond() {
+        double elapsed = getElapsedSeconds();
+        return elapsed > 0 ? stepsCompleted / elapsed : 0;
+    }
+
+    /**
+     * @return estimated wall-clock seconds until the job completes, or null if unknown or no longer running
+     */
+    public Double getEtaSeconds() {
+        double rate = getStepsPerSecond();
+        if (!isActive() || rate <= 0) {
+            return null;
+        }
+        return (requestedSteps - stepsCompleted) / rate;
+    }
+
+    public double getProgress() {
+        return requestedSteps > 0 ? (double) stepsCompleted / requestedSteps : 1;
+    }
+}
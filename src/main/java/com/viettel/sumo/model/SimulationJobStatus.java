@@ -0,0 +1,27 @@
+package com.viettel.sumo.model;
+
+/**
+ * Lifecycle states of a simulation job.
+ */
+public enum SimulationJobStatus {
+
+    /**
+     * The job owns the stepping loop and is advancing the simulation
+     */
+    RUNNING,
+
+    /**
+     * All requested steps were executed
+     */
+    COMPLETED,
+
+    /**
+     * The job was cancelled before all steps were executed
+     */
+    CANCELLED,
+
+    /**
+     * The simulation stopped or failed before all steps were executed
+     */
+    FAILED
+}
@@ -0,0 +1,22 @@
+package com.viettel.sumo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Network-wide KPIs of a simulation run. Halting counts cover the incoming lanes of the monitored intersections.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimulationKpis {
+    private long steps;
+    private double simulationTime;
+    private long arrivedVehicles;
+    private long teleports;
+    private double meanHaltingVehicles;
+    private int maxHaltingVehicles;
+    private double haltedVehicleSeconds;
+    private double delayPerArrivedVehicle; // halted vehicle-seconds per arrived vehicle
+}
@@ -0,0 +1,19 @@
+package com.viettel.sumo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SimulationSessionDTO {
+    private String id;
+    private String configPath;
+    private String intersectionConfigPath;
+    private boolean guiMode;
+    private SimulationBackendType backend;
+    private boolean running;
+    private TrafficControlMode controlMode;
+    private double simulationTime;
+    private int intersections;
+    private SimulationSpeedDTO speed;
+}
@@ -0,0 +1,16 @@
+package com.viettel.sumo.model;
+
+import lombok.Data;
+
+/**
+ * Request to create a simulation session. Unset fields fall back to the sumo.* configuration.
+ */
+@Data
+public class SimulationSessionRequest {
+    private String id;
+    private String configPath;
+    private String intersectionConfigPath;
+    private Boolean guiMode;
+    private SimulationBackendType backend;
+    private Double realTimeFactor;
+}
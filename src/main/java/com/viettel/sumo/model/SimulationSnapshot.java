@@ -0,0 +1,41 @@
+package com.viettel.sumo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Java side of a saved simulation state, stored as JSON next to the SUMO state file.
+ * SUMO restores vehicles, time and signal positions; this adds what only the application knows:
+ * the control mode, the phase durations written by the optimization and the collected flow windows.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimulationSnapshot {
+    private String id;
+    private String simulationId;
+    private String configPath;
+    private double simulationTime;
+    private Instant createdAt;
+    private boolean scheduled;
+    private TrafficControlMode controlMode;
+    private Map<String, LightState> lights;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LightState {
+        private String programId;
+        private double[] phaseDurations;
+        /**
+         * Incoming lanes the flow window was collected for, in history order
+         */
+        private List<String> lanes;
+        private int[] flowWindow;
+    }
+}
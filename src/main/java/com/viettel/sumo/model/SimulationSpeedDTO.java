@@ -0,0 +1,13 @@
+package com.viettel.sumo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SimulationSpeedDTO {
+    private double realTimeFactor;
+    private double achievedSpeed;
+    private boolean paused;
+    private long stepsExecuted;
+}
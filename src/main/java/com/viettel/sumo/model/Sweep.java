@@ -0,0 +1,43 @@
+package com.viettel.sumo.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A parameter sweep: a set of runs with different configuration values, executed in parallel.
+ */
+@Getter
+public class Sweep {
+    private final String id;
+    private final SweepRequest request;
+    private final List<SweepRun> runs;
+    private final Instant submittedAt = Instant.now();
+
+    @Setter
+    private volatile SweepStatus status = SweepStatus.RUNNING;
+    @Setter
+    private volatile Instant finishedAt;
+    @Setter
+    private volatile String resultsFile;
+
+    public Sweep(String id, SweepRequest request, List<SweepRun> runs) {
+        this.id = id;
+        this.request = request;
+        this.runs = List.copyOf(runs);
+    }
+
+    public long getRunsFinished() {
+        return runs.stream()
+                .filter(run -> run.getStatus() != SweepStatus.PENDING && run.getStatus() != SweepStatus.RUNNING)
+                .count();
+    }
+
+    @JsonIgnore
+    public boolean isActive() {
+        return status == SweepStatus.RUNNING;
+    }
+}
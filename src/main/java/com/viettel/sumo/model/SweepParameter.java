@@ -0,0 +1,47 @@
+package com.viettel.sumo.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Configuration properties that can be varied by a parameter sweep.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum SweepParameter {
+    BASE_LOST_TIME("webster.baseLostTime", true, false),
+    MIN_GREEN_TIME_PER_STAGE("webster.minGreenTimePerStage", true, false),
+    SATURATION_VOLUME("webster.defaultSaturationVolume", false, true),
+    OPTIMIZATION_INTERVAL("sumo.optimizationInterval", true, true);
+
+    private final String property;
+    private final boolean integer;
+    private final boolean positive; // must be > 0, otherwise >= 0
+
+    /**
+     * @throws IllegalArgumentException if the property cannot be swept
+     */
+    public static SweepParameter fromProperty(String property) {
+        for (SweepParameter parameter : values()) {
+            if (parameter.property.equals(property)) {
+                return parameter;
+            }
+        }
+        throw new IllegalArgumentException("Parameter " + property + " cannot be swept");
+    }
+
+    /**
+     * @throws IllegalArgumentException if a run cannot use the value, once rounded for integer parameters
+     */
+    public void validate(double value) {
+        double used = integer ? Math.round(value) : value;
+        if (Double.isNaN(value) || Double.isInfinite(value) || (positive ? used <= 0 : used < 0)) {
+            throw new IllegalArgumentException("Parameter " + property + " must be " + (positive ? "> 0" : ">= 0")
+                    + (integer ? " once rounded" : "") + ": " + value);
+        }
+    }
+
+    public String format(double value) {
+        return integer ? String.valueOf(Math.round(value)) : String.valueOf(value);
+    }
+}
@@ -0,0 +1,25 @@
+package com.viettel.sumo.model;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class SweepRequest {
+    private String configPath;
+    private String intersectionConfigPath;
+    private int steps = 3600;
+    private SweepSamplingMode sampling = SweepSamplingMode.GRID;
+    private int samples = 10; // number of runs for RANDOM and LATIN_HYPERCUBE
+    private Long seed;
+    private Map<String, Range> parameters = new LinkedHashMap<>(); // keyed by property, e.g. webster.baseLostTime
+
+    @Data
+    public static class Range {
+        private List<Double> values; // GRID
+        private Double min;          // RANDOM and LATIN_HYPERCUBE
+        private Double max;
+    }
+}
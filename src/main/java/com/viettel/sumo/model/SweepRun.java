@@ -0,0 +1,29 @@
+package com.viettel.sumo.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * One run of a parameter sweep, executed by a separate worker process.
+ */
+@Getter
+public class SweepRun {
+    private final int index;
+    private final Map<String, Double> parameters;
+
+    @Setter
+    private volatile SweepStatus status = SweepStatus.PENDING;
+    @Setter
+    private volatile SimulationKpis kpis;
+    @Setter
+    private volatile String message;
+    @Setter
+    private volatile double durationSeconds;
+
+    public SweepRun(int index, Map<String, Double> parameters) {
+        this.index = index;
+        this.parameters = Map.copyOf(parameters);
+    }
+}
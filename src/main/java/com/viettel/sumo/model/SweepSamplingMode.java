@@ -0,0 +1,7 @@
+package com.viettel.sumo.model;
+
+public enum SweepSamplingMode {
+    GRID,               // every combination of the listed values
+    RANDOM,             // independent uniform samples within [min, max]
+    LATIN_HYPERCUBE     // one sample per stratum of every parameter range
+}
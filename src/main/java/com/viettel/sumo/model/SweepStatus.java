@@ -0,0 +1,9 @@
+package com.viettel.sumo.model;
+
+public enum SweepStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+}
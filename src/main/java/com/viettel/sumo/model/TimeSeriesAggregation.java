@@ -0,0 +1,12 @@
+package com.viettel.sumo.model;
+
+/**
+ * How the samples falling into one bucket of a time series query are combined.
+ */
+public enum TimeSeriesAggregation {
+    MEAN,
+    MIN,
+    MAX,
+    SUM,
+    COUNT
+}
@@ -0,0 +1,16 @@
+package com.viettel.sumo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class TimeSeriesCatalogDTO {
+    private int[] resolutions;  // bucket width of each tier in seconds
+    private int[] retentions;   // buckets kept per tier
+    private int maxSeries;
+    private long memoryBytes;
+    private List<String> series;
+}
@@ -0,0 +1,17 @@
+package com.viettel.sumo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Result of a time series query; buckets without samples are left out.
+ */
+@Data
+@AllArgsConstructor
+public class TimeSeriesDTO {
+    private String series;
+    private TimeSeriesAggregation aggregation;
+    private int resolution;     // bucket width in simulation seconds
+    private double[] times;     // bucket start times
+    private double[] values;
+}
@@ -0,0 +1,16 @@
+package com.viettel.sumo.model;
+
+/**
+ * Kinds of TraCI round trips counted by the metrics. Reading subscription results is not a round trip: they
+ * arrive with the simulation step.
+ */
+public enum TraciCommand {
+    SIMULATION_STEP,
+    SIMULATION_READ,
+    SIMULATION_WRITE,
+    SUBSCRIBE,
+    LANE_READ,
+    DETECTOR_READ,
+    TRAFFIC_LIGHT_READ,
+    TRAFFIC_LIGHT_WRITE
+}
@@ -0,0 +1,254 @@
+package com.viettel.sumo.service;
+
+import com.viettel.sumo.config.RecordingConfig;
+import com.viettel.sumo.config.SumoConfig;
+import com.viettel.sumo.config.WebsterConfig;
+import com.viettel.sumo.model.*;
+import com.viettel.sumo.util.FlowHistory;
+import com.viettel.sumo.util.FlowLog;
+import com.viettel.sumo.util.FlowLogReader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Replays flow recordings through the Webster calculation without SUMO.
+ * The recorded lane counts are pushed through the same flow histories and batch kernel as the control loop,
+ * with the Webster parameters of the request, so a recorded day can be re-evaluated in seconds.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FlowReplayService {
+    private final RecordingConfig recordingConfig;
+    private final WebsterConfig websterConfig;
+    private final SumoConfig sumoConfig;
+    private final SumoService sumoService;
+
+    public List<String> getRecordings() throws IOException {
+        Path directory = Path.of(recordingConfig.getPath());
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(FlowLog.FILE_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the recording does not exist or a parameter is invalid
+     */
+    public ReplayResult replay(ReplayRequest request) throws IOException {
+        Path path = resolveRecording(request.getRecording());
+        if (request.getOptimizationInterval() != null && request.getOptimizationInterval() <= 0) {
+            throw new IllegalArgumentException("Optimization interval must be positive");
+        }
+
+        WebsterConfig config = new WebsterConfig();
+        config.setDefaultSaturationVolume(Optional.ofNullable(request.getDefaultSaturationVolume())
+                .orElse(websterConfig.getDefaultSaturationVolume()));
+        config.setBaseLostTime(Optional.ofNullable(request.getBaseLostTime())
+                .orElse(websterConfig.getBaseLostTime()));
+        config.setMinGreenTimePerStage(Optional.ofNullable(request.getMinGreenTimePerStage())
+                .orElse(websterConfig.getMinGreenTimePerStage()));
+        config.setFlowDataCollectionWindow(websterConfig.getFlowDataCollectionWindow());
+
+        Map<String, IntersectionPlan> plans = new HashMap<>();
+        String intersectionConfigPath = Optional.ofNullable(request.getIntersectionConfigPath())
+                .map(sumoService::resolveScenarioPath)
+                .orElse(sumoConfig.getIntersectionConfigPath());
+        for (IntersectionConfiguration intersection :
+                sumoService.loadIntersectionConfigurations(intersectionConfigPath).values()) {
+            try {
+                plans.put(intersection.getSumoId(),
+                        IntersectionPlan.compile(intersection, config.getDefaultSaturationVolume()));
+            } catch (IllegalArgumentException e) {
+                log.error("Traffic light {} will not be replayed: {}", intersection.getSumoId(), e.getMessage());
+            }
+        }
+
+        long start = System.nanoTime();
+        Replay replay = new Replay(new WebsterService(config), plans, request.getOptimizationInterval());
+        try (FlowLogReader reader = new FlowLogReader(path, recordingConfig.getRegionSizeMb() << 20)) {
+            byte tag;
+            while ((tag = reader.next()) != FlowLog.END) {
+                switch (tag) {
+                    case FlowLog.LAYOUT -> replay.layout(reader.getLayout());
+                    case FlowLog.STEP -> replay.step(reader.getTime(), reader.getCounts());
+                    case FlowLog.DECISION -> replay.decision(reader);
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        ReplayResult result = replay.result(path.getFileName().toString(), (System.nanoTime() - start) / 1_000_000);
+        log.info("Replayed {}: {} steps, {} optimizations, {} of {} compared decisions changed in {} ms",
+                result.getRecording(), result.getSteps(), result.getOptimizations(), result.getDecisionsChanged(),
+                result.getDecisionsCompared(), result.getElapsedMillis());
+        return result;
+    }
+
+    private Path resolveRecording(String recording) {
+        if (recording == null) {
+            throw new IllegalArgumentException("No recording given");
+        }
+        Path directory = Path.of(recordingConfig.getPath()).toAbsolutePath().normalize();
+        Path path = directory.resolve(recording).normalize();
+        if (!path.startsWith(directory) || !Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("Recording " + recording + " does not exist");
+        }
+        return path;
+    }
+
+    /**
+     * Flow histories and Webster batch of a replay, rebuilt on every layout record like the topology of a run.
+     */
+    private static class Replay {
+        private final WebsterService websterService;
+        private final Map<String, IntersectionPlan> plans;
+        private final Integer optimizationInterval;
+
+        private FlowHistory[] histories = new FlowHistory[0];
+        private int[] laneOffsets = {0};
+        private int[] layoutPlans = new int[0];
+        private WebsterBatch batch;
+        private double lastOptimization = Double.NaN;
+
+        private long steps;
+        private double simulationTime;
+        private long optimizations;
+        private long intersectionsCalculated;
+        private long oversaturated;
+        private long decisionsCompared;
+        private long decisionsChanged;
+        private double recordedCycles;
+        private double replayedCycles;
+        private double cycleDifferences;
+
+        Replay(WebsterService websterService, Map<String, IntersectionPlan> plans, Integer optimizationInterval) {
+            this.websterService = websterService;
+            this.plans = plans;
+            this.optimizationInterval = optimizationInterval;
+        }
+
+        void layout(FlowLog.Layout layout) {
+            Map<String, FlowHistory> previous = new HashMap<>();
+            for (FlowHistory history : histories) {
+                previous.put(history.getTopology().getSumoId(), history);
+            }
+
+            int intersections = layout.sumoIds().size();
+            histories = new FlowHistory[intersections];
+            laneOffsets = new int[intersections + 1];
+            layoutPlans = new int[intersections];
+            List<IntersectionPlan> batchPlans = new ArrayList<>();
+            List<FlowHistory> batchHistories = new ArrayList<>();
+            for (int i = 0; i < intersections; i++) {
+                String sumoId = layout.sumoIds().get(i);
+                List<String> lanes = layout.lanes().get(i);
+                // Each light replays with the window it had in the run unless the request overrides it
+                int capacity = optimizationInterval != null ? optimizationInterval : layout.historyCapacities().get(i);
+                FlowHistory history = previous.get(sumoId);
+                if (history == null || history.getCapacity() != capacity
+                        || !history.getTopology().getIncomingLanes().equals(lanes)) {
+                    IntersectionTopology topology = new IntersectionTopology(sumoId, lanes,
+                            new int[lanes.size()][0], 0, new SignalProgram("", 0, List.of()));
+                    history = new FlowHistory(topology, capacity);
+                }
+                histories[i] = history;
+                laneOffsets[i + 1] = laneOffsets[i] + lanes.size();
+
+                IntersectionPlan plan = plans.get(sumoId);
+                layoutPlans[i] = plan != null ? batchPlans.size() : -1;
+                if (plan != null) {
+                    batchPlans.add(plan);
+                    batchHistories.add(history);
+                }
+            }
+            batch = new WebsterBatch(batchPlans, batchHistories, layout.stepLength());
+        }
+
+        void step(double time, int[] counts) {
+            for (int i = 0; i < histories.length; i++) {
+                FlowHistory history = histories[i];
+                int offset = laneOffsets[i];
+                for (int l = 0; l < laneOffsets[i + 1] - offset; l++) {
+                    history.record(l, counts[offset + l]);
+                }
+                history.commit();
+            }
+            steps++;
+            simulationTime = time;
+
+            if (optimizationInterval != null && time > 0 && time % optimizationInterval == 0) {
+                optimize();
+            }
+        }
+
+        void decision(FlowLogReader reader) {
+            if (optimizationInterval != null || batch == null) {
+                return;
+            }
+            if (reader.getTime() != lastOptimization) {
+                lastOptimization = reader.getTime();
+                optimize();
+            }
+
+            int plan = reader.getDecisionIntersection() < layoutPlans.length
+                    ? layoutPlans[reader.getDecisionIntersection()]
+                    : -1;
+            if (plan < 0 || !batch.isReady(plan)) {
+                return;
+            }
+
+            decisionsCompared++;
+            double cycle = batch.getCycle(plan);
+            recordedCycles += reader.getDecisionCycle();
+            replayedCycles += cycle;
+            cycleDifferences += Math.abs(cycle - reader.getDecisionCycle());
+
+            boolean changed = cycle != reader.getDecisionCycle()
+                    || reader.getDecisionStageCount() != batch.getPlan(plan).getStageCount();
+            for (int s = 0; !changed && s < reader.getDecisionStageCount(); s++) {
+                changed = batch.getGreenTime(plan, s) != reader.getDecisionGreenTime(s);
+            }
+            if (changed) {
+                decisionsChanged++;
+            }
+        }
+
+        private void optimize() {
+            if (batch == null || batch.size() == 0) {
+                return;
+            }
+            batch.loadFlows();
+            websterService.calculateBatch(batch);
+            optimizations++;
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.isReady(i)) {
+                    intersectionsCalculated++;
+                    if (batch.getYRatio(i) >= 1) {
+                        oversaturated++;
+                    }
+                }
+            }
+        }
+
+        ReplayResult result(String recording, long elapsedMillis) {
+            double compared = Math.max(decisionsCompared, 1);
+            return new ReplayResult(recording, steps, simulationTime, optimizations, intersectionsCalculated,
+                    oversaturated, decisionsCompared, decisionsChanged, recordedCycles / compared,
+                    replayedCycles / compared, cycleDifferences / compared, elapsedMillis);
+        }
+    }
+}
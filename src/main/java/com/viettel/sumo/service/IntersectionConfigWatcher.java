@@ -0,0 +1,139 @@
+package com.viettel.sumo.service;
+
+import com.viettel.sumo.config.SumoConfig;
+import com.viettel.sumo.model.SimulationBackendType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads the intersection configurations of the sessions whose configuration file changed on disk.
+ * Changes are picked up once the file has been quiet for a moment, so an editor saving in several writes
+ * triggers one reload; a file that does not parse or compile leaves the running configurations in place.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IntersectionConfigWatcher {
+    private static final long SETTLE_MILLIS = 500;
+    private static final long IDLE_POLL_MILLIS = 1000;
+
+    private final SumoConfig sumoConfig;
+    private final SimulationSessionRegistry sessionRegistry;
+    private final SumoService sumoService;
+
+    private final Map<Path, WatchKey> watchedDirectories = new HashMap<>();
+    private WatchService watchService;
+    private Thread thread;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!sumoConfig.isWatchIntersectionConfig()) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        thread = new Thread(this::watch, "intersection-config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (thread != null) {
+            thread.interrupt();
+            watchService.close();
+        }
+    }
+
+    private void watch() {
+        // Changed files with the time their last change settles
+        Map<Path, Long> pending = new HashMap<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                watchSessionDirectories();
+
+                WatchKey key = watchService.poll(pending.isEmpty() ? IDLE_POLL_MILLIS : SETTLE_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path file) {
+                            pending.put(directory.resolve(file), System.currentTimeMillis() + SETTLE_MILLIS);
+                        }
+                    }
+                    if (!key.reset()) {
+                        watchedDirectories.remove(directory);
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                Iterator<Map.Entry<Path, Long>> changes = pending.entrySet().iterator();
+                while (changes.hasNext()) {
+                    Map.Entry<Path, Long> change = changes.next();
+                    if (change.getValue() <= now) {
+                        changes.remove();
+                        reload(change.getKey());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Watch the directories of the configuration files of all sessions, including sessions created since the
+     * last poll.
+     */
+    private void watchSessionDirectories() {
+        for (SimulationSession session : sessionRegistry.getSessions()) {
+            Path file = watchedFile(session);
+            if (file == null || watchedDirectories.containsKey(file.getParent())) {
+                continue;
+            }
+            try {
+                watchedDirectories.put(file.getParent(), file.getParent().register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+                log.info("Watching {} for intersection configuration changes", file.getParent());
+            } catch (IOException e) {
+                // Registered again on the next poll, once the directory exists
+                log.debug("Cannot watch {}: {}", file.getParent(), e.getMessage());
+            }
+        }
+    }
+
+    private void reload(Path file) {
+        for (SimulationSession session : sessionRegistry.getSessions()) {
+            if (!file.equals(watchedFile(session))) {
+                continue;
+            }
+            try {
+                // The swap completes on the stepping thread; the watcher does not wait for it
+                sumoService.reloadIntersectionConfigurations(session).whenComplete((result, failure) -> {
+                    if (failure != null) {
+                        log.error("Failed to swap in the intersection configurations of simulation {}",
+                                session.getId(), failure);
+                    }
+                });
+            } catch (RuntimeException e) {
+                log.error("Keeping the intersection configurations of simulation {}: {}", session.getId(),
+                        e.getMessage());
+            }
+        }
+    }
+
+    private static Path watchedFile(SimulationSession session) {
+        if (session.getBackendType() == SimulationBackendType.SYNTHETIC
+                || session.getIntersectionConfigPath() == null) {
+            return null;
+        }
+        return Path.of(session.getIntersectionConfigPath()).toAbsolutePath().normalize();
+    }
+}
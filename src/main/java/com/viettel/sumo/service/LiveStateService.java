@@ -0,0 +1,250 @@
+package com.viettel.sumo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.sumo.config.StreamConfig;
+import com.viettel.sumo.model.LiveOptimizationFrame;
+import com.viettel.sumo.model.LiveStepFrame;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pushes the live state of simulations to Server-Sent Events clients.
+ * <p>
+ * Publishing only marks the state of a simulation as changed or stores the latest frame; a dispatcher serialises
+ * each changed frame once per frame interval and hands it to every client of the simulation. Frames coalesce:
+ * a client still busy with an earlier send is skipped and gets the newest frame of each event on a later tick,
+ * so slow clients never queue up stale frames and load does not grow with the step rate.
+ * <p>
+ * Events: "step" ({@link LiveStepFrame}), "mode" (the control mode) and "optimization"
+ * ({@link LiveOptimizationFrame}).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LiveStateService {
+    private static final int STEP = 0;
+    private static final int MODE = 1;
+    private static final int OPTIMIZATION = 2;
+    private static final String[] EVENT_NAMES = {"step", "mode", "optimization"};
+
+    private final StreamConfig streamConfig;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicLong frameVersions = new AtomicLong();
+    private ScheduledExecutorService dispatcher;
+    private ExecutorService senders;
+
+    @PostConstruct
+    public void init() {
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-state-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        senders = Executors.newFixedThreadPool(streamConfig.getSenderThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "live-state-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleWithFixedDelay(this::dispatch, streamConfig.getFrameIntervalMs(),
+                streamConfig.getFrameIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        channels.values().forEach(Channel::complete);
+    }
+
+    /**
+     * Open a stream of the simulation. The client receives the current state with the next frame.
+     * @throws IllegalStateException if the simulation already has the maximum number of clients
+     */
+    public SseEmitter subscribe(SimulationSession session) {
+        Channel channel = channels.computeIfAbsent(session.getId(), id -> new Channel(session));
+        SseEmitter emitter = new SseEmitter(0L);
+        Client client = new Client(emitter);
+        // Concurrent subscribers must not both pass the check before either is added
+        synchronized (channel) {
+            if (channel.clients.size() >= streamConfig.getMaxClients()) {
+                throw new IllegalStateException("Simulation " + session.getId() + " already has "
+                        + streamConfig.getMaxClients() + " live stream clients");
+            }
+            channel.clients.add(client);
+        }
+        emitter.onCompletion(() -> channel.clients.remove(client));
+        emitter.onTimeout(() -> channel.clients.remove(client));
+        emitter.onError(e -> channel.clients.remove(client));
+
+        channel.stepChanged = true;
+        if (channel.frames.get(MODE) == null) {
+            modeChanged(session);
+        }
+        log.info("Live stream client connected to simulation {} ({} clients)", session.getId(), channel.clients.size());
+        return emitter;
+    }
+
+    /**
+     * Mark the step state of the simulation as changed. Called by the stepping loop on every step, so it only
+     * sets a flag.
+     */
+    public void stateChanged(SimulationSession session) {
+        Channel channel = channels.get(session.getId());
+        if (channel != null) {
+            channel.stepChanged = true;
+        }
+    }
+
+    public void modeChanged(SimulationSession session) {
+        publish(session, MODE, session.getCurrentMode());
+    }
+
+    public void optimized(SimulationSession session, LiveOptimizationFrame frame) {
+        publish(session, OPTIMIZATION, frame);
+    }
+
+    /**
+     * End the streams of a simulation that is removed.
+     */
+    public void close(SimulationSession session) {
+        Channel channel = channels.remove(session.getId());
+        if (channel != null) {
+            channel.complete();
+        }
+    }
+
+    private void publish(SimulationSession session, int event, Object payload) {
+        Channel channel = channels.get(session.getId());
+        if (channel == null) {
+            return;
+        }
+        // Stored even while no client is connected, so a client connecting later does not get a stale frame
+        try {
+            String json = objectMapper.writeValueAsString(payload);
+            channel.frames.set(event, new Frame(frameVersions.incrementAndGet(), json));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialise {} frame of simulation {}", EVENT_NAMES[event], session.getId(), e);
+        }
+    }
+
+    private void dispatch() {
+        long now = System.nanoTime();
+        long heartbeatNanos = TimeUnit.SECONDS.toNanos(streamConfig.getHeartbeatSeconds());
+        for (Channel channel : channels.values()) {
+            try {
+                if (channel.clients.isEmpty()) {
+                    continue;
+                }
+                if (channel.stepChanged) {
+                    channel.stepChanged = false;
+                    publish(channel.session, STEP, stepFrame(channel.session));
+                }
+
+                Frame[] frames = new Frame[EVENT_NAMES.length];
+                for (int event = 0; event < frames.length; event++) {
+                    frames[event] = channel.frames.get(event);
+                }
+                for (Client client : channel.clients) {
+                    boolean pending = false;
+                    for (int event = 0; event < frames.length; event++) {
+                        pending |= frames[event] != null && frames[event].version() > client.sentVersions[event];
+                    }
+                    boolean heartbeat = now - client.lastSend > heartbeatNanos;
+                    if ((pending || heartbeat) && client.sending.compareAndSet(false, true)) {
+                        senders.execute(() -> send(channel, client, frames, now));
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to dispatch live state of simulation {}", channel.session.getId(), e);
+            }
+        }
+    }
+
+    private void send(Channel channel, Client client, Frame[] frames, long now) {
+        try {
+            boolean sent = false;
+            for (int event = 0; event < frames.length; event++) {
+                Frame frame = frames[event];
+                if (frame != null && frame.version() > client.sentVersions[event]) {
+                    client.emitter.send(SseEmitter.event()
+                            .name(EVENT_NAMES[event])
+                            .data(frame.json(), MediaType.APPLICATION_JSON));
+                    client.sentVersions[event] = frame.version();
+                    sent = true;
+                }
+            }
+            if (!sent) {
+                client.emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+            client.lastSend = now;
+        } catch (Exception e) {
+            // The client went away; the emitter callbacks may not fire for a broken connection
+            channel.clients.remove(client);
+            client.emitter.completeWithError(e);
+        } finally {
+            client.sending.set(false);
+        }
+    }
+
+    private LiveStepFrame stepFrame(SimulationSession session) {
+        SimulationStepper stepper = session.getStepper();
+        return new LiveStepFrame(
+                session.getId(),
+                session.isRunning(),
+                stepper.isPaused(),
+                session.getCurrentSimTime(),
+                stepper.getStepsExecuted(),
+                stepper.getRealTimeFactor(),
+                stepper.getAchievedSpeed(),
+                session.getLastStepHaltingCount()
+        );
+    }
+
+    private record Frame(long version, String json) {
+    }
+
+    private static class Channel {
+        final SimulationSession session;
+        final List<Client> clients = new CopyOnWriteArrayList<>();
+        // Written by the stepping and request threads, read by the dispatcher
+        final AtomicReferenceArray<Frame> frames = new AtomicReferenceArray<>(EVENT_NAMES.length);
+        volatile boolean stepChanged;
+
+        Channel(SimulationSession session) {
+            this.session = session;
+        }
+
+        void complete() {
+            for (Client client : clients) {
+                client.emitter.complete();
+            }
+            clients.clear();
+        }
+    }
+
+    private static class Client {
+        final SseEmitter emitter;
+        final AtomicBoolean sending = new AtomicBoolean();
+        final long[] sentVersions = new long[EVENT_NAMES.length];
+        volatile long lastSend = System.nanoTime();
+
+        Client(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.viettel.sumo.service;
+
+import com.viettel.sumo.model.TraciCommand;
+import com.viettel.sumo.model.TrafficControlMode;
+import com.viettel.sumo.util.KpiAccumulator;
+import io.micrometer.core.instrument.*;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Micrometer meters of one simulation session, tagged with the simulation id.
+ * All meters are registered up front so recording on the stepping thread is a plain field access.
+ */
+public class SessionMetrics {
+    private final MeterRegistry registry;
+    private final List<Meter> meters = new ArrayList<>();
+
+    private final Timer collectTimer;
+    private final Timer stepTimer;
+    private final Timer optimizeTimer;
+    private final Counter[] traciCalls = new Counter[TraciCommand.values().length];
+    private final LongAdder traciCallTotal = new LongAdder();
+    private long traciCallsAtLastStep;
+    private final DistributionSummary traciCallsPerStep;
+    private final Timer websterBatchTimer;
+    private final Timer websterIntersectionTimer;
+    private final DistributionSummary cycleLength;
+    private final DistributionSummary yRatio;
+    private final Counter oversaturation;
+    private final Counter skippedOptimizations;
+    private final Map<TrafficControlMode, Timer> modeSwitchTimers = new EnumMap<>(TrafficControlMode.class);
+
+    public SessionMetrics(MeterRegistry registry, SimulationSession session) {
+        this.registry = registry;
+        Tags tags = Tags.of("simulation", session.getId());
+
+        collectTimer = stepPhaseTimer(tags, "collect");
+        stepTimer = stepPhaseTimer(tags, "step");
+        optimizeTimer = stepPhaseTimer(tags, "optimize");
+
+        for (TraciCommand command : TraciCommand.values()) {
+            traciCalls[command.ordinal()] = register(Counter.builder("sumo.traci.calls")
+                    .description("TraCI round trips by command type")
+                    .tags(tags).tag("command", command.name().toLowerCase())
+                    .register(registry));
+        }
+        traciCallsPerStep = register(DistributionSummary.builder("sumo.traci.calls.per.step")
+                .description("TraCI round trips per simulation step")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry));
+
+        websterBatchTimer = register(Timer.builder("sumo.webster.batch")
+                .description("Webster calculation over all intersections of an optimization")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry));
+        websterIntersectionTimer = register(Timer.builder("sumo.webster.intersection")
+                .description("Webster calculation time per intersection")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry));
+        cycleLength = register(DistributionSummary.builder("sumo.webster.cycle.length")
+                .description("Computed cycle lengths")
+                .baseUnit("seconds")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry));
+        yRatio = register(DistributionSummary.builder("sumo.webster.y.ratio")
+                .description("Critical flow ratio Y of optimized intersections")
+                .tags(tags)
+                .serviceLevelObjectives(0.5, 0.7, 0.85, 0.95, 1.0)
+                .register(registry));
+        oversaturation = register(Counter.builder("sumo.webster.oversaturation")
+                .description("Optimizations of an intersection with Y >= 1")
+                .tags(tags)
+                .register(registry));
+        skippedOptimizations = register(Counter.builder("sumo.webster.skipped")
+                .description("Due optimizations skipped because the flows of the intersection barely changed")
+                .tags(tags)
+                .register(registry));
+
+        for (TrafficControlMode mode : TrafficControlMode.values()) {
+            modeSwitchTimers.put(mode, register(Timer.builder("sumo.control.mode.switch")
+                    .description("Time to switch all lights to a control mode")
+                    .tags(tags).tag("mode", mode.name())
+                    .register(registry)));
+        }
+
+        SimulationStepper stepper = session.getStepper();
+        register(Gauge.builder("sumo.simulation.speed.achieved", stepper, SimulationStepper::getAchievedSpeed)
+                .description("Simulated seconds per wall-clock second over the last second")
+                .tags(tags)
+                .register(registry));
+        register(Gauge.builder("sumo.simulation.speed.target", stepper, SimulationStepper::getRealTimeFactor)
+                .description("Requested real-time factor, 0 = as fast as possible")
+                .tags(tags)
+                .register(registry));
+        register(Gauge.builder("sumo.simulation.time", session, SimulationSession::getCurrentSimTime)
+                .baseUnit("seconds")
+                .tags(tags)
+                .register(registry));
+
+        KpiAccumulator kpis = session.getKpis();
+        register(Gauge.builder("sumo.kpi.halting", kpis, KpiAccumulator::getLastStepHalting)
+                .description("Vehicles halting on the monitored approaches in the last step")
+                .tags(tags)
+                .register(registry));
+        register(Gauge.builder("sumo.kpi.waiting", kpis, KpiAccumulator::getWaitingTime)
+                .description("Halted vehicle-seconds on the monitored approaches since the KPI window began")
+                .baseUnit("seconds")
+                .tags(tags)
+                .register(registry));
+        register(Gauge.builder("sumo.kpi.served", kpis, KpiAccumulator::getVehiclesServed)
+                .description("Vehicles served by the monitored approaches since the KPI window began")
+                .tags(tags)
+                .register(registry));
+        register(Gauge.builder("sumo.kpi.delay.mean", kpis, KpiAccumulator::getMeanDelay)
+                .description("Halted seconds per served vehicle since the KPI window began")
+                .baseUnit("seconds")
+                .tags(tags)
+                .register(registry));
+    }
+
+    public void recordCollect(long nanos) {
+        collectTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStep(long nanos) {
+        stepTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordOptimize(long nanos) {
+        optimizeTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void countSkippedOptimizations(int skipped) {
+        skippedOptimizations.increment(skipped);
+    }
+
+    public void countTraci(TraciCommand command, int calls) {
+        traciCalls[command.ordinal()].increment(calls);
+        traciCallTotal.add(calls);
+    }
+
+    /**
+     * Close the TraCI call count of the current step. Called by the stepping thread once per step.
+     */
+    public void endStep() {
+        long total = traciCallTotal.sum();
+        traciCallsPerStep.record(total - traciCallsAtLastStep);
+        traciCallsAtLastStep = total;
+    }
+
+    /**
+     * Record a batch Webster calculation and the cycle lengths and flow ratios it produced.
+     */
+    public void recordWebster(WebsterBatch batch, long nanos) {
+        websterBatchTimer.record(nanos, TimeUnit.NANOSECONDS);
+
+        int ready = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (!batch.isReady(i)) {
+                continue;
+            }
+            ready++;
+            cycleLength.record(batch.getCycle(i));
+            double y = batch.getYRatio(i);
+            if (Double.isFinite(y)) {
+                yRatio.record(y);
+            }
+            if (y >= 1.0) {
+                oversaturation.increment();
+            }
+        }
+        if (ready > 0) {
+            websterIntersectionTimer.record(nanos / ready, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordModeSwitch(TrafficControlMode mode, long nanos) {
+        modeSwitchTimers.get(mode).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Remove the meters of the session from the registry.
+     */
+    public void close() {
+        meters.forEach(registry::remove);
+        meters.clear();
+    }
+
+    private Timer stepPhaseTimer(Tags tags, String phase) {
+        return register(Timer.builder("sumo.step.duration")
+                .description("Wall-clock time of the phases of a simulation step")
+                .tags(tags).tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private <T extends Meter> T register(T meter) {
+        meters.add(meter);
+        return meter;
+    }
+}
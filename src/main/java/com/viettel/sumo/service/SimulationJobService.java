@@ -0,0 +1,84 @@
+package com.viettel.sumo.service;
+
+import com.viettel.sumo.model.SimulationJob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Keeps track of simulation jobs submitted through the REST API.
+ * Only one job can own the stepping loop of a simulation at a time; finished jobs are kept for inspection
+ * up to a bounded history.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SimulationJobService {
+    private static final int MAX_JOB_HISTORY = 100;
+
+    private final SimulationService simulationService;
+
+    // Guarded by itself; never held while waiting for a stepping thread, which would block every simulation
+    private final Map<String, SimulationJob> jobs = new LinkedHashMap<>();
+
+    /**
+     * Submit a job that runs the simulation for the given number of steps.
+     * @param realTimeFactor pace of the job, 0 runs as fast as possible
+     * @throws IllegalStateException if another job is still running
+     */
+    public SimulationJob submit(SimulationSession session, int steps, double realTimeFactor) {
+        if (steps <= 0) {
+            throw new IllegalArgumentException("Number of steps must be positive");
+        }
+        if (realTimeFactor < 0) {
+            throw new IllegalArgumentException("Real-time factor must be >= 0");
+        }
+
+        SimulationJob job = simulationService.startJob(session, UUID.randomUUID().toString(), steps, realTimeFactor);
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            evictFinishedJobs();
+        }
+        return job;
+    }
+
+    public Optional<SimulationJob> getJob(SimulationSession session, String jobId) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(jobId))
+                    .filter(job -> job.getSimulationId().equals(session.getId()));
+        }
+    }
+
+    public List<SimulationJob> getJobs(SimulationSession session) {
+        List<SimulationJob> result = new ArrayList<>();
+        synchronized (jobs) {
+            for (SimulationJob job : jobs.values()) {
+                if (job.getSimulationId().equals(session.getId())) {
+                    result.add(job);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cancel a running job. The simulation keeps running at the pace it had before the job.
+     * @return the job, or empty if no job with this id exists
+     */
+    public Optional<SimulationJob> cancel(SimulationSession session, String jobId) {
+        Optional<SimulationJob> job = getJob(session, jobId);
+        job.filter(SimulationJob::isActive).ifPresent(active -> simulationService.cancelJob(session, active));
+        return job;
+    }
+
+    private void evictFinishedJobs() {
+        Iterator<SimulationJob> iterator = jobs.values().iterator();
+        while (jobs.size() > MAX_JOB_HISTORY && iterator.hasNext()) {
+            if (!iterator.next().isActive()) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -1,86 +1,321 @@
 package com.viettel.sumo.service;
 
 import com.viettel.sumo.config.SumoConfig;
+import com.viettel.sumo.model.IntersectionPlan;
+import com.viettel.sumo.model.KpiReportDTO;
+import com.viettel.sumo.model.LiveOptimizationFrame;
+import com.viettel.sumo.model.SimulationJob;
+import com.viettel.sumo.model.SimulationJobStatus;
+import com.viettel.sumo.model.SimulationSnapshot;
+import com.viettel.sumo.model.SimulationSpeedDTO;
 import com.viettel.sumo.model.TrafficControlMode;
-import com.viettel.sumo.model.WebsterInputDTO;
-import com.viettel.sumo.model.WebsterOutputDTO;
+import com.viettel.sumo.util.FlowLogWriter;
+import com.viettel.sumo.util.TimeSeries;
+import com.viettel.sumo.util.TimeSeriesStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.eclipse.sumo.libtraci.Simulation;
-import org.eclipse.sumo.libtraci.StringVector;
-import org.eclipse.sumo.libtraci.TrafficLight;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SimulationService {
+    private static final String KPI_RESET_COMMAND = "kpi-reset";
+
     private final SumoService sumoService;
     private final WebsterService websterService;
     private final SumoConfig sumoConfig;
     private final TrafficControlService trafficControlService;
+    private final LiveStateService liveStateService;
+    private final SimulationSnapshotService snapshotService;
 
-    public void startSimulation() {
-        sumoService.startSimulation();
+    public void startSimulation(SimulationSession session) {
+        startSimulation(session, null);
     }
 
-    public void stopSimulation() {
-        sumoService.stopSimulation();
+    /**
+     * @param snapshotId snapshot to continue from, or null to start at the scenario's begin
+     * @throws IllegalArgumentException if the snapshot does not exist or belongs to another scenario
+     */
+    public void startSimulation(SimulationSession session, String snapshotId) {
+        SimulationSnapshot snapshot = snapshotId != null ? snapshotService.get(session, snapshotId) : null;
+        sumoService.startSimulation(session, snapshot != null ? snapshotService.getStateFile(snapshot) : null);
+        if (session.isRunning()) {
+            if (snapshot != null) {
+                snapshotService.restore(session, snapshot);
+                if (snapshot.getControlMode() != null && snapshot.getControlMode() != session.getCurrentMode()) {
+                    trafficControlService.setControlMode(session, snapshot.getControlMode());
+                }
+            }
+            snapshotService.scheduleSnapshots(session);
+            session.getStepper().start(() -> runSimulationStep(session));
+        }
+        liveStateService.stateChanged(session);
+        liveStateService.modeChanged(session);
     }
 
-    public boolean isSimulationRunning() {
-        return sumoService.isSimulationRunning();
+    public void stopSimulation(SimulationSession session) {
+        session.getStepper().stop();
+        sumoService.stopSimulation(session);
+
+        SimulationJob job = session.getActiveJob();
+        if (job != null) {
+            finishJob(session, job, SimulationJobStatus.CANCELLED, "Simulation stopped");
+        }
+        liveStateService.stateChanged(session);
     }
 
-    @Scheduled(fixedRate = 1000)
-    public void runSimulationStep() {
-        if (!sumoService.isSimulationRunning()) {
-            return;
+    public boolean isSimulationRunning(SimulationSession session) {
+        return session.isRunning();
+    }
+
+    public void pauseSimulation(SimulationSession session) {
+        session.getStepper().pause();
+        liveStateService.stateChanged(session);
+    }
+
+    public void resumeSimulation(SimulationSession session) {
+        session.getStepper().resume();
+        liveStateService.stateChanged(session);
+    }
+
+    public void setRealTimeFactor(SimulationSession session, double realTimeFactor) {
+        session.getStepper().setRealTimeFactor(realTimeFactor);
+        liveStateService.stateChanged(session);
+    }
+
+    public SimulationSpeedDTO getSimulationSpeed(SimulationSession session) {
+        SimulationStepper stepper = session.getStepper();
+        return new SimulationSpeedDTO(
+                stepper.getRealTimeFactor(),
+                stepper.getAchievedSpeed(),
+                stepper.isPaused(),
+                stepper.getStepsExecuted()
+        );
+    }
+
+    /**
+     * @param sumoId intersection to report, or null for all monitored intersections
+     */
+    public KpiReportDTO getKpis(SimulationSession session, String sumoId) {
+        return session.getKpis().report(sumoId, session.getCurrentMode(), session.getCurrentSimTime());
+    }
+
+    /**
+     * Start a new KPI window at the current simulation time, so control modes can be compared over equal windows.
+     */
+    public CompletableFuture<Double> resetKpis(SimulationSession session) {
+        // Between two steps, so no step is split across the windows; resets queued together coalesce
+        return session.getStepper().submit(KPI_RESET_COMMAND, () -> {
+            double windowStart = session.getCurrentSimTime();
+            session.getKpis().reset(windowStart);
+            log.info("Reset KPIs of simulation {} at {} s", session.getId(), windowStart);
+            return windowStart;
+        });
+    }
+
+    private boolean runSimulationStep(SimulationSession session) {
+        if (!session.isRunning()) {
+            return false;
         }
 
-        sumoService.stepSimulation();
+        sumoService.stepSimulation(session);
 
         // Only optimize traffic signals if we're in adaptive mode
-        if (trafficControlService.getCurrentMode() == TrafficControlMode.ADAPTIVE_MODE) {
-            double simTime = Simulation.getTime();
-            if (simTime > 0 && simTime % sumoConfig.getOptimizationInterval() == 0) {
-                optimizeTrafficSignals();
+        double simTime = session.getCurrentSimTime();
+        if (trafficControlService.getCurrentMode(session) == TrafficControlMode.ADAPTIVE_MODE) {
+            long start = System.nanoTime();
+            if (optimizeTrafficSignals(session)) {
+                session.getMetrics().recordOptimize(System.nanoTime() - start);
             }
         }
+        session.getMetrics().endStep();
+        snapshotService.saveIfDue(session);
+        liveStateService.stateChanged(session);
+
+        SimulationJob job = session.getActiveJob();
+        if (job != null) {
+            job.recordStep(simTime);
+            if (!session.isRunning()) {
+                finishJob(session, job, SimulationJobStatus.FAILED,
+                        "Simulation stopped before all steps were executed");
+            } else if (job.isFinished()) {
+                finishJob(session, job, SimulationJobStatus.COMPLETED,
+                        "Executed " + job.getStepsCompleted() + " steps");
+            }
+        }
+
+        return session.isRunning();
     }
 
-    private void optimizeTrafficSignals() {
-        log.info("Optimizing traffic signals at simulation time: {}", Simulation.getTime());
+    /**
+     * Optimize the intersections whose staggered slot falls on this step and whose flows changed enough.
+     * @return whether any intersection was due
+     */
+    private boolean optimizeTrafficSignals(SimulationSession session) {
+        WebsterBatch batch = session.getWebsterBatch();
+        if (batch == null || batch.size() == 0) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        int ready = batch.loadDueFlows(sumoService.currentStep(session), sumoConfig.getOptimizationChangeThreshold());
+        int due = batch.getLastDue();
+        if (due == 0) {
+            return false;
+        }
+        session.getMetrics().countSkippedOptimizations(due - ready);
+        if (ready == 0) {
+            return true;
+        }
+
+        websterService.calculateBatch(batch);
+        long calculated = System.nanoTime();
+        session.getMetrics().recordWebster(batch, calculated - start);
+        recordDecisions(session, batch);
+        recordTimeSeries(session, batch);
+        int changed = sumoService.applyWebsterBatch(session, batch);
+        liveStateService.optimized(session, optimizationFrame(session, batch, changed, (calculated - start) / 1_000));
 
-        StringVector tlIDs = TrafficLight.getIDList();
+        log.debug("Optimized {} of {} due traffic signals of simulation {} at simulation time {} "
+                        + "(calculation {} us, apply {} ms)",
+                ready, due, session.getId(), session.getCurrentSimTime(),
+                (calculated - start) / 1_000, (System.nanoTime() - calculated) / 1_000_000);
+        return true;
+    }
 
-        for (String tlID : tlIDs) {
-            WebsterInputDTO input = sumoService.prepareWebsterInput(tlID);
-            if (input == null) {
-                continue;
+    private LiveOptimizationFrame optimizationFrame(SimulationSession session, WebsterBatch batch, int changed,
+                                                    long calculationMicros) {
+        int calculated = 0;
+        int oversaturated = 0;
+        double cycleSum = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isReady(i)) {
+                calculated++;
+                cycleSum += batch.getCycle(i);
+                if (batch.getYRatio(i) >= 1) {
+                    oversaturated++;
+                }
             }
+        }
+        return new LiveOptimizationFrame(session.getId(), session.getCurrentSimTime(), calculated, changed,
+                oversaturated, calculated > 0 ? cycleSum / calculated : 0, calculationMicros);
+    }
 
-            WebsterOutputDTO output = websterService.calculateWebster(input);
-            sumoService.applyWebsterOutput(tlID, output);
+    private void recordDecisions(SimulationSession session, WebsterBatch batch) {
+        FlowLogWriter recorder = session.getFlowRecorder();
+        if (recorder == null) {
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isReady(i)) {
+                IntersectionPlan plan = batch.getPlan(i);
+                recorder.writeDecision(session.getCurrentSimTime(), plan.getSumoId(), batch.getCycle(i),
+                        batch.getYRatio(i), batch.greenTimes, batch.stageOffsets[i], plan.getStageCount());
+            }
         }
     }
 
-    public void runSimulationFor(int steps) {
-        if (!sumoService.isSimulationRunning()) {
-            sumoService.startSimulation();
+    private void recordTimeSeries(SimulationSession session, WebsterBatch batch) {
+        TimeSeriesStore store = session.getTimeSeries();
+        if (store == null) {
+            return;
+        }
+
+        double simTime = session.getCurrentSimTime();
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isReady(i)) {
+                String tlID = batch.getPlan(i).getSumoId();
+                addSample(store.series(TimeSeriesStore.INTERSECTION_CYCLE, tlID), simTime, batch.getCycle(i));
+                addSample(store.series(TimeSeriesStore.INTERSECTION_Y, tlID), simTime, batch.getYRatio(i));
+            }
         }
+    }
 
-        for (int i = 0; i < steps; i++) {
-            sumoService.stepSimulation();
+    private static void addSample(TimeSeries series, double time, double value) {
+        if (series != null) {
+            series.add(time, value);
+        }
+    }
 
-            // Only optimize if in adaptive mode
-            if (trafficControlService.getCurrentMode() == TrafficControlMode.ADAPTIVE_MODE) {
-                double simTime = Simulation.getTime();
-                if (simTime > 0 && simTime % sumoConfig.getOptimizationInterval() == 0) {
-                    optimizeTrafficSignals();
+    /**
+     * Hand the stepping loop of a session to a job until it has executed its steps or is cancelled.
+     * A simulation that is not running is started like through the API first.
+     * The loop keeps stepping at the previous pace once the job has finished.
+     * @throws IllegalStateException if a job is already running or the operator paused the simulation
+     */
+    public SimulationJob startJob(SimulationSession session, String jobId, int steps, double realTimeFactor) {
+        SimulationStepper stepper = session.getStepper();
+        synchronized (session) {
+            if (stepper.isRunning() && stepper.isPaused()) {
+                throw new IllegalStateException("Simulation is paused, resume it before submitting a job");
+            }
+            if (!session.isRunning()) {
+                startSimulation(session);
+                if (!session.isRunning()) {
+                    throw new IllegalStateException("Failed to start simulation");
                 }
             }
+            if (!stepper.isRunning()) {
+                stepper.start(() -> runSimulationStep(session));
+            }
+        }
+
+        // Handed over between two steps. Not awaited inside the session monitor: the step in progress may
+        // finish the active job, which takes the monitor on the stepping thread
+        SimulationJob job = await(stepper.submit(null, () -> {
+            SimulationJob activeJob = session.getActiveJob();
+            if (activeJob != null) {
+                throw new IllegalStateException("Simulation job " + activeJob.getId() + " is already running");
+            }
+            SimulationJob started = new SimulationJob(jobId, session.getId(), steps, realTimeFactor,
+                    session.getCurrentSimTime());
+            session.setRealTimeFactorBeforeJob(stepper.getRealTimeFactor());
+            stepper.setRealTimeFactor(realTimeFactor);
+            session.setActiveJob(started);
+            return started;
+        }));
+
+        log.info("Started simulation job {} on {} for {} steps", jobId, session.getId(), steps);
+        return job;
+    }
+
+    public void cancelJob(SimulationSession session, SimulationJob job) {
+        await(session.getStepper().submit(null, () -> {
+            finishJob(session, job, SimulationJobStatus.CANCELLED,
+                    "Cancelled after " + job.getStepsCompleted() + " steps");
+            return null;
+        }));
+    }
+
+    /**
+     * Wait for a command of the stepping thread, rethrowing its failure as is.
+     */
+    private static <T> T await(CompletableFuture<T> command) {
+        try {
+            return command.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void finishJob(SimulationSession session, SimulationJob job, SimulationJobStatus status, String message) {
+        synchronized (session) {
+            if (session.getActiveJob() != job) {
+                return;
+            }
+
+            session.setActiveJob(null);
+            session.getStepper().setRealTimeFactor(session.getRealTimeFactorBeforeJob());
+            job.finish(status, message);
+            log.info("Simulation job {} {}: {}", job.getId(), status, message);
         }
     }
 }
@@ -0,0 +1,133 @@
+package com.viettel.sumo.service;
+
+import com.viettel.sumo.backend.SimulationBackend;
+import com.viettel.sumo.model.IntersectionConfiguration;
+import com.viettel.sumo.model.IntersectionPlan;
+import com.viettel.sumo.model.SignalProgram;
+import com.viettel.sumo.model.SignalProgramPosition;
+import com.viettel.sumo.model.SimulationBackendType;
+import com.viettel.sumo.model.SimulationJob;
+import com.viettel.sumo.model.TrafficControlMode;
+import com.viettel.sumo.util.FlowHistory;
+import com.viettel.sumo.util.FlowLogWriter;
+import com.viettel.sumo.util.KpiAccumulator;
+import com.viettel.sumo.util.RunStatistics;
+import com.viettel.sumo.util.TimeSeries;
+import com.viettel.sumo.util.TimeSeriesStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State of one simulation run: its simulator backend, scenario, intersection configurations,
+ * topology, flow histories, control mode and stepping loop.
+ * Several sessions can run side by side in one JVM, each against its own SUMO process or synthetic model.
+ */
+@Getter
+public class SimulationSession {
+    private final String id;
+    private final String configPath;
+    private final String intersectionConfigPath;
+    private final boolean guiMode;
+    private final SimulationBackendType backendType;
+    private final SimulationBackend backend;
+    /**
+     * Configurations and compiled plans, replaced together when the configuration file is reloaded
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile Intersections intersections;
+    private final TopologyIndex topologyIndex = new TopologyIndex();
+    private final Map<String, FlowHistory> flowHistories = new ConcurrentHashMap<>();
+    /**
+     * Program of every light as last written to (or read from) SUMO, used to diff phase duration updates
+     */
+    private final Map<String, SignalProgram> signalPrograms = new ConcurrentHashMap<>();
+    /**
+     * Lights currently running an override program, with the position to restore
+     */
+    private final Map<String, SignalProgramPosition> signalOverrides = new ConcurrentHashMap<>();
+    private final SimulationStepper stepper;
+    private final RunStatistics runStatistics = new RunStatistics();
+    private final KpiAccumulator kpis;
+    private final SessionMetrics metrics;
+
+    @Setter
+    private volatile boolean running;
+    @Setter
+    private volatile double currentSimTime;
+    @Setter
+    private volatile TrafficControlMode currentMode = TrafficControlMode.NORMAL_MODE;
+    @Setter
+    private List<FlowHistory> monitoredHistories = List.of();
+    @Setter
+    private volatile WebsterBatch websterBatch;
+    @Setter
+    private int lastStepHaltingCount;
+    @Setter
+    private volatile FlowLogWriter flowRecorder;
+    /**
+     * Induction loop measuring each monitored lane in collection order; null for lanes counted by occupancy
+     */
+    @Setter
+    private String[] laneDetectors = new String[0];
+    @Setter
+    private volatile TimeSeriesStore timeSeries;
+    /**
+     * Vehicle and halting series of the monitored lanes in collection order; null entries are not recorded
+     */
+    @Setter
+    private TimeSeries[] laneVehicleSeries = new TimeSeries[0];
+    @Setter
+    private TimeSeries[] laneHaltingSeries = new TimeSeries[0];
+    /**
+     * Simulation time of the next scheduled state snapshot
+     */
+    @Setter
+    private double nextSnapshotTime = Double.POSITIVE_INFINITY;
+    @Setter
+    private volatile SimulationJob activeJob;
+    @Setter
+    private double realTimeFactorBeforeJob;
+
+    public SimulationSession(String id, String configPath, String intersectionConfigPath, boolean guiMode,
+                             SimulationBackendType backendType, SimulationBackend backend,
+                             Map<String, IntersectionConfiguration> intersectionConfigs,
+                             Map<String, IntersectionPlan> intersectionPlans,
+                             double stepLength, double realTimeFactor, MeterRegistry meterRegistry) {
+        this.id = id;
+        this.configPath = configPath;
+        this.intersectionConfigPath = intersectionConfigPath;
+        this.guiMode = guiMode;
+        this.backendType = backendType;
+        this.backend = backend;
+        setIntersections(intersectionConfigs, intersectionPlans);
+        this.stepper = new SimulationStepper(id, stepLength, realTimeFactor);
+        this.kpis = new KpiAccumulator(stepLength);
+        this.metrics = new SessionMetrics(meterRegistry, this);
+        backend.setCallCounter(metrics::countTraci);
+    }
+
+    public Map<String, IntersectionConfiguration> getIntersectionConfigs() {
+        return intersections.configs();
+    }
+
+    public Map<String, IntersectionPlan> getIntersectionPlans() {
+        return intersections.plans();
+    }
+
+    /**
+     * Swap in new configurations and their plans in one write; readers see either the old or the new set.
+     */
+    public void setIntersections(Map<String, IntersectionConfiguration> configs, Map<String, IntersectionPlan> plans) {
+        intersections = new Intersections(Map.copyOf(configs), Map.copyOf(plans));
+    }
+
+    private record Intersections(Map<String, IntersectionConfiguration> configs,
+                                 Map<String, IntersectionPlan> plans) {
+    }
+}
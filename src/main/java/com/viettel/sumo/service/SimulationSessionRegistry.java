@@ -0,0 +1,200 @@
+package com.viettel.sumo.service;
+
+import com.viettel.sumo.backend.SimulationBackendFactory;
+import com.viettel.sumo.backend.SyntheticSimulationBackend;
+import com.viettel.sumo.config.SumoConfig;
+import com.viettel.sumo.config.SyntheticConfig;
+import com.viettel.sumo.config.TimeSeriesConfig;
+import com.viettel.sumo.event.TopologyChangedEvent;
+import com.viettel.sumo.exception.SimulationNotFoundException;
+import com.viettel.sumo.model.IntersectionConfiguration;
+import com.viettel.sumo.model.IntersectionPlan;
+import com.viettel.sumo.model.SimulationBackendType;
+import com.viettel.sumo.model.SimulationSessionDTO;
+import com.viettel.sumo.model.SimulationSessionRequest;
+import com.viettel.sumo.util.TimeSeriesStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Owns the simulation sessions of this JVM.
+ * The "default" session is created from the sumo.* configuration and backs the un-scoped /api/simulation
+ * endpoints; further sessions are created through /api/simulations and run against their own SUMO process.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SimulationSessionRegistry {
+    public static final String DEFAULT_SIMULATION_ID = "default";
+    private static final String TOPOLOGY_COMMAND = "topology";
+    private static final Pattern SIMULATION_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final SumoConfig sumoConfig;
+    private final SumoService sumoService;
+    private final SimulationService simulationService;
+    private final MeterRegistry meterRegistry;
+    private final SimulationBackendFactory backendFactory;
+    private final SyntheticConfig syntheticConfig;
+    private final LiveStateService liveStateService;
+    private final TimeSeriesConfig timeSeriesConfig;
+
+    private final Map<String, SimulationSession> sessions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        SimulationSessionRequest request = new SimulationSessionRequest();
+        request.setId(DEFAULT_SIMULATION_ID);
+        create(request);
+    }
+
+    public SimulationSession getDefaultSession() {
+        return sessions.get(DEFAULT_SIMULATION_ID);
+    }
+
+    /**
+     * @param simulationId id of the session, or null for the default session
+     * @throws SimulationNotFoundException if no session with this id exists
+     */
+    public SimulationSession resolve(String simulationId) {
+        if (simulationId == null) {
+            return getDefaultSession();
+        }
+
+        SimulationSession session = sessions.get(simulationId);
+        if (session == null) {
+            throw new SimulationNotFoundException(simulationId);
+        }
+        return session;
+    }
+
+    public List<SimulationSession> getSessions() {
+        List<SimulationSession> result = new ArrayList<>(sessions.values());
+        result.sort(Comparator.comparing(SimulationSession::getId));
+        return result;
+    }
+
+    /**
+     * Create a new, not yet started session.
+     * @throws IllegalArgumentException if the id is invalid or already in use, or a path lies outside the
+     * scenarios directory
+     */
+    public synchronized SimulationSession create(SimulationSessionRequest request) {
+        String id = request.getId() != null
+                ? request.getId()
+                : "sim-" + UUID.randomUUID().toString().substring(0, 8);
+        if (!SIMULATION_ID_PATTERN.matcher(id).matches()) {
+            throw new IllegalArgumentException("Simulation id must match " + SIMULATION_ID_PATTERN.pattern());
+        }
+        if (sessions.containsKey(id)) {
+            throw new IllegalArgumentException("Simulation " + id + " already exists");
+        }
+
+        SimulationBackendType backendType = Optional.ofNullable(request.getBackend()).orElse(sumoConfig.getBackend());
+        // Paths of a request may only name files of the scenarios directory, the configured ones are trusted
+        String intersectionConfigPath = Optional.ofNullable(request.getIntersectionConfigPath())
+                .map(sumoService::resolveScenarioPath)
+                .orElse(sumoConfig.getIntersectionConfigPath());
+        // The synthetic network comes with its own intersection configurations
+        Map<String, IntersectionConfiguration> intersectionConfigs = backendType == SimulationBackendType.SYNTHETIC
+                ? SyntheticSimulationBackend.intersectionConfigurations(syntheticConfig)
+                : sumoService.loadIntersectionConfigurations(intersectionConfigPath);
+        String configPath = Optional.ofNullable(request.getConfigPath())
+                .map(sumoService::resolveScenarioPath)
+                .orElse(sumoConfig.getConfigPath());
+        Map<String, IntersectionPlan> intersectionPlans = sumoService.compileIntersectionPlans(intersectionConfigs);
+        if (backendType != SimulationBackendType.SYNTHETIC) {
+            sumoService.validateIntersectionPlans(configPath, intersectionPlans);
+        }
+        SimulationSession session = new SimulationSession(
+                id,
+                configPath,
+                intersectionConfigPath,
+                Optional.ofNullable(request.getGuiMode()).orElse(sumoConfig.isGuiMode()),
+                backendType,
+                backendFactory.create(backendType, id),
+                intersectionConfigs,
+                intersectionPlans,
+                sumoConfig.getStepLength(),
+                Optional.ofNullable(request.getRealTimeFactor()).orElse(sumoConfig.getRealTimeFactor()),
+                meterRegistry
+        );
+        if (timeSeriesConfig.isEnabled()) {
+            session.setTimeSeries(new TimeSeriesStore(timeSeriesConfig.getResolutions(),
+                    timeSeriesConfig.getRetentions(), timeSeriesConfig.getMaxSeries()));
+        }
+        sessions.put(id, session);
+
+        log.info("Created {} simulation {} for scenario {}", backendType, id,
+                backendType == SimulationBackendType.SYNTHETIC ? "synthetic" : session.getConfigPath());
+        return session;
+    }
+
+    /**
+     * Stop a session if it is running and forget it. The default session cannot be removed.
+     */
+    public void remove(String simulationId) {
+        if (DEFAULT_SIMULATION_ID.equals(simulationId)) {
+            throw new IllegalArgumentException("The default simulation cannot be removed");
+        }
+
+        SimulationSession session = resolve(simulationId);
+        if (session.isRunning()) {
+            simulationService.stopSimulation(session);
+        }
+        sessions.remove(simulationId);
+        liveStateService.close(session);
+        session.getMetrics().close();
+        log.info("Removed simulation {}", simulationId);
+    }
+
+    public SimulationSessionDTO describe(SimulationSession session) {
+        return new SimulationSessionDTO(
+                session.getId(),
+                session.getConfigPath(),
+                session.getIntersectionConfigPath(),
+                session.isGuiMode(),
+                session.getBackendType(),
+                session.isRunning(),
+                session.getCurrentMode(),
+                session.getCurrentSimTime(),
+                session.getIntersectionConfigs().size(),
+                simulationService.getSimulationSpeed(session)
+        );
+    }
+
+    @EventListener
+    public void onTopologyChanged(TopologyChangedEvent event) {
+        SimulationSession session = sessions.get(event.simulationId());
+        if (session == null || !session.isRunning()) {
+            return;
+        }
+
+        log.info("Topology change signalled for {} ({}), rebuilding topology index",
+                session.getId(), event.reason());
+        // Rebuilt between two steps; changes signalled while a rebuild is queued are covered by it
+        session.getStepper().submit(TOPOLOGY_COMMAND, () -> {
+            sumoService.refreshTopology(session);
+            return null;
+        }).join();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (SimulationSession session : sessions.values()) {
+            if (session.isRunning()) {
+                simulationService.stopSimulation(session);
+            } else {
+                session.getStepper().stop();
+            }
+        }
+    }
+}
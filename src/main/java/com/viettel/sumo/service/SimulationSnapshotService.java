@@ -0,0 +1,280 @@
+package com.viettel.sumo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.sumo.backend.SimulationBackend;
+import com.viettel.sumo.config.SnapshotConfig;
+import com.viettel.sumo.model.SignalPhase;
+import com.viettel.sumo.model.SignalProgram;
+import com.viettel.sumo.model.SimulationBackendType;
+import com.viettel.sumo.model.SimulationSnapshot;
+import com.viettel.sumo.util.FlowHistory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Saves running SUMO simulations as snapshots and restores them, so long runs survive crashes and studies can
+ * start from a warmed-up network instead of an empty one.
+ * A snapshot is a SUMO state file ({@code <id>.state.xml.gz}) plus a {@link SimulationSnapshot} sidecar
+ * ({@code <id>.json}). Snapshots are written while no override program runs, because SUMO cannot restore a
+ * light into a program installed through TraCI.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SimulationSnapshotService {
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+    private static final String STATE_SUFFIX = ".state.xml.gz";
+    private static final String SIDECAR_SUFFIX = ".json";
+
+    private final SnapshotConfig snapshotConfig;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Schedule the first snapshot of a run that just started at the session's current time.
+     */
+    public void scheduleSnapshots(SimulationSession session) {
+        double interval = snapshotConfig.getIntervalSeconds();
+        session.setNextSnapshotTime(interval > 0
+                ? (Math.floor(session.getCurrentSimTime() / interval) + 1) * interval
+                : Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Save a scheduled snapshot if the simulation time reached the next slot; called by the stepping thread.
+     */
+    public void saveIfDue(SimulationSession session) {
+        if (!snapshotConfig.isEnabled()
+                || session.getBackendType() == SimulationBackendType.SYNTHETIC
+                || session.getCurrentSimTime() < session.getNextSnapshotTime()) {
+            return;
+        }
+
+        scheduleSnapshots(session);
+        if (!session.getSignalOverrides().isEmpty()) {
+            log.info("Skipping snapshot of simulation {}: lights run override programs", session.getId());
+            return;
+        }
+        try {
+            String id = session.getId() + "-" + Math.round(session.getCurrentSimTime()) + "s";
+            save(session, id, true);
+            prune(session.getId());
+        } catch (RuntimeException e) {
+            log.error("Failed to save snapshot of simulation {}", session.getId(), e);
+        }
+    }
+
+    /**
+     * Save a named snapshot, replacing an earlier snapshot of the same name.
+     * @throws IllegalArgumentException if the name is invalid
+     * @throws IllegalStateException if the simulation is not running or lights run override programs
+     */
+    public SimulationSnapshot save(SimulationSession session, String name) {
+        if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+            throw new IllegalArgumentException("Snapshot name must match " + NAME_PATTERN.pattern());
+        }
+        if (!session.isRunning()) {
+            throw new IllegalStateException("Simulation must be running to save a snapshot");
+        }
+        if (!session.getSignalOverrides().isEmpty()) {
+            throw new IllegalStateException("Cannot save a snapshot while lights run override programs");
+        }
+        return save(session, name, false);
+    }
+
+    /**
+     * @return the stored snapshots of the session's scenario, oldest simulation time first
+     */
+    public List<SimulationSnapshot> list(SimulationSession session) {
+        return list().stream().filter(snapshot -> sameScenario(snapshot, session)).toList();
+    }
+
+    private List<SimulationSnapshot> list() {
+        Path directory = directory();
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        List<SimulationSnapshot> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SIDECAR_SUFFIX)).toList()) {
+                try {
+                    snapshots.add(objectMapper.readValue(file.toFile(), SimulationSnapshot.class));
+                } catch (IOException e) {
+                    log.warn("Ignoring unreadable snapshot {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        snapshots.sort(Comparator.comparingDouble(SimulationSnapshot::getSimulationTime)
+                .thenComparing(SimulationSnapshot::getId));
+        return snapshots;
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no such snapshot or it was taken of another scenario
+     */
+    public SimulationSnapshot get(SimulationSession session, String id) {
+        if (!NAME_PATTERN.matcher(id).matches()) {
+            throw new IllegalArgumentException("Unknown snapshot: " + id);
+        }
+        Path sidecar = directory().resolve(id + SIDECAR_SUFFIX);
+        if (!Files.isRegularFile(sidecar) || !Files.isRegularFile(stateFile(id))) {
+            throw new IllegalArgumentException("Unknown snapshot: " + id);
+        }
+
+        SimulationSnapshot snapshot;
+        try {
+            snapshot = objectMapper.readValue(sidecar.toFile(), SimulationSnapshot.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!sameScenario(snapshot, session)) {
+            throw new IllegalArgumentException("Snapshot " + id + " was taken of " + snapshot.getConfigPath()
+                    + ", not " + session.getConfigPath());
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the absolute path of the SUMO state of the snapshot
+     */
+    public String getStateFile(SimulationSnapshot snapshot) {
+        return stateFile(snapshot.getId()).toAbsolutePath().toString();
+    }
+
+    /**
+     * Reapply the Java side of a snapshot to a session whose simulator state was just loaded from it and whose
+     * topology was rebuilt: the optimized phase durations and the flow windows of lights whose layout is unchanged.
+     */
+    public void restore(SimulationSession session, SimulationSnapshot snapshot) {
+        SimulationBackend backend = session.getBackend();
+        int[] restored = new int[2];
+        backend.run(() -> {
+            for (Map.Entry<String, SimulationSnapshot.LightState> entry : snapshot.getLights().entrySet()) {
+                String tlID = entry.getKey();
+                SimulationSnapshot.LightState light = entry.getValue();
+
+                SignalProgram program = session.getSignalPrograms().get(tlID);
+                if (program != null && program.getProgramId().equals(light.getProgramId())
+                        && light.getPhaseDurations() != null
+                        && light.getPhaseDurations().length == program.getPhaseCount()) {
+                    SignalProgram updated = withDurations(program, light.getPhaseDurations());
+                    if (updated != program) {
+                        backend.setProgramLogic(tlID, updated, backend.getPhase(tlID));
+                        session.getSignalPrograms().put(tlID, updated);
+                        restored[0]++;
+                    }
+                }
+
+                FlowHistory history = session.getFlowHistories().get(tlID);
+                if (history != null && light.getFlowWindow() != null
+                        && history.getTopology().getIncomingLanes().equals(light.getLanes())) {
+                    history.restore(light.getFlowWindow());
+                    restored[1]++;
+                }
+            }
+        });
+        log.info("Restored simulation {} from snapshot {} at {} s: {} optimized programs, {} flow windows",
+                session.getId(), snapshot.getId(), snapshot.getSimulationTime(), restored[0], restored[1]);
+    }
+
+    private SimulationSnapshot save(SimulationSession session, String id, boolean scheduled) {
+        long start = System.nanoTime();
+        Path directory = directory();
+        SimulationBackend backend = session.getBackend();
+        SimulationSnapshot snapshot = backend.call(() -> {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            backend.saveState(stateFile(id).toAbsolutePath().toString());
+
+            Map<String, SimulationSnapshot.LightState> lights = new LinkedHashMap<>();
+            for (Map.Entry<String, SignalProgram> entry : session.getSignalPrograms().entrySet()) {
+                SignalProgram program = entry.getValue();
+                FlowHistory history = session.getFlowHistories().get(entry.getKey());
+                lights.put(entry.getKey(), new SimulationSnapshot.LightState(
+                        program.getProgramId(),
+                        program.getPhases().stream().mapToDouble(SignalPhase::duration).toArray(),
+                        history != null ? history.getTopology().getIncomingLanes() : null,
+                        history != null ? history.toArray() : null));
+            }
+            return new SimulationSnapshot(id, session.getId(), session.getConfigPath(), session.getCurrentSimTime(),
+                    Instant.now(), scheduled, session.getCurrentMode(), lights);
+        });
+
+        // The sidecar is written last and atomically, so a snapshot only becomes visible once it is complete
+        Path sidecar = directory.resolve(id + SIDECAR_SUFFIX);
+        try {
+            Path temporary = Files.createTempFile(directory, id, ".tmp");
+            try {
+                objectMapper.writeValue(temporary.toFile(), snapshot);
+                Files.move(temporary, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        log.info("Saved snapshot {} of simulation {} at {} s in {} ms", id, session.getId(),
+                snapshot.getSimulationTime(), (System.nanoTime() - start) / 1_000_000);
+        return snapshot;
+    }
+
+    /**
+     * Delete the oldest scheduled snapshots of the simulation beyond the configured number.
+     */
+    private void prune(String simulationId) {
+        List<SimulationSnapshot> scheduled = list().stream()
+                .filter(snapshot -> snapshot.isScheduled() && simulationId.equals(snapshot.getSimulationId()))
+                .toList();
+        for (int i = 0; i < scheduled.size() - Math.max(snapshotConfig.getKeep(), 1); i++) {
+            String id = scheduled.get(i).getId();
+            try {
+                Files.deleteIfExists(directory().resolve(id + SIDECAR_SUFFIX));
+                Files.deleteIfExists(stateFile(id));
+            } catch (IOException e) {
+                log.warn("Failed to delete snapshot {}: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    private static boolean sameScenario(SimulationSnapshot snapshot, SimulationSession session) {
+        return snapshot.getConfigPath() != null
+                && Path.of(snapshot.getConfigPath()).normalize().equals(Path.of(session.getConfigPath()).normalize());
+    }
+
+    private static SignalProgram withDurations(SignalProgram program, double[] durations) {
+        List<SignalPhase> phases = new ArrayList<>(program.getPhases());
+        boolean changed = false;
+        for (int i = 0; i < phases.size(); i++) {
+            if (phases.get(i).duration() != durations[i]) {
+                phases.set(i, phases.get(i).withDuration(durations[i]));
+                changed = true;
+            }
+        }
+        return changed ? new SignalProgram(program.getProgramId(), program.getType(), phases) : program;
+    }
+
+    private Path directory() {
+        return Path.of(snapshotConfig.getPath());
+    }
+
+    private Path stateFile(String id) {
+        return directory().resolve(id + STATE_SUFFIX);
+    }
+}
@@ -0,0 +1,320 @@
+package com.viettel.sumo.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Drives the simulation on its own thread.
+ * The loop either paces steps against the wall clock with a real-time factor
+ * (1.0 = real time, 2.0 = twice as fast, 0.5 = half speed) or, with a factor of 0,
+ * steps as fast as SUMO can compute them.
+ * Each simulation session owns one stepper.
+ * <p>
+ * While the loop runs, its thread owns the simulation: other threads {@link #submit} commands, which the loop
+ * runs between two steps, while paused, or while it waits for the next step's deadline.
+ */
+@Slf4j
+public class SimulationStepper {
+    private static final long SPEED_WINDOW_NANOS = 1_000_000_000L;
+
+    private final String name;
+    private final double stepLength;
+
+    private final Object pauseLock = new Object();
+    private Thread thread;
+    private volatile boolean running;
+    private volatile boolean paused;
+
+    /**
+     * Target simulated seconds per wall-clock second, 0 means as fast as possible
+     */
+    @Getter
+    private volatile double realTimeFactor;
+
+    /**
+     * Simulated seconds per wall-clock second measured over the last second of stepping
+     */
+    @Getter
+    private volatile double achievedSpeed;
+
+    @Getter
+    private volatile long stepsExecuted;
+
+    /**
+     * Commands waiting for the loop, by coalescing key, oldest first; guarded by this stepper
+     */
+    private final Map<Object, PendingCommand> commands = new LinkedHashMap<>();
+
+    public SimulationStepper(String name, double stepLength, double realTimeFactor) {
+        this.name = name;
+        this.stepLength = stepLength;
+        this.realTimeFactor = realTimeFactor;
+    }
+
+    /**
+     * Start the stepping loop. The step callback returns false to end the loop.
+     */
+    public synchronized void start(BooleanSupplier step) {
+        if (thread != null) {
+            log.warn("Stepping loop of {} is already running", name);
+            return;
+        }
+
+        running = true;
+        paused = false;
+        stepsExecuted = 0;
+        achievedSpeed = 0;
+
+        thread = new Thread(() -> runLoop(step), "sumo-stepper-" + name);
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Stepping loop of {} started with real-time factor {}", name, describeFactor(realTimeFactor));
+    }
+
+    /**
+     * Stop the stepping loop and wait for the step in progress to finish.
+     */
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            current = thread;
+            if (current == null) {
+                return;
+            }
+            running = false;
+        }
+
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+        LockSupport.unpark(current);
+
+        if (current != Thread.currentThread()) {
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("Stepping loop of {} stopped after {} steps", name, stepsExecuted);
+    }
+
+    /**
+     * Run a command on the stepping thread between two steps, or on the calling thread when the loop is not
+     * running. Commands submitted with the same key before the loop gets to them are coalesced: only the last one
+     * runs, at the position of the last submission, and all their futures complete with its outcome.
+     * @param key coalescing key, or null for a command that always runs
+     */
+    public <T> CompletableFuture<T> submit(Object key, Supplier<T> command) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Thread owner;
+        synchronized (this) {
+            owner = thread;
+            if (owner != null && owner != Thread.currentThread()) {
+                Object commandKey = key != null ? key : new Object();
+                PendingCommand pending = commands.remove(commandKey);
+                List<CompletableFuture<Object>> futures = pending != null ? pending.futures() : new ArrayList<>();
+                futures.add(untyped(future));
+                commands.put(commandKey, new PendingCommand(command, futures));
+            }
+        }
+
+        if (owner == null || owner == Thread.currentThread()) {
+            new PendingCommand(command, List.of(untyped(future))).run();
+            return future;
+        }
+
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+        LockSupport.unpark(owner);
+        return future;
+    }
+
+    public void pause() {
+        paused = true;
+        log.info("Stepping loop of {} paused", name);
+    }
+
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+        log.info("Stepping loop of {} resumed", name);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void setRealTimeFactor(double realTimeFactor) {
+        if (realTimeFactor < 0 || Double.isNaN(realTimeFactor) || Double.isInfinite(realTimeFactor)) {
+            throw new IllegalArgumentException("Real-time factor must be a finite number >= 0");
+        }
+        this.realTimeFactor = realTimeFactor;
+        log.info("Real-time factor of {} set to {}", name, describeFactor(realTimeFactor));
+    }
+
+    private void runLoop(BooleanSupplier step) {
+        long nextDeadline = System.nanoTime();
+        long windowStart = nextDeadline;
+        long windowSteps = 0;
+
+        try {
+            while (running) {
+                runCommands();
+                if (paused) {
+                    achievedSpeed = 0;
+                    awaitResume();
+                    nextDeadline = System.nanoTime();
+                    windowStart = nextDeadline;
+                    windowSteps = 0;
+                    continue;
+                }
+
+                if (!step.getAsBoolean()) {
+                    break;
+                }
+                stepsExecuted++;
+                windowSteps++;
+
+                long now = System.nanoTime();
+                if (now - windowStart >= SPEED_WINDOW_NANOS) {
+                    achievedSpeed = windowSteps * stepLength * 1e9 / (now - windowStart);
+                    windowStart = now;
+                    windowSteps = 0;
+                }
+
+                double factor = realTimeFactor;
+                if (factor > 0) {
+                    long stepNanos = (long) (stepLength * 1e9 / factor);
+                    nextDeadline += stepNanos;
+                    // Do not try to catch up in a burst after falling more than one step behind
+                    if (nextDeadline < now - stepNanos) {
+                        nextDeadline = now;
+                    }
+                    parkUntil(nextDeadline);
+                } else {
+                    nextDeadline = now;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Stepping loop of {} failed", name, e);
+        } finally {
+            running = false;
+            achievedSpeed = 0;
+            List<PendingCommand> remaining;
+            synchronized (this) {
+                if (thread == Thread.currentThread()) {
+                    thread = null;
+                }
+                remaining = drainCommands();
+            }
+            // Commands submitted before the loop ended still run, now that nothing steps any more
+            runAll(remaining);
+        }
+    }
+
+    private void runCommands() {
+        List<PendingCommand> pending;
+        synchronized (this) {
+            if (commands.isEmpty()) {
+                return;
+            }
+            pending = drainCommands();
+        }
+        runAll(pending);
+    }
+
+    /**
+     * Run commands in order. An Error ends the loop, so the commands behind the failing one complete with it
+     * instead of waiting for a loop that no longer runs.
+     */
+    private static void runAll(List<PendingCommand> pending) {
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                pending.get(i).run();
+            } catch (Error e) {
+                pending.subList(i + 1, pending.size()).forEach(command -> command.fail(e));
+                throw e;
+            }
+        }
+    }
+
+    private List<PendingCommand> drainCommands() {
+        List<PendingCommand> pending = new ArrayList<>(commands.values());
+        commands.clear();
+        return pending;
+    }
+
+    private synchronized boolean hasCommands() {
+        return !commands.isEmpty();
+    }
+
+    private void awaitResume() {
+        synchronized (pauseLock) {
+            while (paused && running && !hasCommands()) {
+                try {
+                    pauseLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+            }
+        }
+    }
+
+    private void parkUntil(long deadline) {
+        long remaining;
+        while (running && !paused && (remaining = deadline - System.nanoTime()) > 0) {
+            runCommands();
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private static String describeFactor(double factor) {
+        return factor > 0 ? factor + "x" : "as fast as possible";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<Object> untyped(CompletableFuture<?> future) {
+        return (CompletableFuture<Object>) future;
+    }
+
+    private record PendingCommand(Supplier<?> command, List<CompletableFuture<Object>> futures) {
+        /**
+         * Run the command and complete its futures with the outcome; Errors are rethrown once the futures failed.
+         */
+        void run() {
+            Object result;
+            try {
+                result = command.get();
+            } catch (Throwable e) {
+                fail(e);
+                if (e instanceof Error error) {
+                    throw error;
+                }
+                return;
+            }
+            futures.forEach(future -> future.complete(result));
+        }
+
+        void fail(Throwable e) {
+            futures.forEach(future -> future.completeExceptionally(e));
+        }
+    }
+}
@@ -1,250 +1,731 @@
 package com.viettel.sumo.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.sumo.backend.SimulationBackend;
+import com.viettel.sumo.config.RecordingConfig;
 import com.viettel.sumo.config.SumoConfig;
+import com.viettel.sumo.model.FlowSamplingMode;
 import com.viettel.sumo.model.IntersectionConfiguration;
-import com.viettel.sumo.model.StageOutputDTO;
-import com.viettel.sumo.model.WebsterInputDTO;
-import com.viettel.sumo.model.WebsterOutputDTO;
+import com.viettel.sumo.model.IntersectionPlan;
+import com.viettel.sumo.model.IntersectionReloadDTO;
+import com.viettel.sumo.model.IntersectionTopology;
+import com.viettel.sumo.model.OverrideProgram;
+import com.viettel.sumo.model.SignalProgram;
+import com.viettel.sumo.model.SimulationBackendType;
+import com.viettel.sumo.util.FlowHistory;
+import com.viettel.sumo.util.FlowLog;
+import com.viettel.sumo.util.FlowLogWriter;
+import com.viettel.sumo.util.KpiAccumulator;
+import com.viettel.sumo.util.NetworkReader;
+import com.viettel.sumo.util.NetworkSnapshot;
 import com.viettel.sumo.util.SumoDataConverter;
-import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
-import lombok.Getter;
+import com.viettel.sumo.util.TimeSeries;
+import com.viettel.sumo.util.TimeSeriesStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.eclipse.sumo.libtraci.*;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class SumoService {
+    private static final String RELOAD_COMMAND = "intersection-reload";
+    private static final DateTimeFormatter RECORDING_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
     private final SumoConfig sumoConfig;
     private final SumoDataConverter dataConverter;
     private final ObjectMapper objectMapper;
-    private final SumoDataConverter sumoDataConverter;
+    private final RecordingConfig recordingConfig;
+
+    /**
+     * Resolve a scenario file named by an API request against the scenarios directory.
+     * @throws IllegalArgumentException if the path points outside the scenarios directory
+     */
+    public String resolveScenarioPath(String path) {
+        Path directory = Path.of(sumoConfig.getScenariosPath()).toAbsolutePath().normalize();
+        Path resolved = directory.resolve(path).normalize();
+        boolean inside = resolved.startsWith(directory);
+        if (inside && Files.exists(resolved)) {
+            // Symbolic links must not lead out of the directory either
+            try {
+                inside = resolved.toRealPath().startsWith(directory.toRealPath());
+            } catch (IOException e) {
+                inside = false;
+            }
+        }
+        if (!inside) {
+            throw new IllegalArgumentException("Scenario file " + path + " is outside the scenarios directory");
+        }
+        return resolved.toString();
+    }
 
-    @Getter
-    private boolean simulationRunning = false;
-    private final Map<String, IntersectionConfiguration> intersectionConfigs = new HashMap<>();
-    private final Map<String, Queue<Map<String, Double>>> flowHistories = new ConcurrentHashMap<>();
+    public Map<String, IntersectionConfiguration> loadIntersectionConfigurations(String path) {
+        try {
+            Map<String, IntersectionConfiguration> intersectionConfigs = readIntersectionConfigurations(path);
+            intersectionConfigs.values().forEach(config -> log.info("Loaded intersection configuration: " + config));
+            log.info("Loaded {} intersection configurations from {}", intersectionConfigs.size(), path);
+            return intersectionConfigs;
+        } catch (IOException e) {
+            log.error("Failed to load intersection configurations", e);
+            return new LinkedHashMap<>();
+        }
+    }
 
-    @PostConstruct
-    public void init() {
-        loadIntersectionConfigurations();
+    private Map<String, IntersectionConfiguration> readIntersectionConfigurations(String path) throws IOException {
+        Map<String, IntersectionConfiguration> intersectionConfigs = new LinkedHashMap<>();
+        for (IntersectionConfiguration config :
+                objectMapper.readValue(new File(path), IntersectionConfiguration[].class)) {
+            intersectionConfigs.put(config.getSumoId(), config);
+        }
+        return intersectionConfigs;
     }
 
-    private void loadIntersectionConfigurations() {
-        try {
-            File configFile = new File(sumoConfig.getIntersectionConfigPath());
-            IntersectionConfiguration[] configs = objectMapper.readValue(configFile, IntersectionConfiguration[].class);
+    /**
+     * Compile the intersection configurations for the Webster calculation, reporting configuration problems.
+     * Intersections whose configuration cannot be compiled are left out and will not be optimized.
+     */
+    public Map<String, IntersectionPlan> compileIntersectionPlans(Map<String, IntersectionConfiguration> configs) {
+        return compileIntersectionPlans(configs, new ArrayList<>());
+    }
 
-            for (IntersectionConfiguration config : configs) {
-                intersectionConfigs.put(config.getSumoId(), config);
-                log.info("Loaded intersection configuration: " + config);
+    /**
+     * @param errors receives a message for every configuration that could not be compiled
+     */
+    private Map<String, IntersectionPlan> compileIntersectionPlans(Map<String, IntersectionConfiguration> configs,
+                                                                   List<String> errors) {
+        Map<String, IntersectionPlan> plans = new LinkedHashMap<>();
+        for (IntersectionConfiguration config : configs.values()) {
+            try {
+                IntersectionPlan plan = dataConverter.compilePlan(config);
+                plan.getWarnings().forEach(warning ->
+                        log.warn("Intersection configuration {}: {}", config.getSumoId(), warning));
+                plans.put(config.getSumoId(), plan);
+            } catch (IllegalArgumentException e) {
+                log.error("Traffic light {} will not be optimized: {}", config.getSumoId(), e.getMessage());
+                errors.add(config.getSumoId() + ": " + e.getMessage());
             }
+        }
+        return plans;
+    }
 
-            log.info("Loaded {} intersection configurations", intersectionConfigs.size());
+    /**
+     * Reload the intersection configurations of a session from its file while it keeps running.
+     * The file is read, compiled and validated on the calling thread; the swap of the compiled set and the
+     * rebinding of lanes, flow windows and the Webster batch run as one command on the stepping thread, between
+     * two steps, so the loop never waits for the file. Reloads queued before the loop gets to them coalesce.
+     * Flow windows are kept for lights whose incoming lanes and optimization interval did not change.
+     * @return completes once the new configurations are in place
+     * @throws IllegalArgumentException if the file cannot be read or an intersection does not compile; the session
+     *                                  keeps its current configurations
+     * @throws IllegalStateException if the session's configurations do not come from a file
+     */
+    public CompletableFuture<IntersectionReloadDTO> reloadIntersectionConfigurations(SimulationSession session) {
+        if (session.getBackendType() == SimulationBackendType.SYNTHETIC) {
+            throw new IllegalStateException("Synthetic simulations generate their intersection configurations");
+        }
+
+        long start = System.nanoTime();
+        String path = session.getIntersectionConfigPath();
+        Map<String, IntersectionConfiguration> configs;
+        try {
+            configs = readIntersectionConfigurations(path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read intersection configurations from " + path + ": "
+                    + e.getMessage(), e);
+        }
+        List<String> errors = new ArrayList<>();
+        Map<String, IntersectionPlan> plans = compileIntersectionPlans(configs, errors);
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException("Intersection configurations not reloaded: "
+                    + String.join("; ", errors));
+        }
+        if (!session.isRunning()) {
+            validateIntersectionPlans(session.getConfigPath(), plans);
+        }
 
-            System.loadLibrary("libtracijni");
+        return session.getStepper().submit(RELOAD_COMMAND, () -> {
+            Map<String, IntersectionConfiguration> previous = session.getIntersectionConfigs();
+            List<String> added = new ArrayList<>();
+            List<String> changed = new ArrayList<>();
+            for (IntersectionConfiguration config : configs.values()) {
+                IntersectionConfiguration old = previous.get(config.getSumoId());
+                if (old == null) {
+                    added.add(config.getSumoId());
+                } else if (!old.equals(config)) {
+                    changed.add(config.getSumoId());
+                }
+            }
+            List<String> removed = previous.keySet().stream().filter(id -> !configs.containsKey(id)).sorted().toList();
+            IntersectionReloadDTO result = new IntersectionReloadDTO(configs.size(), added, changed, removed);
+
+            session.getBackend().run(() -> {
+                session.setIntersections(configs, plans);
+                // A running simulation validates the plans against its live topology while rebinding
+                if (session.isRunning()) {
+                    bindIntersections(session);
+                }
+            });
 
-            log.info("Loaded libtracijni successfully");
+            log.info("Reloaded {} intersection configurations of simulation {} from {} in {} ms "
+                            + "({} added, {} changed, {} removed)", configs.size(), session.getId(), path,
+                    (System.nanoTime() - start) / 1_000_000, added.size(), changed.size(), removed.size());
+            return result;
+        });
+    }
+
+    /**
+     * Check compiled plans against the network of a SUMO configuration without starting SUMO, so unknown
+     * traffic lights, lanes and phases are reported when the session is created rather than as zero flows
+     * once it runs. The network is read from its snapshot when the net file did not change since it was parsed.
+     * @param configPath SUMO configuration naming the network
+     */
+    public void validateIntersectionPlans(String configPath, Map<String, IntersectionPlan> plans) {
+        NetworkSnapshot network;
+        try {
+            Path netFile = NetworkReader.resolveNetFile(Path.of(configPath));
+            String cachePath = sumoConfig.getNetworkCachePath();
+            network = NetworkSnapshot.load(netFile,
+                    cachePath == null || cachePath.isBlank() ? null : Path.of(cachePath));
         } catch (IOException e) {
-            log.error("Failed to load intersection configurations", e);
+            log.warn("Cannot validate intersection configurations before the simulation starts: {}", e.getMessage());
+            return;
         }
+
+        for (IntersectionPlan plan : plans.values()) {
+            IntersectionTopology topology = network.getTrafficLights().get(plan.getSumoId());
+            if (topology == null) {
+                log.warn("Configured traffic light {} does not exist in the network", plan.getSumoId());
+                continue;
+            }
+            validatePlan(plan, topology);
+        }
+    }
+
+    public void startSimulation(SimulationSession session) {
+        startSimulation(session, null);
     }
 
-    public void startSimulation() {
-        if (simulationRunning) {
-            log.warn("Simulation is already running");
+    /**
+     * @param stateFile SUMO state to continue from instead of the scenario's begin, or null
+     */
+    public void startSimulation(SimulationSession session, String stateFile) {
+        if (session.isRunning()) {
+            log.warn("Simulation {} is already running", session.getId());
             return;
         }
 
         try {
-            System.loadLibrary("libtracijni");
-
-            StringVector sumoCmd;
-            if (sumoConfig.isGuiMode()) {
-                sumoCmd = new StringVector(new String[]{
-                        "sumo-gui",
-                        "-c", sumoConfig.getConfigPath(),
-                        "--step-length", String.valueOf(sumoConfig.getStepLength()),
-                        "--start"
-                });
-            } else {
-                sumoCmd = new StringVector(new String[]{
-                        "sumo",
-                        "-c", sumoConfig.getConfigPath(),
-                        "--step-length", String.valueOf(sumoConfig.getStepLength()),
-                        "--start"
-                });
-            }
-
-
-            Simulation.start(sumoCmd);
-            simulationRunning = true;
-            log.info("SUMO simulation started");
-
-            flowHistories.clear();
+            SimulationBackend backend = session.getBackend();
+            backend.start(session.getConfigPath(), session.isGuiMode(), sumoConfig.getStepLength());
+            if (stateFile != null) {
+                try {
+                    backend.run(() -> backend.loadState(stateFile));
+                } catch (RuntimeException e) {
+                    backend.close();
+                    throw e;
+                }
+            }
+            session.setRunning(true);
+            log.info("{} simulation {} started", session.getBackendType(), session.getId());
+
+            session.getFlowHistories().clear();
+            session.getRunStatistics().reset();
+            if (session.getTimeSeries() != null) {
+                session.getTimeSeries().clear();
+            }
+            openFlowRecorder(session);
+            backend.run(() -> {
+                session.setCurrentSimTime(backend.getTime());
+                session.getKpis().reset(session.getCurrentSimTime());
+                rebuildTopology(session);
+            });
         } catch (Exception e) {
-            log.error("Failed to start SUMO simulation", e);
+            log.error("Failed to start SUMO simulation {}", session.getId(), e);
         }
     }
 
-    public void stopSimulation() {
-        if (!simulationRunning) {
-            log.warn("No simulation is running");
+    public void stopSimulation(SimulationSession session) {
+        if (!session.isRunning()) {
+            log.warn("Simulation {} is not running", session.getId());
             return;
         }
 
         try {
-            Simulation.close();
-            simulationRunning = false;
-            log.info("SUMO simulation stopped");
+            session.setRunning(false);
+            session.getBackend().close();
+            session.getTopologyIndex().clear();
+            session.setMonitoredHistories(List.of());
+            session.setLaneDetectors(new String[0]);
+            session.setLaneVehicleSeries(new TimeSeries[0]);
+            session.setLaneHaltingSeries(new TimeSeries[0]);
+            session.setWebsterBatch(null);
+            session.getSignalPrograms().clear();
+            session.getSignalOverrides().clear();
+            FlowLogWriter recorder = session.getFlowRecorder();
+            if (recorder != null) {
+                session.setFlowRecorder(null);
+                recorder.close();
+            }
+            log.info("{} simulation {} stopped", session.getBackendType(), session.getId());
         } catch (Exception e) {
-            log.error("Failed to stop SUMO simulation", e);
+            log.error("Failed to stop SUMO simulation {}", session.getId(), e);
         }
     }
 
-    public void stepSimulation() {
-        if (!simulationRunning) {
-            log.warn("Cannot step simulation: not running");
+    public void stepSimulation(SimulationSession session) {
+        if (!session.isRunning()) {
+            log.warn("Cannot step simulation {}: not running", session.getId());
             return;
         }
 
         try {
-            collectFlowData();
-
-            Simulation.step();
-
-            double simTime = Simulation.getTime();
-            if (Math.round(simTime) % 60 == 0) {
-                log.info("Simulation time: {} seconds, vehicles: {}",
-                        simTime, Simulation.getMinExpectedNumber());
-            }
+            SessionMetrics metrics = session.getMetrics();
+            FlowLogWriter recorder = session.getFlowRecorder();
+            SimulationBackend backend = session.getBackend();
+            backend.run(() -> {
+                long start = System.nanoTime();
+                if (recorder != null) {
+                    recorder.beginStep();
+                }
+                collectFlowData(session);
+                long collected = System.nanoTime();
+
+                backend.step();
+                session.getRunStatistics().record(backend.getArrivedNumber(), backend.getTeleportStartingNumber(),
+                        session.getLastStepHaltingCount());
+
+                double simTime = backend.getTime();
+                session.setCurrentSimTime(simTime);
+                recordNetworkSeries(session, TimeSeriesStore.NETWORK_ARRIVED, simTime, backend.getArrivedNumber());
+                if (recorder != null) {
+                    recorder.endStep(simTime);
+                }
+                metrics.recordCollect(collected - start);
+                metrics.recordStep(System.nanoTime() - collected);
+                if (Math.round(simTime) % 60 == 0) {
+                    log.info("Simulation {} time: {} seconds, vehicles: {}, halting on monitored lanes: {}",
+                            session.getId(), simTime, backend.getMinExpectedNumber(),
+                            session.getLastStepHaltingCount());
+                }
+            });
         } catch (Exception e) {
-            log.error("Error during simulation step", e);
-            stopSimulation();
+            log.error("Error during simulation step of {}", session.getId(), e);
+            stopSimulation(session);
+        }
+    }
+
+    /**
+     * Rebuild the topology index of a running session, keeping flow histories of unchanged lights.
+     */
+    public void refreshTopology(SimulationSession session) {
+        if (!session.isRunning()) {
+            return;
         }
+        session.getBackend().run(() -> rebuildTopology(session));
     }
 
-    private void collectFlowData() {
-        // Get all traffic lights
-        StringVector tlIDs = TrafficLight.getIDList();
+    private void rebuildTopology(SimulationSession session) {
+        TopologyIndex topologyIndex = session.getTopologyIndex();
+        Map<String, String> overriddenPrograms = new HashMap<>();
+        session.getSignalOverrides().forEach((tlID, position) -> overriddenPrograms.put(tlID, position.programId()));
+        topologyIndex.rebuild(session.getBackend(), overriddenPrograms);
 
-        for (String tlID : tlIDs) {
+        session.getSignalPrograms().clear();
+        for (String tlID : topologyIndex.getTrafficLightIds()) {
+            session.getSignalPrograms().put(tlID, topologyIndex.get(tlID).getProgram());
+        }
+        installOverridePrograms(session);
+        bindIntersections(session);
+    }
 
-            if (!intersectionConfigs.containsKey(tlID)) {
+    /**
+     * Bind the configured intersections to the indexed topology: flow histories, lane detectors and series,
+     * the Webster batch and the lane subscriptions. Must run inside {@link SimulationBackend#run}.
+     */
+    private void bindIntersections(SimulationSession session) {
+        TopologyIndex topologyIndex = session.getTopologyIndex();
+        Map<String, FlowHistory> flowHistories = session.getFlowHistories();
+        flowHistories.keySet().retainAll(session.getIntersectionConfigs().keySet());
+
+        List<FlowHistory> monitored = new ArrayList<>();
+        List<IntersectionPlan> plans = new ArrayList<>();
+        List<FlowHistory> planHistories = new ArrayList<>();
+        List<Integer> planIntervals = new ArrayList<>();
+        for (Map.Entry<String, IntersectionConfiguration> entry : session.getIntersectionConfigs().entrySet()) {
+            String tlID = entry.getKey();
+            IntersectionTopology topology = topologyIndex.get(tlID);
+            if (topology == null) {
+                log.warn("Configured traffic light {} does not exist in the network", tlID);
+                flowHistories.remove(tlID);
                 continue;
             }
 
-            Set<String> incomingLanes = sumoDataConverter.getIncomingLanes(tlID);
-
-            Map<String, Double> currentFlows = new HashMap<>();
-
-            for (String lane : incomingLanes) {
-                StringVector vehicles = Lane.getLastStepVehicleIDs(lane);
-                double count = vehicles.size();
-                currentFlows.put(lane, count);
+            // Keep the collected window when the lane layout of the light did not change
+            int interval = Optional.ofNullable(entry.getValue().getOptimizationInterval())
+                    .orElse(sumoConfig.getOptimizationInterval());
+            FlowHistory history = flowHistories.get(tlID);
+            if (history == null
+                    || history.getCapacity() != interval
+                    || !history.getTopology().getIncomingLanes().equals(topology.getIncomingLanes())) {
+                history = new FlowHistory(topology, interval);
+                flowHistories.put(tlID, history);
+            }
+            monitored.add(history);
+
+            IntersectionPlan plan = session.getIntersectionPlans().get(tlID);
+            if (plan != null) {
+                validatePlan(plan, topology);
+                plans.add(plan);
+                planHistories.add(history);
+                planIntervals.add(Math.max(1, (int) Math.round(interval / sumoConfig.getStepLength())));
             }
+        }
+        session.setMonitoredHistories(List.copyOf(monitored));
+        session.setLaneDetectors(resolveLaneDetectors(session, monitored));
+        bindLaneSeries(session, monitored);
+        session.getKpis().bind(monitored, session.getLaneDetectors(), session.getBackend()::getLaneLength);
+        FlowLogWriter recorder = session.getFlowRecorder();
+        if (recorder != null) {
+            recorder.writeLayout(sumoConfig.getStepLength(), monitored);
+        }
+        WebsterBatch batch = new WebsterBatch(plans, planHistories, sumoConfig.getStepLength());
+        batch.schedule(planIntervals.stream().mapToInt(Integer::intValue).toArray(), currentStep(session));
+        session.setWebsterBatch(batch);
+        log.info("Monitoring incoming lanes of {} traffic lights", monitored.size());
 
-            Queue<Map<String, Double>> history = flowHistories.computeIfAbsent(
-                    tlID, k-> new LinkedList<>()
-            );
+        if (sumoConfig.getFlowSamplingMode() == FlowSamplingMode.SUBSCRIPTION) {
+            subscribeMonitoredLanes(session);
+        }
+    }
 
-            history.add(currentFlows);
+    /**
+     * @return the index of the step the simulation is at
+     */
+    public long currentStep(SimulationSession session) {
+        return Math.round(session.getCurrentSimTime() / sumoConfig.getStepLength());
+    }
 
-            int windowSize = sumoConfig.getOptimizationInterval();
-            while (history.size() > windowSize) {
-                history.poll();
+    /**
+     * Find the induction loop configured for every monitored lane. A detector that does not exist or lies on
+     * another lane is ignored and the lane is counted by occupancy.
+     * @return the detector of each monitored lane in collection order, null where there is none
+     */
+    private String[] resolveLaneDetectors(SimulationSession session, List<FlowHistory> monitored) {
+        int laneCount = monitored.stream().mapToInt(history -> history.getTopology().getLaneCount()).sum();
+        String[] detectors = new String[laneCount];
+        Map<String, String> loopLanes = null;
+        int offset = 0;
+        for (FlowHistory history : monitored) {
+            IntersectionTopology topology = history.getTopology();
+            IntersectionConfiguration config = session.getIntersectionConfigs().get(topology.getSumoId());
+            for (IntersectionConfiguration.RoadConfig road : Objects.requireNonNullElse(config.getRoads(),
+                    List.<IntersectionConfiguration.RoadConfig>of())) {
+                for (IntersectionConfiguration.FlowConfig flow : Objects.requireNonNullElse(road.getFlows(),
+                        List.<IntersectionConfiguration.FlowConfig>of())) {
+                    if (flow.getDetector() == null) {
+                        continue;
+                    }
+                    if (loopLanes == null) {
+                        loopLanes = session.getBackend().getInductionLoopLanes();
+                    }
+                    int laneIndex = flow.getLane() != null ? topology.getLaneIndex(flow.getLane()) : -1;
+                    if (laneIndex < 0 || !flow.getLane().equals(loopLanes.get(flow.getDetector()))) {
+                        log.warn("Detector {} of traffic light {} is not an induction loop on incoming lane {}, "
+                                + "counting the lane instead", flow.getDetector(), topology.getSumoId(),
+                                flow.getLane());
+                        continue;
+                    }
+                    detectors[offset + laneIndex] = flow.getDetector();
+                }
             }
+            warnOnMixedCounting(config, topology, detectors, offset);
+            offset += topology.getLaneCount();
         }
-    }
 
-    public WebsterInputDTO prepareWebsterInput(String tlID) {
-        // Get intersection configuration
-        IntersectionConfiguration config = intersectionConfigs.get(tlID);
-        if (config == null) {
-            log.warn("No configuration found for traffic light: {}", tlID);
-            return null;
-        }
-        Queue<Map<String, Double>> flowHistory = flowHistories.get(tlID);
-        if (flowHistory == null || flowHistory.isEmpty()) {
-            log.warn("No flow history available for traffic light: {}", tlID);
-            return null;
+        long detectorCount = Arrays.stream(detectors).filter(Objects::nonNull).count();
+        if (detectorCount > 0) {
+            log.info("Measuring the flow of {} lanes with induction loops", detectorCount);
         }
-        log.info("Flow history size: {}", flowHistory.size());
-        return dataConverter.createWebsterInput(config, flowHistory);
+        return detectors;
     }
 
-    public void applyWebsterOutput(String tlID, WebsterOutputDTO output) {
-        try {
-            IntersectionConfiguration config = intersectionConfigs.get(tlID);
-            if (config == null) {
-                log.warn("No configuration found for traffic light: {}", tlID);
-                return;
+    /**
+     * Loop entries are a flow while lane occupancy is a count of vehicles present, an order of magnitude apart,
+     * so the stage ratios of an intersection mixing both are meaningless.
+     */
+    private static void warnOnMixedCounting(IntersectionConfiguration config, IntersectionTopology topology,
+                                            String[] detectors, int offset) {
+        boolean loops = false;
+        boolean occupancy = false;
+        for (IntersectionConfiguration.RoadConfig road : Objects.requireNonNullElse(config.getRoads(),
+                List.<IntersectionConfiguration.RoadConfig>of())) {
+            for (IntersectionConfiguration.FlowConfig flow : Objects.requireNonNullElse(road.getFlows(),
+                    List.<IntersectionConfiguration.FlowConfig>of())) {
+                int laneIndex = flow.getLane() != null ? topology.getLaneIndex(flow.getLane()) : -1;
+                if (laneIndex >= 0) {
+                    if (detectors[offset + laneIndex] != null) {
+                        loops = true;
+                    } else {
+                        occupancy = true;
+                    }
+                }
             }
+        }
+        if (loops && occupancy) {
+            log.warn("Traffic light {} measures some lanes with induction loops and counts others by occupancy; "
+                    + "configure detectors for all of its lanes or none", topology.getSumoId());
+        }
+    }
 
-            Map<Long, Integer> stageToPhaseMap = new HashMap<>();
-            for (IntersectionConfiguration.StageConfig stageConfig : config.getStages()) {
-                stageToPhaseMap.put(stageConfig.getId(), stageConfig.getPhaseIndex());
+    /**
+     * Install the override programs next to the regular program of every light and subscribe to the active
+     * program and phase, which mode switches need to restore lights exactly.
+     * Installing a logic may activate it, so each light is switched back to the program it was running.
+     */
+    private void installOverridePrograms(SimulationSession session) {
+        long start = System.nanoTime();
+        SimulationBackend backend = session.getBackend();
+        TopologyIndex topologyIndex = session.getTopologyIndex();
+
+        for (String tlID : topologyIndex.getTrafficLightIds()) {
+            IntersectionTopology topology = topologyIndex.get(tlID);
+            String activeProgramId = backend.getProgram(tlID);
+            int activePhase = backend.getPhase(tlID);
+
+            for (OverrideProgram override : OverrideProgram.values()) {
+                backend.setProgramLogic(tlID, override.build(topology.getLinkCount()), 0);
             }
+            backend.setProgram(tlID, activeProgramId);
+            backend.setPhase(tlID, activePhase);
+        }
+        backend.subscribeProgramPositions(topologyIndex.getTrafficLightIds());
 
-            String currentProgramID = TrafficLight.getProgram(tlID);
-            TraCILogic currentLogic = TrafficLight.getCompleteRedYellowGreenDefinition(tlID).get(0);
-            TraCIPhaseVector currentPhases = currentLogic.getPhases();
+        log.info("Installed override programs for {} traffic lights in {} ms",
+                topologyIndex.getTrafficLightIds().size(), (System.nanoTime() - start) / 1_000_000);
+    }
 
-            for (StageOutputDTO stageOutput : output.getEffectiveGreenTimes()) {
-                Long stageId = stageOutput.getStageId();
-                Integer phaseIndex = stageToPhaseMap.get(stageId);
+    /**
+     * Report flows whose lane is not an incoming lane of the intersection and stages without a green phase
+     * in the running program; both would otherwise silently produce zero flows or be skipped at runtime.
+     */
+    private void validatePlan(IntersectionPlan plan, IntersectionTopology topology) {
+        int[] laneIndices = plan.resolveLanes(topology);
+        List<String> unresolved = new ArrayList<>();
+        for (int f = 0; f < laneIndices.length; f++) {
+            if (laneIndices[f] < 0 && plan.getFlowLanes()[f] != null) {
+                unresolved.add(plan.getFlowLanes()[f]);
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            log.warn("Traffic light {}: lanes {} are not incoming lanes of the intersection, their flows will be 0",
+                    plan.getSumoId(), unresolved);
+        }
 
-                if (phaseIndex == null) {
-                    log.warn("No phase index found for stage ID: {}", stageId);
-                    continue;
-                }
+        List<Long> invalidPhases = plan.findInvalidPhases(topology.getProgram());
+        if (!invalidPhases.isEmpty()) {
+            log.warn("Traffic light {}: stages {} have no green phase in program {} ({} phases)",
+                    plan.getSumoId(), invalidPhases, topology.getProgramId(), topology.getPhaseCount());
+        }
+    }
 
-                int greenPhaseIndex = phaseIndex * 3;
+    private void subscribeMonitoredLanes(SimulationSession session) {
+        Set<String> subscribed = new LinkedHashSet<>();
+        for (FlowHistory history : session.getMonitoredHistories()) {
+            subscribed.addAll(history.getTopology().getIncomingLanes());
+        }
+        session.getBackend().subscribeLanes(subscribed);
+        List<String> detectors = Arrays.stream(session.getLaneDetectors()).filter(Objects::nonNull).toList();
+        if (!detectors.isEmpty()) {
+            session.getBackend().subscribeInductionLoops(detectors);
+        }
 
-                if (greenPhaseIndex < currentPhases.size()) {
-                    TraCIPhase currentPhase = currentPhases.get(greenPhaseIndex);
-                    TraCIPhase newGreenPhase = new TraCIPhase(
-                            stageOutput.getGreenTime(),
-                            currentPhase.getState()
-                    );
-                    currentPhases.set(greenPhaseIndex, newGreenPhase);
+        log.info("Subscribed to vehicle and halting counts of {} lanes and {} induction loops",
+                subscribed.size(), detectors.size());
+    }
 
-                    log.info("Updated phase {} for stage {} with green time: {} seconds",
-                            greenPhaseIndex, stageId, stageOutput.getGreenTime());
+    private void collectFlowData(SimulationSession session) {
+        SimulationBackend backend = session.getBackend();
+        boolean subscribed = sumoConfig.getFlowSamplingMode() == FlowSamplingMode.SUBSCRIPTION;
+        if (subscribed) {
+            backend.fetchSubscriptions();
+        }
+        FlowLogWriter recorder = session.getFlowRecorder();
+        KpiAccumulator kpis = session.getKpis();
+        String[] detectors = session.getLaneDetectors();
+        TimeSeries[] vehicleSeries = session.getLaneVehicleSeries();
+        TimeSeries[] haltingSeries = session.getLaneHaltingSeries();
+        double simTime = session.getCurrentSimTime();
+        int haltingCount = 0;
+        int laneOffset = 0;
+
+        for (FlowHistory history : session.getMonitoredHistories()) {
+            List<String> lanes = history.getTopology().getIncomingLanes();
+
+            for (int i = 0; i < lanes.size(); i++) {
+                String lane = lanes.get(i);
+                String detector = laneOffset + i < detectors.length ? detectors[laneOffset + i] : null;
+                int vehicles = 0;
+                int halting = 0;
+                double meanSpeed = 0;
+                if (subscribed) {
+                    int subscribedVehicles = detector != null
+                            ? backend.getSubscribedLoopEntries(detector)
+                            : backend.getSubscribedVehicleNumber(lane);
+                    // Without a result the lane is left out of its window average rather than counted as empty
+                    vehicles = subscribedVehicles >= 0 ? subscribedVehicles : FlowHistory.MISSING;
+                    halting = Math.max(backend.getSubscribedHaltingNumber(lane), 0);
+                    if (detector == null) {
+                        meanSpeed = backend.getSubscribedMeanSpeed(lane);
+                    }
                 } else {
-                    log.warn("Phase index {} out of bounds for traffic light: {}", greenPhaseIndex, tlID);
+                    if (detector != null) {
+                        vehicles = backend.getInductionLoopEntries(detector);
+                    } else {
+                        vehicles = backend.getLaneVehicleNumber(lane);
+                        meanSpeed = vehicles > 0 ? backend.getLaneMeanSpeed(lane) : 0;
+                    }
+                    halting = backend.getLaneHaltingNumber(lane);
+                }
+                haltingCount += halting;
+                history.record(i, vehicles);
+                if (recorder != null) {
+                    // Recorded as missing too, so a replay averages the same samples
+                    recorder.count(vehicles);
+                }
+                vehicles = Math.max(vehicles, 0);
+                kpis.record(laneOffset + i, halting, vehicles, meanSpeed);
+                if (laneOffset + i < vehicleSeries.length) {
+                    if (vehicleSeries[laneOffset + i] != null) {
+                        vehicleSeries[laneOffset + i].add(simTime, vehicles);
+                    }
+                    if (haltingSeries[laneOffset + i] != null) {
+                        haltingSeries[laneOffset + i].add(simTime, halting);
+                    }
                 }
             }
 
-            TraCILogic newLogic = new TraCILogic(
-                    currentProgramID,
-                    currentLogic.getType(),
-                    currentLogic.getCurrentPhaseIndex(),
-                    currentPhases
-            );
+            history.commit();
+            laneOffset += lanes.size();
+        }
+        kpis.commit();
+
+        session.setLastStepHaltingCount(haltingCount);
+        recordNetworkSeries(session, TimeSeriesStore.NETWORK_HALTING, simTime, haltingCount);
+    }
+
+    /**
+     * Resolve the series of every monitored lane once, so collecting flow data does not look them up per step.
+     * Lanes measured by an induction loop record the vehicles passing it instead of the vehicles on the lane.
+     */
+    private void bindLaneSeries(SimulationSession session, List<FlowHistory> monitored) {
+        TimeSeriesStore store = session.getTimeSeries();
+        if (store == null) {
+            return;
+        }
+
+        int laneCount = monitored.stream().mapToInt(history -> history.getTopology().getLaneCount()).sum();
+        TimeSeries[] vehicleSeries = new TimeSeries[laneCount];
+        TimeSeries[] haltingSeries = new TimeSeries[laneCount];
+        String[] detectors = session.getLaneDetectors();
+        int index = 0;
+        for (FlowHistory history : monitored) {
+            for (String lane : history.getTopology().getIncomingLanes()) {
+                vehicleSeries[index] = store.series(detectors[index] != null
+                        ? TimeSeriesStore.LANE_PASSED : TimeSeriesStore.LANE_VEHICLES, lane);
+                haltingSeries[index] = store.series(TimeSeriesStore.LANE_HALTING, lane);
+                index++;
+            }
+        }
+        session.setLaneVehicleSeries(vehicleSeries);
+        session.setLaneHaltingSeries(haltingSeries);
+    }
 
-            TrafficLight.setProgramLogic(tlID, newLogic);
+    private void recordNetworkSeries(SimulationSession session, String metric, double simTime, int value) {
+        TimeSeriesStore store = session.getTimeSeries();
+        TimeSeries series = store != null ? store.series(metric, "network") : null;
+        if (series != null) {
+            series.add(simTime, value);
+        }
+    }
 
-            log.info("Successfully applied Webster output to traffic light: {}", tlID);
+    private void openFlowRecorder(SimulationSession session) {
+        if (!recordingConfig.isEnabled()) {
+            return;
+        }
 
-        } catch (Exception e) {
-            log.error("Error applying Webster output to traffic light: {}", tlID, e);
+        Path path = Path.of(recordingConfig.getPath(),
+                session.getId() + "-" + LocalDateTime.now().format(RECORDING_TIMESTAMP) + FlowLog.FILE_SUFFIX);
+        try {
+            session.setFlowRecorder(new FlowLogWriter(path, recordingConfig.getRegionSizeMb() << 20));
+            log.info("Recording flows of simulation {} to {}", session.getId(), path);
+        } catch (IOException e) {
+            log.error("Failed to create flow recording {}", path, e);
         }
     }
 
-    @PreDestroy
-    public void cleanup() {
-        if (simulationRunning) {
-            stopSimulation();
+    /**
+     * Apply the green times of every ready intersection of a calculated batch.
+     */
+    public int applyWebsterBatch(SimulationSession session, WebsterBatch batch) {
+        return session.getBackend().call(() -> {
+            int written = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                if (!batch.isReady(i)) {
+                    continue;
+                }
+                String tlID = batch.getPlan(i).getSumoId();
+                try {
+                    if (applyGreenTimes(session, tlID, batch.greenPhaseIndices[i],
+                            batch.greenTimes, batch.stageOffsets[i])) {
+                        written++;
+                    }
+                } catch (Exception e) {
+                    log.error("Error applying Webster output to traffic light: {}", tlID, e);
+                }
+            }
+            log.debug("Applied Webster output of simulation {}: {} traffic lights changed",
+                    session.getId(), written);
+            return written;
+        });
+    }
+
+    /**
+     * Write new green times as a diff against the cached program of the light.
+     * @return false if the green times are unchanged and nothing was sent to SUMO
+     */
+    private boolean applyGreenTimes(SimulationSession session, String tlID, int[] greenPhaseIndices,
+                                    int[] greenTimes, int greenTimeOffset) {
+        SignalProgram program = session.getSignalPrograms().get(tlID);
+        if (program == null) {
+            return false;
+        }
+
+        SignalProgram updated = program.withDurations(greenPhaseIndices, greenTimes, greenTimeOffset);
+        if (updated == program) {
+            return false;
+        }
+
+        SimulationBackend backend = session.getBackend();
+        // The subscription holds the phase, so the diff is the only round trip; read it only without a result
+        int phase = backend.getSubscribedPhase(tlID);
+        backend.setProgramLogic(tlID, updated, phase >= 0 ? phase : backend.getPhase(tlID));
+        session.getSignalPrograms().put(tlID, updated);
+
+        if (log.isDebugEnabled()) {
+            for (int s = 0; s < greenPhaseIndices.length; s++) {
+                log.debug("Traffic light {} phase {}: green time {} seconds",
+                        tlID, greenPhaseIndices[s], greenTimes[greenTimeOffset + s]);
+            }
         }
+        return true;
     }
 }
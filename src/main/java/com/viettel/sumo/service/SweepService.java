@@ -0,0 +1,302 @@
+package com.viettel.sumo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.sumo.SumoApplication;
+import com.viettel.sumo.config.SumoConfig;
+import com.viettel.sumo.config.SweepConfig;
+import com.viettel.sumo.model.*;
+import com.viettel.sumo.util.SweepSampler;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs parameter sweeps on a bounded pool of worker processes.
+ * Every run is a separate headless JVM (see {@link SweepWorker}) driving its own SUMO process, so runs do not
+ * share the libtraci connection and a sweep can keep every core busy.
+ * Results are kept in memory and written to {@code <sweep.resultsPath>/<sweepId>/results.csv}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SweepService {
+    private static final int MAX_SWEEP_HISTORY = 20;
+    private static final Comparator<SweepRun> RANKING = Comparator
+            .comparing((SweepRun run) -> run.getStatus() != SweepStatus.COMPLETED)
+            .thenComparingDouble(run -> run.getKpis() != null ? run.getKpis().getDelayPerArrivedVehicle() : 0)
+            .thenComparing(run -> run.getKpis() != null ? -run.getKpis().getArrivedVehicles() : 0)
+            .thenComparingInt(SweepRun::getIndex);
+
+    private final SweepConfig sweepConfig;
+    private final SumoConfig sumoConfig;
+    private final SumoService sumoService;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Sweep> sweeps = new LinkedHashMap<>();
+    private final Map<SweepRun, Process> processes = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+
+    /**
+     * Expand the request into runs and queue them on the worker pool.
+     * @throws IllegalArgumentException if the request is invalid
+     */
+    public synchronized Sweep submit(SweepRequest request) {
+        if (request.getSteps() <= 0) {
+            throw new IllegalArgumentException("Number of steps must be positive");
+        }
+        // The workers are started with the resolved paths
+        if (request.getConfigPath() != null) {
+            request.setConfigPath(sumoService.resolveScenarioPath(request.getConfigPath()));
+        }
+        if (request.getIntersectionConfigPath() != null) {
+            request.setIntersectionConfigPath(sumoService.resolveScenarioPath(request.getIntersectionConfigPath()));
+        }
+        List<Map<String, Double>> parameterSets = SweepSampler.sample(request, sweepConfig.getMaxRuns());
+
+        List<SweepRun> runs = new ArrayList<>(parameterSets.size());
+        for (int i = 0; i < parameterSets.size(); i++) {
+            runs.add(new SweepRun(i, parameterSets.get(i)));
+        }
+        Sweep sweep = new Sweep(UUID.randomUUID().toString(), request, runs);
+        sweeps.put(sweep.getId(), sweep);
+        evictFinishedSweeps();
+
+        Path directory = Path.of(sweepConfig.getResultsPath(), sweep.getId());
+        AtomicInteger remaining = new AtomicInteger(runs.size());
+        for (SweepRun run : runs) {
+            getExecutor().execute(() -> {
+                try {
+                    execute(sweep, run, directory);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        finish(sweep, directory);
+                    }
+                }
+            });
+        }
+
+        log.info("Submitted sweep {} with {} runs of {} steps", sweep.getId(), runs.size(), request.getSteps());
+        return sweep;
+    }
+
+    public synchronized Optional<Sweep> getSweep(String sweepId) {
+        return Optional.ofNullable(sweeps.get(sweepId));
+    }
+
+    public synchronized List<Sweep> getSweeps() {
+        return new ArrayList<>(sweeps.values());
+    }
+
+    /**
+     * @return the runs of the sweep, best first: completed runs by ascending delay per arrived vehicle,
+     * ties broken by throughput
+     */
+    public List<SweepRun> rank(Sweep sweep) {
+        List<SweepRun> ranked = new ArrayList<>(sweep.getRuns());
+        ranked.sort(RANKING);
+        return ranked;
+    }
+
+    /**
+     * Cancel pending runs and kill the worker processes of running ones.
+     */
+    public Optional<Sweep> cancel(String sweepId) {
+        Optional<Sweep> sweep = getSweep(sweepId);
+        sweep.filter(Sweep::isActive).ifPresent(active -> {
+            active.setStatus(SweepStatus.CANCELLED);
+            for (SweepRun run : active.getRuns()) {
+                Process process = processes.get(run);
+                if (process != null) {
+                    process.destroyForcibly();
+                }
+            }
+            log.info("Cancelled sweep {}", sweepId);
+        });
+        return sweep;
+    }
+
+    private void execute(Sweep sweep, SweepRun run, Path directory) {
+        if (!sweep.isActive()) {
+            run.setStatus(SweepStatus.CANCELLED);
+            return;
+        }
+
+        long start = System.nanoTime();
+        run.setStatus(SweepStatus.RUNNING);
+        Path output = directory.resolve("run-" + run.getIndex() + ".json");
+        Path logFile = directory.resolve("run-" + run.getIndex() + ".log");
+        try {
+            Files.createDirectories(directory);
+            Process process = new ProcessBuilder(workerCommand(sweep.getRequest(), run, output))
+                    .redirectErrorStream(true)
+                    .redirectOutput(logFile.toFile())
+                    .start();
+            processes.put(run, process);
+
+            boolean exited = process.waitFor(sweepConfig.getRunTimeoutMinutes(), TimeUnit.MINUTES);
+            if (!exited) {
+                process.destroyForcibly();
+                fail(run, "Timed out after " + sweepConfig.getRunTimeoutMinutes() + " minutes, see " + logFile);
+            } else if (!sweep.isActive()) {
+                run.setStatus(SweepStatus.CANCELLED);
+            } else if (process.exitValue() != 0 || !Files.exists(output)) {
+                fail(run, "Worker exited with code " + process.exitValue() + ", see " + logFile);
+            } else {
+                run.setKpis(objectMapper.readValue(output.toFile(), SimulationKpis.class));
+                run.setStatus(SweepStatus.COMPLETED);
+            }
+        } catch (IOException e) {
+            fail(run, "Failed to run worker: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.setStatus(SweepStatus.CANCELLED);
+        } finally {
+            Process process = processes.remove(run);
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+            run.setDurationSeconds((System.nanoTime() - start) / 1e9);
+        }
+        log.info("Sweep {} run {} {} in {} s", sweep.getId(), run.getIndex(), run.getStatus(),
+                Math.round(run.getDurationSeconds()));
+    }
+
+    private void fail(SweepRun run, String message) {
+        run.setMessage(message);
+        run.setStatus(SweepStatus.FAILED);
+        log.warn("Sweep run {} failed: {}", run.getIndex(), message);
+    }
+
+    /**
+     * Command line of a worker: this application without the web server, stepping the scenario headless
+     * as fast as possible with the run's parameters as property overrides.
+     */
+    private List<String> workerCommand(SweepRequest request, SweepRun run, Path output) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Djava.library.path=" + System.getProperty("java.library.path"));
+
+        String classPath = System.getProperty("java.class.path");
+        if (classPath.endsWith(".jar") && !classPath.contains(File.pathSeparator)) {
+            // Packaged application: let the Spring Boot launcher set up the class path
+            command.add("-jar");
+            command.add(classPath);
+        } else {
+            command.add("-cp");
+            command.add(classPath);
+            command.add(SumoApplication.class.getName());
+        }
+
+        command.add("--spring.main.web-application-type=none");
+        command.add("--sumo.guiMode=false");
+        command.add("--sumo.realTimeFactor=0");
+        command.add("--sumo.configPath=" + Optional.ofNullable(request.getConfigPath())
+                .orElse(sumoConfig.getConfigPath()));
+        command.add("--sumo.intersectionConfigPath=" + Optional.ofNullable(request.getIntersectionConfigPath())
+                .orElse(sumoConfig.getIntersectionConfigPath()));
+        command.add("--sweep.worker.steps=" + request.getSteps());
+        command.add("--sweep.worker.output=" + output.toAbsolutePath());
+        for (Map.Entry<String, Double> parameter : run.getParameters().entrySet()) {
+            command.add("--" + parameter.getKey() + "="
+                    + SweepParameter.fromProperty(parameter.getKey()).format(parameter.getValue()));
+        }
+        return command;
+    }
+
+    private void finish(Sweep sweep, Path directory) {
+        if (sweep.isActive()) {
+            sweep.setStatus(SweepStatus.COMPLETED);
+        }
+        sweep.setFinishedAt(Instant.now());
+
+        Path results = directory.resolve("results.csv");
+        try {
+            Files.createDirectories(directory);
+            writeResults(sweep, results);
+            sweep.setResultsFile(results.toAbsolutePath().toString());
+        } catch (IOException e) {
+            log.error("Failed to write results of sweep {}", sweep.getId(), e);
+        }
+        log.info("Sweep {} {}, results written to {}", sweep.getId(), sweep.getStatus(), results);
+    }
+
+    private void writeResults(Sweep sweep, Path file) throws IOException {
+        List<String> properties = new ArrayList<>(sweep.getRequest().getParameters().keySet());
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file))) {
+            writer.println("rank,run," + String.join(",", properties)
+                    + ",status,steps,arrivedVehicles,teleports,meanHaltingVehicles,maxHaltingVehicles,"
+                    + "haltedVehicleSeconds,delayPerArrivedVehicle");
+
+            int rank = 1;
+            for (SweepRun run : rank(sweep)) {
+                StringBuilder line = new StringBuilder();
+                line.append(rank++).append(',').append(run.getIndex());
+                for (String property : properties) {
+                    line.append(',').append(SweepParameter.fromProperty(property)
+                            .format(run.getParameters().get(property)));
+                }
+                line.append(',').append(run.getStatus());
+
+                SimulationKpis kpis = run.getKpis();
+                if (kpis != null) {
+                    line.append(',').append(kpis.getSteps())
+                            .append(',').append(kpis.getArrivedVehicles())
+                            .append(',').append(kpis.getTeleports())
+                            .append(',').append(kpis.getMeanHaltingVehicles())
+                            .append(',').append(kpis.getMaxHaltingVehicles())
+                            .append(',').append(kpis.getHaltedVehicleSeconds())
+                            .append(',').append(kpis.getDelayPerArrivedVehicle());
+                } else {
+                    line.append(",,,,,,,");
+                }
+                writer.println(line);
+            }
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            int workers = sweepConfig.getWorkers() > 0
+                    ? sweepConfig.getWorkers()
+                    : Runtime.getRuntime().availableProcessors();
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "sweep-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            log.info("Started sweep pool with {} workers", workers);
+        }
+        return executor;
+    }
+
+    private void evictFinishedSweeps() {
+        Iterator<Sweep> iterator = sweeps.values().iterator();
+        while (sweeps.size() > MAX_SWEEP_HISTORY && iterator.hasNext()) {
+            if (!iterator.next().isActive()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        processes.values().forEach(Process::destroyForcibly);
+    }
+}
@@ -0,0 +1,82 @@
+package com.viettel.sumo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.sumo.config.SumoConfig;
+import com.viettel.sumo.model.SimulationJob;
+import com.viettel.sumo.model.SimulationJobStatus;
+import com.viettel.sumo.model.SimulationKpis;
+import com.viettel.sumo.model.TrafficControlMode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+
+/**
+ * Entry point of a sweep worker process, active only when {@code sweep.worker.output} is set.
+ * Runs the default simulation in adaptive mode for the requested number of steps, writes its KPIs as JSON
+ * to the output file and exits. A run that fails, is cancelled or loses its stepping loop writes no KPIs and exits
+ * with a non-zero code.
+ */
+@Component
+@ConditionalOnProperty(prefix = "sweep.worker", name = "output")
+@RequiredArgsConstructor
+@Slf4j
+public class SweepWorker implements ApplicationRunner {
+    private static final long POLL_INTERVAL_MILLIS = 200;
+
+    private final ApplicationContext applicationContext;
+    private final SimulationSessionRegistry sessionRegistry;
+    private final SimulationService simulationService;
+    private final SumoService sumoService;
+    private final TrafficControlService trafficControlService;
+    private final SumoConfig sumoConfig;
+    private final ObjectMapper objectMapper;
+
+    @Value("${sweep.worker.output}")
+    private String output;
+
+    @Value("${sweep.worker.steps}")
+    private int steps;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        SimulationSession session = sessionRegistry.getDefaultSession();
+        int exitCode = 1;
+        try {
+            sumoService.startSimulation(session);
+            if (!session.isRunning()) {
+                throw new IllegalStateException("Failed to start simulation");
+            }
+            trafficControlService.setControlMode(session, TrafficControlMode.ADAPTIVE_MODE);
+
+            SimulationJob job = simulationService.startJob(session, "sweep", steps, 0);
+            // A stepping loop that died on an exception leaves the job active, so watch the loop as well
+            while (job.isActive() && session.getStepper().isRunning()) {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            }
+            if (job.getStatus() != SimulationJobStatus.COMPLETED) {
+                throw new IllegalStateException("Sweep run did not complete: "
+                        + (job.isActive() ? "stepping loop ended" : job.getStatus() + ", " + job.getMessage()));
+            }
+            log.info("Sweep worker finished: {}", job.getMessage());
+
+            SimulationKpis kpis = session.getRunStatistics()
+                    .snapshot(session.getCurrentSimTime(), sumoConfig.getStepLength());
+            objectMapper.writeValue(new File(output), kpis);
+            exitCode = 0;
+        } finally {
+            if (session.isRunning()) {
+                simulationService.stopSimulation(session);
+            }
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.viettel.sumo.service;
+
+import com.viettel.sumo.backend.SimulationBackend;
+import com.viettel.sumo.model.IntersectionTopology;
+import com.viettel.sumo.model.SignalProgram;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+
+/**
+ * Read-only index of the traffic light topology of the running simulation.
+ * The index is built once when a simulation starts (or when a topology change is signalled)
+ * so the per-step code paths never have to ask SUMO for lanes, links or phase layouts again.
+ * Each simulation session owns one index; it must be rebuilt while the session's connection is active.
+ */
+@Slf4j
+public class TopologyIndex {
+    private volatile List<String> trafficLightIds = List.of();
+    private volatile Map<String, IntersectionTopology> intersections = Map.of();
+
+    /**
+     * Rebuild the index from the simulation; must run inside {@link SimulationBackend#run}.
+     * @param programOverrides program to index instead of the active one, for lights temporarily running
+     *                         another program
+     */
+    public void rebuild(SimulationBackend backend, Map<String, String> programOverrides) {
+        long start = System.nanoTime();
+
+        List<String> ids = new ArrayList<>(backend.getTrafficLightIds());
+        Map<String, IntersectionTopology> built = new HashMap<>();
+        for (String tlID : ids) {
+            built.put(tlID, buildTopology(backend, tlID, programOverrides.get(tlID)));
+        }
+
+        trafficLightIds = List.copyOf(ids);
+        intersections = Map.copyOf(built);
+
+        log.info("Built topology index for {} traffic lights in {} ms",
+                ids.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void clear() {
+        trafficLightIds = List.of();
+        intersections = Map.of();
+    }
+
+    /**
+     * @return the ids of all traffic lights in the network
+     */
+    public List<String> getTrafficLightIds() {
+        return trafficLightIds;
+    }
+
+    /**
+     * @return the topology of the given traffic light, or null if it is not part of the network
+     */
+    public IntersectionTopology get(String tlID) {
+        return intersections.get(tlID);
+    }
+
+    private IntersectionTopology buildTopology(SimulationBackend backend, String tlID, String programOverride) {
+        Map<String, List<Integer>> laneLinks = new LinkedHashMap<>();
+
+        List<List<String>> controlledLinks = backend.getControlledLinkLanes(tlID);
+        for (int linkIndex = 0; linkIndex < controlledLinks.size(); linkIndex++) {
+            for (String fromLane : controlledLinks.get(linkIndex)) {
+                List<Integer> links = laneLinks.computeIfAbsent(fromLane, k -> new ArrayList<>());
+                if (!links.contains(linkIndex)) {
+                    links.add(linkIndex);
+                }
+            }
+        }
+
+        List<String> lanes = new ArrayList<>(laneLinks.keySet());
+        int[][] laneLinkIndices = new int[lanes.size()][];
+        for (int i = 0; i < lanes.size(); i++) {
+            laneLinkIndices[i] = laneLinks.get(lanes.get(i)).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        String programId = programOverride != null ? programOverride : backend.getProgram(tlID);
+        SignalProgram program = new SignalProgram(programId, 0, List.of());
+        for (SignalProgram installed : backend.getPrograms(tlID)) {
+            if (installed.getProgramId().equals(programId)) {
+                program = installed;
+                break;
+            }
+        }
+        if (program.getGreenPhaseCount() == 0) {
+            log.warn("Program {} of traffic light {} has no green phase", programId, tlID);
+        }
+
+        return new IntersectionTopology(tlID, lanes, laneLinkIndices, controlledLinks.size(), program);
+    }
+}
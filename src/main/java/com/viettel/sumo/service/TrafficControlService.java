@@ -1,14 +1,17 @@
 package com.viettel.sumo.service;
 
+import com.viettel.sumo.backend.SimulationBackend;
+import com.viettel.sumo.model.OverrideProgram;
+import com.viettel.sumo.model.SignalProgram;
+import com.viettel.sumo.model.SignalProgramPosition;
 import com.viettel.sumo.model.TrafficControlMode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.eclipse.sumo.libtraci.StringVector;
-import org.eclipse.sumo.libtraci.TraCILogic;
-import org.eclipse.sumo.libtraci.TraCILogicVector;
-import org.eclipse.sumo.libtraci.TrafficLight;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Service responsible for managing different traffic control modes.
  * This service acts as a facade to control all traffic lights in the simulation
@@ -18,107 +21,152 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 @Slf4j
 public class TrafficControlService {
-    private final SumoService sumoService;
+    private static final String MODE_COMMAND = "control-mode";
+
+    private final LiveStateService liveStateService;
 
-    private TrafficControlMode currentMode = TrafficControlMode.NORMAL_MODE;
+    /**
+     * Queue a mode switch for the stepping thread of the simulation, which runs it between two steps.
+     * Switches queued behind each other are coalesced into the last one; advancing to the next phase is an
+     * action rather than a mode and always runs.
+     * @return the mode the simulation is in once the switch ran
+     */
+    public CompletableFuture<TrafficControlMode> requestControlMode(SimulationSession session,
+                                                                    TrafficControlMode mode) {
+        Object key = mode == TrafficControlMode.NEXT_PHASE_MODE ? null : MODE_COMMAND;
+        return session.getStepper().submit(key, () -> {
+            setControlMode(session, mode);
+            return session.getCurrentMode();
+        });
+    }
 
     /**
      * Switch to a new traffic control mode.
      * This method handles the transition between different operational modes.
+     * RED, YELLOW and LIGHTS_OFF switch every light to a pre-installed override program; any other mode first
+     * restores the program and phase the lights were running before the override.
      */
-    public void setControlMode(TrafficControlMode mode) {
-        if (!sumoService.isSimulationRunning()) {
+    public void setControlMode(SimulationSession session, TrafficControlMode mode) {
+        if (!session.isRunning()) {
             throw new IllegalStateException("Simulation must be running to change control mode");
         }
 
-        log.info("Switching from {} to {}", currentMode, mode);
-        this.currentMode = mode;
-
-        switch (mode) {
-            case RED_MODE:
-                setAllLightsToRed();
-                break;
-            case YELLOW_MODE:
-                setAllLightsToYellow();
-                break;
-            case NORMAL_MODE:
-                resetToNormalOperation();
-                break;
-            case NEXT_PHASE_MODE:
-                advanceToNextPhase();
-                // Switch back to previous mode after advancing
-                this.currentMode = TrafficControlMode.NORMAL_MODE;
-                break;
-            case LIGHTS_OFF_MODE:
-                turnOffAllLights();
-                break;
-            case ADAPTIVE_MODE:
-                enableAdaptiveControl();
-                break;
-        }
+        log.info("Switching simulation {} from {} to {}", session.getId(), session.getCurrentMode(), mode);
+        session.setCurrentMode(mode);
+
+        long start = System.nanoTime();
+        session.getBackend().run(() -> {
+            switch (mode) {
+                case RED_MODE:
+                    activateOverride(session, OverrideProgram.ALL_RED);
+                    break;
+                case YELLOW_MODE:
+                    activateOverride(session, OverrideProgram.FLASHING_YELLOW);
+                    break;
+                case NORMAL_MODE:
+                    restoreOverriddenPrograms(session);
+                    resetToNormalOperation(session);
+                    break;
+                case NEXT_PHASE_MODE:
+                    restoreOverriddenPrograms(session);
+                    advanceToNextPhase(session);
+                    // Switch back to previous mode after advancing
+                    session.setCurrentMode(TrafficControlMode.NORMAL_MODE);
+                    break;
+                case LIGHTS_OFF_MODE:
+                    activateOverride(session, OverrideProgram.OFF);
+                    break;
+                case ADAPTIVE_MODE:
+                    restoreOverriddenPrograms(session);
+                    enableAdaptiveControl();
+                    break;
+            }
+        });
+        long elapsed = System.nanoTime() - start;
+        session.getMetrics().recordModeSwitch(mode, elapsed);
+        liveStateService.modeChanged(session);
+        log.info("Switched {} traffic lights of simulation {} to {} in {} ms",
+                session.getTopologyIndex().getTrafficLightIds().size(), session.getId(), mode, elapsed / 1_000_000);
     }
 
     /**
      * Get the current control mode
      */
-    public TrafficControlMode getCurrentMode() {
-        return currentMode;
+    public TrafficControlMode getCurrentMode(SimulationSession session) {
+        return session.getCurrentMode();
     }
 
     /**
-     * Set all traffic lights to red.
-     * This creates an immediate stop for all traffic in the simulation.
+     * Switch every light to an override program, remembering the program and phase it was running
+     * unless it is already under an override.
+     * Costs one program switch per light; the current positions come from the subscription.
      */
-    private void setAllLightsToRed() {
-        StringVector tlIDs = TrafficLight.getIDList();
-        for (String tlID : tlIDs) {
-            String currentState = TrafficLight.getRedYellowGreenState(tlID);
-            // Replace all characters with 'r' (red)
-            String allRedState = "r".repeat(currentState.length());
-            TrafficLight.setRedYellowGreenState(tlID, allRedState);
-            log.debug("Set traffic light {} to all red", tlID);
+    private void activateOverride(SimulationSession session, OverrideProgram override) {
+        SimulationBackend backend = session.getBackend();
+        Map<String, SignalProgramPosition> positions = backend.getProgramPositions();
+        for (String tlID : session.getTopologyIndex().getTrafficLightIds()) {
+            try {
+                session.getSignalOverrides().computeIfAbsent(tlID, id -> currentPosition(session, positions, id));
+                backend.setProgram(tlID, override.getProgramId());
+                log.debug("Switched traffic light {} to {}", tlID, override.getProgramId());
+            } catch (Exception e) {
+                log.error("Error switching traffic light {} to {}: {}", tlID, override.getProgramId(), e.getMessage());
+            }
         }
     }
 
     /**
-     * Set all traffic lights to yellow.
-     * This indicates caution at all intersections.
+     * Put lights under an override back into the program and phase they were running before.
      */
-    private void setAllLightsToYellow() {
-        StringVector tlIDs = TrafficLight.getIDList();
-        for (String tlID : tlIDs) {
-            String currentState = TrafficLight.getRedYellowGreenState(tlID);
-            // Replace all characters with 'y' (yellow)
-            String allYellowState = "y".repeat(currentState.length());
-            TrafficLight.setRedYellowGreenState(tlID, allYellowState);
-            log.debug("Set traffic light {} to all yellow", tlID);
+    private void restoreOverriddenPrograms(SimulationSession session) {
+        SimulationBackend backend = session.getBackend();
+        for (Map.Entry<String, SignalProgramPosition> entry : session.getSignalOverrides().entrySet()) {
+            String tlID = entry.getKey();
+            SignalProgramPosition position = entry.getValue();
+            try {
+                backend.setProgram(tlID, position.programId());
+                backend.setPhase(tlID, position.phaseIndex());
+                log.debug("Restored traffic light {} to program {} phase {}",
+                        tlID, position.programId(), position.phaseIndex());
+            } catch (Exception e) {
+                log.error("Error restoring traffic light {}: {}", tlID, e.getMessage());
+            }
         }
+        session.getSignalOverrides().clear();
+    }
+
+    private SignalProgramPosition currentPosition(SimulationSession session,
+                                                  Map<String, SignalProgramPosition> positions, String tlID) {
+        SignalProgramPosition position = positions.get(tlID);
+        if (position != null && !OverrideProgram.isOverride(position.programId())) {
+            return position;
+        }
+        // No usable subscription result (e.g. before the first step): fall back to a direct read
+        return new SignalProgramPosition(session.getSignalPrograms().get(tlID).getProgramId(),
+                session.getBackend().getPhase(tlID));
     }
 
     /**
      * Reset traffic lights to their normal programmed operation.
+     * The program found when the simulation started is reinstalled where its phase durations were changed,
+     * continuing in the current phase.
      */
-    private void resetToNormalOperation() {
-        StringVector tlIDs = TrafficLight.getIDList();
-        for (String tlID : tlIDs) {
+    private void resetToNormalOperation(SimulationSession session) {
+        SimulationBackend backend = session.getBackend();
+        TopologyIndex topologyIndex = session.getTopologyIndex();
+        for (String tlID : topologyIndex.getTrafficLightIds()) {
             try {
-                // Get the current program ID
-                String programID = TrafficLight.getProgram(tlID);
-
-                // Get the complete definition
-                TraCILogicVector logics = TrafficLight.getCompleteRedYellowGreenDefinition(tlID);
-                if (!logics.isEmpty()) {
-                    // Reset the program logic
-                    TrafficLight.setProgramLogic(tlID, logics.get(0));
-
-                    // Reset the phase (optionally go to phase 0)
-                    TrafficLight.setPhase(tlID, 0);
-
-                    // Set the phase duration to default
-                    TrafficLight.setPhaseDuration(tlID, -1);
+                SignalProgram original = topologyIndex.get(tlID).getProgram();
+                if (original.getPhaseCount() == 0) {
+                    continue;
+                }
 
-                    log.debug("Reset traffic light {} to normal operation", tlID);
+                if (session.getSignalPrograms().get(tlID) != original) {
+                    backend.setProgramLogic(tlID, original, backend.getPhase(tlID));
+                    session.getSignalPrograms().put(tlID, original);
                 }
+
+                log.debug("Reset traffic light {} to normal operation", tlID);
             } catch (Exception e) {
                 log.error("Error resetting traffic light {}: {}", tlID, e.getMessage());
             }
@@ -126,53 +174,30 @@ public class TrafficControlService {
     }
 
     /**
-     * Advance all traffic lights to their next phase.
+     * Advance all traffic lights to the green phase following the current phase.
      */
-    private void advanceToNextPhase() {
-        StringVector tlIDs = TrafficLight.getIDList();
-        for (String tlID : tlIDs) {
+    private void advanceToNextPhase(SimulationSession session) {
+        SimulationBackend backend = session.getBackend();
+        for (String tlID : session.getTopologyIndex().getTrafficLightIds()) {
             try {
-                // Get current phase and program information
-                int currentPhase = TrafficLight.getPhase(tlID);
-                TraCILogic logic = TrafficLight.getCompleteRedYellowGreenDefinition(tlID).get(0);
-                int numberOfPhases = logic.getPhases().size();
-
-                if (numberOfPhases <= 1) {
-                    log.info("Traffic light {} has only {} phase(s), cannot advance", tlID, numberOfPhases);
+                SignalProgram program = session.getSignalPrograms().get(tlID);
+                if (program == null || program.getGreenPhaseCount() <= 1) {
+                    log.info("Traffic light {} has fewer than two green phases, cannot advance", tlID);
                     continue;
                 }
 
-                // Determine the current major phase (0, 3, or 6 in your case)
-                int currentMajorPhase = currentPhase - (currentPhase % 3);
-
-                // Calculate the next major phase (with wraparound)
-                int nextMajorPhase = (currentMajorPhase + 3) % 9;
+                int currentPhase = backend.getPhase(tlID);
+                int nextGreenPhase = program.getNextGreenPhaseIndex(currentPhase);
 
-                // Set the next phase
-                TrafficLight.setPhase(tlID, nextMajorPhase);
-                log.debug("Advanced traffic light {} from phase {} to major phase {}",
-                        tlID, currentPhase, nextMajorPhase);
+                backend.setPhase(tlID, nextGreenPhase);
+                log.debug("Advanced traffic light {} from phase {} to green phase {}",
+                        tlID, currentPhase, nextGreenPhase);
             } catch (Exception e) {
                 log.error("Error advancing phase for traffic light {}: {}", tlID, e.getMessage());
             }
         }
     }
 
-    /**
-     * Turn off all traffic lights.
-     * This sets all lights to off (essentially, all dark)
-     */
-    private void turnOffAllLights() {
-        StringVector tlIDs = TrafficLight.getIDList();
-        for (String tlID : tlIDs) {
-            String currentState = TrafficLight.getRedYellowGreenState(tlID);
-            // Replace all characters with 'O' (off state)
-            String allOffState = "O".repeat(currentState.length());
-            TrafficLight.setRedYellowGreenState(tlID, allOffState);
-            log.debug("Turned off traffic light {}", tlID);
-        }
-    }
-
     /**
      * Enable adaptive control using Webster algorithm.
      * This is the existing behavior of the system.
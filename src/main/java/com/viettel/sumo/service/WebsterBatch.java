@@ -0,0 +1,245 @@
+package com.viettel.sumo.service;
+
+import com.viettel.sumo.model.IntersectionPlan;
+import com.viettel.sumo.model.IntersectionTopology;
+import com.viettel.sumo.util.FlowHistory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Input and output buffers of a batch Webster calculation over many intersections.
+ * All arrays are sized once when the batch is created; loading flows and running
+ * {@link WebsterService#calculateBatch(WebsterBatch)} do not allocate.
+ * <p>
+ * Not thread-safe: a batch belongs to the stepping thread of one simulation.
+ */
+public class WebsterBatch {
+    final IntersectionPlan[] plans;
+    final int[] flowOffsets;
+    final int[] stageOffsets;
+
+    /** Flow of every plan flow in vehicles per hour */
+    final double[] flows;
+    /** Critical volume of every stage, scratch space of the kernel */
+    final double[] stageVolumes;
+    final double[] cycles;
+    /** Critical flow ratio Y of every plan */
+    final double[] yRatios;
+    final int[] greenTimes;
+    final boolean[] ready;
+    /** Program phase index of the green phase of every stage, per plan; -1 where the program has none */
+    final int[][] greenPhaseIndices;
+
+    private final FlowHistory[] histories;
+    private final int[] historyLaneIndices;
+    /** Converts an average count per step into vehicles per hour */
+    private final double vehiclesPerHour;
+
+    /** Flows of every plan when its green times were last calculated, for the change threshold */
+    private final double[] plannedFlows;
+    private final boolean[] planned;
+    /**
+     * Staggered schedule as a timing wheel with one slot per step of the longest interval: every plan sits in
+     * an intrusive list in the slot of its next optimization step
+     */
+    private int[] intervalSteps;
+    private long[] dueSteps;
+    private int[] wheelHeads;
+    private int[] wheelNext;
+    private long lastScheduledStep;
+    private int lastDue;
+
+    /**
+     * @param histories flow history of each plan, or null for batches whose flows are set directly
+     */
+    public WebsterBatch(List<IntersectionPlan> plans, List<FlowHistory> histories) {
+        this(plans, histories, 1.0);
+    }
+
+    /**
+     * @param stepLength simulated seconds per recorded history step
+     */
+    public WebsterBatch(List<IntersectionPlan> plans, List<FlowHistory> histories, double stepLength) {
+        if (stepLength <= 0) {
+            throw new IllegalArgumentException("Step length must be positive: " + stepLength);
+        }
+        this.vehiclesPerHour = 3600 / stepLength;
+        int size = plans.size();
+        this.plans = plans.toArray(new IntersectionPlan[0]);
+        this.flowOffsets = new int[size + 1];
+        this.stageOffsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            flowOffsets[i + 1] = flowOffsets[i] + this.plans[i].getFlowCount();
+            stageOffsets[i + 1] = stageOffsets[i] + this.plans[i].getStageCount();
+        }
+
+        this.flows = new double[flowOffsets[size]];
+        this.stageVolumes = new double[stageOffsets[size]];
+        this.cycles = new double[size];
+        this.yRatios = new double[size];
+        this.greenTimes = new int[stageOffsets[size]];
+        this.ready = new boolean[size];
+
+        this.histories = histories != null ? histories.toArray(new FlowHistory[0]) : null;
+        this.historyLaneIndices = new int[flowOffsets[size]];
+        this.plannedFlows = new double[flowOffsets[size]];
+        this.planned = new boolean[size];
+        this.greenPhaseIndices = new int[size][];
+        for (int i = 0; i < size; i++) {
+            if (this.histories != null) {
+                IntersectionTopology topology = this.histories[i].getTopology();
+                int[] laneIndices = this.plans[i].resolveLanes(topology);
+                System.arraycopy(laneIndices, 0, historyLaneIndices, flowOffsets[i], laneIndices.length);
+                greenPhaseIndices[i] = this.plans[i].resolveGreenPhases(topology.getProgram());
+            } else {
+                greenPhaseIndices[i] = new int[0];
+            }
+        }
+    }
+
+    /**
+     * Fill the flows of every plan from the average counts of its flow history.
+     * Plans whose history is still empty are marked as not ready.
+     */
+    public void loadFlows() {
+        for (int i = 0; i < plans.length; i++) {
+            ready[i] = loadFlows(i);
+        }
+    }
+
+    private boolean loadFlows(int plan) {
+        FlowHistory history = histories[plan];
+        for (int f = flowOffsets[plan]; f < flowOffsets[plan + 1]; f++) {
+            int laneIndex = historyLaneIndices[f];
+            flows[f] = laneIndex >= 0 ? history.getAverage(laneIndex) * vehiclesPerHour : 0;
+        }
+        return !history.isEmpty();
+    }
+
+    /**
+     * Spread the optimizations of the plans evenly over their intervals instead of running them all in one step.
+     * Plan i is first due one interval plus its share {@code i / size} of the interval after the current step.
+     * @param intervalSteps optimization interval of every plan in steps
+     */
+    public void schedule(int[] intervalSteps, long currentStep) {
+        int size = plans.length;
+        int wheelSize = Arrays.stream(intervalSteps).max().orElse(1);
+        this.intervalSteps = intervalSteps.clone();
+        this.dueSteps = new long[size];
+        this.wheelHeads = new int[wheelSize];
+        this.wheelNext = new int[size];
+        this.lastScheduledStep = currentStep;
+        Arrays.fill(wheelHeads, -1);
+        for (int i = 0; i < size; i++) {
+            if (intervalSteps[i] <= 0) {
+                throw new IllegalArgumentException("Optimization interval of " + plans[i].getSumoId()
+                        + " must be positive");
+            }
+            dueSteps[i] = currentStep + intervalSteps[i] + (long) i * intervalSteps[i] / size;
+            enqueue(i);
+        }
+    }
+
+    /**
+     * Load the flows of the plans due for optimization at this step and mark those whose flows moved enough since
+     * their last calculation as ready; every other plan is marked as not ready. Needs {@link #schedule}.
+     * @param changeThreshold relative change of the flows (sum of absolute differences over the previous total)
+     *                        below which a plan keeps its green times; 0 recalculates every due plan
+     * @return the number of ready plans
+     */
+    public int loadDueFlows(long step, double changeThreshold) {
+        Arrays.fill(ready, false);
+        lastDue = 0;
+        int readyCount = 0;
+
+        // Visit every slot passed since the last call, at most one turn of the wheel
+        long first = Math.max(lastScheduledStep + 1, step - wheelHeads.length + 1);
+        for (long current = first; current <= step; current++) {
+            int slot = (int) Math.floorMod(current, (long) wheelHeads.length);
+            int plan = wheelHeads[slot];
+            wheelHeads[slot] = -1;
+            while (plan >= 0) {
+                int next = wheelNext[plan];
+                if (dueSteps[plan] > step) {
+                    enqueue(plan);
+                } else {
+                    while (dueSteps[plan] <= step) {
+                        dueSteps[plan] += intervalSteps[plan];
+                    }
+                    enqueue(plan);
+                    lastDue++;
+                    if (loadFlows(plan) && hasChanged(plan, changeThreshold)) {
+                        ready[plan] = true;
+                        readyCount++;
+                    }
+                }
+                plan = next;
+            }
+        }
+        lastScheduledStep = Math.max(lastScheduledStep, step);
+        return readyCount;
+    }
+
+    /**
+     * @return the number of plans that were due in the last {@link #loadDueFlows} call, ready or not
+     */
+    public int getLastDue() {
+        return lastDue;
+    }
+
+    private void enqueue(int plan) {
+        int slot = (int) Math.floorMod(dueSteps[plan], (long) wheelHeads.length);
+        wheelNext[plan] = wheelHeads[slot];
+        wheelHeads[slot] = plan;
+    }
+
+    private boolean hasChanged(int plan, double changeThreshold) {
+        int from = flowOffsets[plan];
+        int to = flowOffsets[plan + 1];
+        boolean changed = !planned[plan] || changeThreshold <= 0;
+        if (!changed) {
+            double difference = 0;
+            double previousTotal = 0;
+            for (int f = from; f < to; f++) {
+                difference += Math.abs(flows[f] - plannedFlows[f]);
+                previousTotal += plannedFlows[f];
+            }
+            changed = previousTotal > 0 ? difference / previousTotal >= changeThreshold : difference > 0;
+        }
+        if (changed) {
+            System.arraycopy(flows, from, plannedFlows, from, to - from);
+            planned[plan] = true;
+        }
+        return changed;
+    }
+
+    public void setFlow(int plan, int flow, double vehiclesPerHour) {
+        flows[flowOffsets[plan] + flow] = vehiclesPerHour;
+        ready[plan] = true;
+    }
+
+    public int size() {
+        return plans.length;
+    }
+
+    public IntersectionPlan getPlan(int plan) {
+        return plans[plan];
+    }
+
+    public boolean isReady(int plan) {
+        return ready[plan];
+    }
+
+    public double getCycle(int plan) {
+        return cycles[plan];
+    }
+
+    public double getYRatio(int plan) {
+        return yRatios[plan];
+    }
+
+    public int getGreenTime(int plan, int stage) {
+        return greenTimes[stageOffsets[plan] + stage];
+    }
+}
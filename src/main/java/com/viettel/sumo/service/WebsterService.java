@@ -6,8 +6,10 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 @Service
 @RequiredArgsConstructor
@@ -15,201 +17,169 @@ import java.util.stream.Collectors;
 public class WebsterService {
     private final WebsterConfig websterConfig;
 
+    /**
+     * Calculate cycle and green times of a single intersection.
+     * Thin adapter over {@link #calculateBatch(WebsterBatch)} for callers working with DTOs.
+     */
     public WebsterOutputDTO calculateWebster(WebsterInputDTO input) {
-        log.info("Starting Webster calculation for intersection with {} stages",
-                input.getStages().size());
+        IntersectionPlan plan = IntersectionPlan.compile(input);
+        WebsterBatch batch = new WebsterBatch(List.of(plan), null);
 
-        int numberOfStages = input.getStages().size();
-        double saturationVolume = input.getSaturationVolume();
-        log.debug("Saturation volume: {}", saturationVolume);
-
-        List<StageDTO> stages = input.getStages();
-        double totalYellowAndAllRedTime = calculateTotalYellowAndRedClear(stages);
-        log.debug("Total yellow and all red-clear time: {}", totalYellowAndAllRedTime);
-
-        Map<Long, Double> stageVolumes = calculateStageVolumes(stages, input.getRoads());
-
-        double totalVolumeOfAllStages = 0;
-        for (Map.Entry<Long, Double> entry : stageVolumes.entrySet()) {
-            totalVolumeOfAllStages += entry.getValue();
-        }
-
-        log.info("Total critical volume across all stages: {}", totalVolumeOfAllStages);
-
-        for (Map.Entry<Long, Double> entry : stageVolumes.entrySet()) {
-            log.debug("Stage ID: {}, Critical volume: {}", entry.getKey(), entry.getValue());
-        }
-
-        double cycle = calculateCycleTime(numberOfStages, totalVolumeOfAllStages, saturationVolume);
-        log.info("Initial calculated cycle time: {} seconds", cycle);
-
-        List<StageOutputDTO> effectiveGreenTimes = new ArrayList<>(numberOfStages);
-
-        if (cycle <= 0) {
-            log.warn("Calculated cycle time is invalid ({}). Using fallback values.", cycle);
-            cycle = 0;
-
-            for (int i = 0; i < numberOfStages; i++) {
-                StageDTO stage = stages.get(i);
-                StageOutputDTO stageOutputDTO = createDefaultStageOutput(stage);
-                effectiveGreenTimes.add(stageOutputDTO);
-
-                cycle += stage.getMaxGreenTime() + stage.getRedClear() + stage.getYellow();
-                log.debug("Stage {}: using max green time of {} seconds",
-                        stage.getId(), stage.getMaxGreenTime());
+        int flow = 0;
+        for (RoadDTO road : input.getRoads()) {
+            for (FlowDataDTO flowData : road.getFlows()) {
+                batch.setFlow(0, flow++, flowData.getFlowData());
             }
-
-            log.info("Fallback cycle time: {} seconds", cycle);
-            return new WebsterOutputDTO(cycle, effectiveGreenTimes);
         }
-
-        double totalMinGreenTime = numberOfStages * websterConfig.getMinGreenTimePerStage();
-        log.debug("Total minimum green time: {} seconds", totalMinGreenTime);
-
-        double finalCycle = calculateFinalCycleAndGreenTimes(
-                effectiveGreenTimes,
-                stages,
-                cycle,
-                totalVolumeOfAllStages,
-                totalMinGreenTime,
-                totalYellowAndAllRedTime,
-                stageVolumes
-        );
-
-        log.info("Final calculated cycle time: {} seconds", finalCycle);
-
-        for (StageOutputDTO stage : effectiveGreenTimes) {
-            log.debug("Stage ID: {}, Green: {}s, Yellow: {}s, Red-clear: {}s",
-                    stage.getStageId(), stage.getGreenTime(),
-                    stage.getYellowTime(), stage.getRedClearTime());
+        calculateBatch(batch);
+
+        List<StageOutputDTO> effectiveGreenTimes = new ArrayList<>(plan.getStageCount());
+        for (int s = 0; s < plan.getStageCount(); s++) {
+            StageOutputDTO stageOutput = new StageOutputDTO();
+            stageOutput.setStageId(plan.getStageIds()[s]);
+            stageOutput.setOldId(plan.getStageOldIds()[s]);
+            stageOutput.setGreenTime(batch.getGreenTime(0, s));
+            stageOutput.setYellowTime(plan.getYellowTimes()[s]);
+            stageOutput.setRedClearTime(plan.getRedClearTimes()[s]);
+            effectiveGreenTimes.add(stageOutput);
         }
 
-        return new WebsterOutputDTO(finalCycle, effectiveGreenTimes);
-    }
-
-    private int calculateTotalYellowAndRedClear(List<StageDTO> stages) {
-        return stages.stream()
-                .mapToInt(stage -> stage.getRedClear() + stage.getYellow())
-                .sum();
+        log.info("Webster calculation for intersection with {} stages: cycle time {} seconds",
+                plan.getStageCount(), batch.getCycle(0));
+        return new WebsterOutputDTO(batch.getCycle(0), effectiveGreenTimes);
     }
 
-    private Map<Long, Double> calculateStageVolumes(List<StageDTO> stages, List<RoadDTO> roads) {
-        Map<Long, Double> result = new HashMap<>();
-
-        Map<Long, Set<String>> stageLampDirections = new HashMap<>();
-
-        for (StageDTO stage : stages) {
-            Set<String> lampDirections = stage.getLamps().stream()
-                    .map(lamp -> lamp.getDirection() + " " + lamp.getRoute())
-                    .collect(Collectors.toSet());
-            stageLampDirections.put(stage.getId(), lampDirections);
+    /**
+     * Calculate cycle and green times of every ready intersection of the batch in one pass.
+     * <p>
+     * For each intersection the critical volume of a stage is the largest flow feeding it, and the cycle follows
+     * Webster's formula {@code C = (1.5 L + 5) / (1 - Y)} with lost time {@code L = 2 n + baseLostTime} and
+     * {@code Y} the sum of critical volumes over the saturation volume. Green time beyond the yellow, red-clear
+     * and minimum green times is split in proportion to the critical volumes and clamped to each stage's
+     * [minGreenTime, maxGreenTime]. If the cycle is not positive (oversaturation) every stage gets its maximum
+     * green time.
+     * <p>
+     * Works on the batch's primitive buffers only and allocates nothing. Intersections only write their own
+     * slices of the buffers, so batches with at least {@code webster.parallelThreshold} ready intersections are
+     * split into chunks calculated on the common fork-join pool, unless the pool has a single worker.
+     */
+    public void calculateBatch(WebsterBatch batch) {
+        int threshold = websterConfig.getParallelThreshold();
+        if (threshold > 0 && batch.size() >= threshold && ForkJoinPool.getCommonPoolParallelism() > 1
+                && countReady(batch) >= threshold) {
+            ForkJoinPool.commonPool().invoke(new BatchChunk(batch, 0, batch.size()));
+        } else {
+            calculateRange(batch, 0, batch.size());
         }
+    }
 
-        Map<String, List<FlowDataDTO>> directionToFlowMap = new HashMap<>();
-
-        for (RoadDTO road : roads) {
-            for (FlowDataDTO flowData : road.getFlows()) {
-                String key = flowData.getDirection() + " " + flowData.getRoute();
-                directionToFlowMap.computeIfAbsent(key, k -> new ArrayList<>()).add(flowData);
+    private static int countReady(WebsterBatch batch) {
+        int ready = 0;
+        for (boolean planReady : batch.ready) {
+            if (planReady) {
+                ready++;
             }
         }
+        return ready;
+    }
 
-        for (StageDTO stage : stages) {
-            Set<String> lampDirections = stageLampDirections.get(stage.getId());
-            double criticalFlow = 0.0;
-
-            for (String direction : lampDirections) {
-                List<FlowDataDTO> matchingFlows = directionToFlowMap.getOrDefault(direction, Collections.emptyList());
+    private void calculateRange(WebsterBatch batch, int from, int to) {
+        int baseLostTime = websterConfig.getBaseLostTime();
+        int minGreenTimePerStage = websterConfig.getMinGreenTimePerStage();
+        double[] flows = batch.flows;
+        double[] stageVolumes = batch.stageVolumes;
+        int[] greenTimes = batch.greenTimes;
 
-                Optional<Double> maxFlow = matchingFlows.stream()
-                        .map(FlowDataDTO::getFlowData)
-                        .max(Double::compareTo);
+        for (int i = from; i < to; i++) {
+            if (!batch.ready[i]) {
+                continue;
+            }
 
-                if (maxFlow.isPresent() && maxFlow.get() > criticalFlow) {
-                    criticalFlow = maxFlow.get();
+            IntersectionPlan plan = batch.plans[i];
+            int stageCount = plan.getStageCount();
+            int stageOffset = batch.stageOffsets[i];
+            int flowOffset = batch.flowOffsets[i];
+            int[] stageFlowOffsets = plan.getStageFlowOffsets();
+            int[] stageFlowIndices = plan.getStageFlowIndices();
+            int[] minGreenTimes = plan.getMinGreenTimes();
+            int[] maxGreenTimes = plan.getMaxGreenTimes();
+            int[] yellowTimes = plan.getYellowTimes();
+            int[] redClearTimes = plan.getRedClearTimes();
+
+            int totalYellowAndAllRedTime = 0;
+            double totalVolume = 0;
+            for (int s = 0; s < stageCount; s++) {
+                totalYellowAndAllRedTime += redClearTimes[s] + yellowTimes[s];
+
+                double criticalVolume = 0.0;
+                for (int k = stageFlowOffsets[s]; k < stageFlowOffsets[s + 1]; k++) {
+                    double flow = flows[flowOffset + stageFlowIndices[k]];
+                    if (flow > criticalVolume) {
+                        criticalVolume = flow;
+                    }
                 }
+                stageVolumes[stageOffset + s] = criticalVolume;
+                totalVolume += criticalVolume;
             }
 
-            result.put(stage.getId(), criticalFlow);
-        }
+            double lostTime = 2 * stageCount + baseLostTime;
+            double yCritical = totalVolume / plan.getSaturationVolume();
+            double cycle = (1.5 * lostTime + 5) / (1 - yCritical);
+            batch.yRatios[i] = yCritical;
 
-        return result;
-    }
-
-    private double calculateLostTime(int numberOfStages) {
-        double lostTime = 2 * numberOfStages + websterConfig.getBaseLostTime();
-        log.debug("Lost time calculated as {} seconds for {} stages", lostTime, numberOfStages);
-        return lostTime;
-    }
-
-    private double calculateCycleTime(int numberOfStages, double totalVolumeOfAllStages, double saturationVolume) {
-        double lostTime = calculateLostTime(numberOfStages);
-        double yCritical = totalVolumeOfAllStages / saturationVolume;
+            if (cycle <= 0) {
+                cycle = 0;
+                for (int s = 0; s < stageCount; s++) {
+                    greenTimes[stageOffset + s] = maxGreenTimes[s];
+                    cycle += maxGreenTimes[s] + redClearTimes[s] + yellowTimes[s];
+                }
+                batch.cycles[i] = cycle;
+                continue;
+            }
 
-        log.debug("Critical flow ratio (Y): {}", yCritical);
+            double totalMinGreenTime = stageCount * minGreenTimePerStage;
+            double availableGreenTime = cycle - totalYellowAndAllRedTime - totalMinGreenTime;
+            double finalCycle = totalYellowAndAllRedTime;
+            for (int s = 0; s < stageCount; s++) {
+                double minGreenTime = totalMinGreenTime * plan.getWeights()[s];
+                double greenTime = totalVolume > 0
+                        ? availableGreenTime * stageVolumes[stageOffset + s] / totalVolume + minGreenTime
+                        : minGreenTime;
+                if (Double.isNaN(greenTime) || Double.isInfinite(greenTime)) {
+                    greenTime = (minGreenTimes[s] + maxGreenTimes[s]) / 2.0;
+                }
 
-        if (yCritical >= 1.0) {
-            log.warn("Critical flow ratio exceeds 1.0 ({}), indicating oversaturation", yCritical);
+                int finalGreenTime = (int) Math.round(
+                        Math.min(Math.max(greenTime, minGreenTimes[s]), maxGreenTimes[s]));
+                greenTimes[stageOffset + s] = finalGreenTime;
+                finalCycle += finalGreenTime;
+            }
+            batch.cycles[i] = finalCycle;
         }
-
-        return (1.5 * lostTime + 5) / (1 - yCritical);
     }
 
-    private double calculateFinalCycleAndGreenTimes(
-            List<StageOutputDTO> effectiveGreenTimes,
-            List<StageDTO> stages,
-            double cycle,
-            double totalVolumeOfAllStages,
-            double totalMinimumGreenTime,
-            double totalYellowAndAllRedTime,
-            Map<Long, Double> stageVolumes) {
-        double finalCycle = totalYellowAndAllRedTime;
-        double availableGreenTime = cycle - totalYellowAndAllRedTime - totalMinimumGreenTime;
-
-        log.debug("Available green time for distribution: {} seconds", availableGreenTime);
-
-        for (StageDTO stage : stages) {
-            StageOutputDTO stageOutputDTO = new StageOutputDTO();
-            stageOutputDTO.setStageId(stage.getId());
-            stageOutputDTO.setRedClearTime(stage.getRedClear());
-            stageOutputDTO.setYellowTime(stage.getYellow());
-            stageOutputDTO.setOldId(stage.getOldId());
-
-            double minGreenTime = totalMinimumGreenTime * stage.getWeight();
-            double currentStageVolume = stageVolumes.getOrDefault(stage.getId(), 0.0);
-
-            double greenTime;
-            if (totalVolumeOfAllStages > 0) {
-                greenTime = availableGreenTime * currentStageVolume / totalVolumeOfAllStages + minGreenTime;
-            } else {
-                greenTime = minGreenTime;
-                log.warn("Total volume is zero, using minimum green time for stage {}", stage.getId());
-            }
+    /**
+     * Halves a range of intersections until it is at most {@code webster.parallelChunk} long.
+     */
+    private class BatchChunk extends RecursiveAction {
+        private final WebsterBatch batch;
+        private final int from;
+        private final int to;
+
+        BatchChunk(WebsterBatch batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
 
-            if (Double.isNaN(greenTime) || Double.isInfinite(greenTime)) {
-                greenTime = (stage.getMinGreenTime() + stage.getMaxGreenTime()) / 2.0;
-                log.warn("Invalid green time calculation for stage {}. Using average of min/max: {}", stage.getId(), greenTime);
+        @Override
+        protected void compute() {
+            if (to - from <= Math.max(1, websterConfig.getParallelChunk())) {
+                calculateRange(batch, from, to);
+                return;
             }
-
-            int finalGreenTime = (int) Math.round(
-                    Math.min(Math.max(greenTime, stage.getMinGreenTime()), stage.getMaxGreenTime())
-            );
-
-            stageOutputDTO.setGreenTime(finalGreenTime);
-            effectiveGreenTimes.add(stageOutputDTO);
-            finalCycle += finalGreenTime;
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchChunk(batch, from, middle), new BatchChunk(batch, middle, to));
         }
-
-        return finalCycle;
-    }
-
-    private StageOutputDTO createDefaultStageOutput(StageDTO stage) {
-        StageOutputDTO output = new StageOutputDTO();
-        output.setStageId(stage.getId());
-        output.setRedClearTime(stage.getRedClear());
-        output.setYellowTime(stage.getYellow());
-        output.setOldId(stage.getOldId());
-        output.setGreenTime(stage.getMaxGreenTime());
-        return output;
     }
 }
@@ -0,0 +1,136 @@
+package com.viettel.sumo.util;
+
+import com.viettel.sumo.model.IntersectionTopology;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of per-step vehicle counts for the incoming lanes of one intersection.
+ * Samples are kept in a fixed-capacity ring buffer with running sums per lane, so recording a step
+ * and reading a window average are both O(1) per lane and never allocate. A lane without a sample in a step
+ * (e.g. a lapsed subscription) is left out of its average instead of counting as 0.
+ * <p>
+ * Not thread-safe: a history is written and read by the simulation stepping thread only.
+ */
+public class FlowHistory {
+    /** Sample of a lane that had no count in its step */
+    public static final int MISSING = -1;
+
+    @Getter
+    private final IntersectionTopology topology;
+    @Getter
+    private final int capacity;
+    private final int laneCount;
+    private final int[] samples;
+    private final long[] sums;
+    private final int[] counted;
+    private final int[] pending;
+    private int head;
+    private int size;
+
+    public FlowHistory(IntersectionTopology topology, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Flow history capacity must be positive: " + capacity);
+        }
+        this.topology = topology;
+        this.capacity = capacity;
+        this.laneCount = topology.getLaneCount();
+        this.samples = new int[capacity * laneCount];
+        this.sums = new long[laneCount];
+        this.counted = new int[laneCount];
+        this.pending = new int[laneCount];
+    }
+
+    /**
+     * Record the count of one lane for the step currently being collected.
+     * @param count vehicles counted, or {@link #MISSING}
+     */
+    public void record(int laneIndex, int count) {
+        pending[laneIndex] = count;
+    }
+
+    /**
+     * Complete the current step: push the recorded counts into the window, evicting the oldest step when full.
+     */
+    public void commit() {
+        int offset = head * laneCount;
+        boolean full = size == capacity;
+        for (int lane = 0; lane < laneCount; lane++) {
+            if (full && samples[offset + lane] != MISSING) {
+                sums[lane] -= samples[offset + lane];
+                counted[lane]--;
+            }
+            samples[offset + lane] = pending[lane];
+            if (pending[lane] != MISSING) {
+                sums[lane] += pending[lane];
+                counted[lane]++;
+            }
+            pending[lane] = 0;
+        }
+
+        head = (head + 1) % capacity;
+        if (!full) {
+            size++;
+        }
+    }
+
+    /**
+     * @return the average count of the lane over the window, or 0 if the lane is unknown or nothing was recorded yet
+     */
+    public double getAverage(String lane) {
+        int laneIndex = topology.getLaneIndex(lane);
+        return laneIndex >= 0 ? getAverage(laneIndex) : 0;
+    }
+
+    public double getAverage(int laneIndex) {
+        return counted[laneIndex] > 0 ? (double) sums[laneIndex] / counted[laneIndex] : 0;
+    }
+
+    /**
+     * @return the counts in the window, oldest step first and lane by lane within a step
+     */
+    public int[] toArray() {
+        int[] window = new int[size * laneCount];
+        int oldest = (head - size + capacity) % capacity;
+        for (int step = 0; step < size; step++) {
+            System.arraycopy(samples, ((oldest + step) % capacity) * laneCount, window, step * laneCount, laneCount);
+        }
+        return window;
+    }
+
+    /**
+     * Replace the window with counts written by {@link #toArray()} for the same lanes, keeping the newest steps
+     * when they do not all fit.
+     */
+    public void restore(int[] window) {
+        if (laneCount == 0) {
+            return;
+        }
+        if (window.length % laneCount != 0) {
+            throw new IllegalArgumentException("Flow window of " + window.length + " counts does not match "
+                    + laneCount + " lanes");
+        }
+        int steps = window.length / laneCount;
+        size = 0;
+        head = 0;
+        Arrays.fill(sums, 0);
+        Arrays.fill(counted, 0);
+        Arrays.fill(pending, 0);
+        for (int step = Math.max(0, steps - capacity); step < steps; step++) {
+            System.arraycopy(window, step * laneCount, pending, 0, laneCount);
+            commit();
+        }
+    }
+
+    /**
+     * @return the number of steps currently in the window
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
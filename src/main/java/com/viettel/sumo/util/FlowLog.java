@@ -0,0 +1,50 @@
+package com.viettel.sumo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Binary format of flow recordings written by {@link FlowLogWriter} and read by {@link FlowLogReader}.
+ * <p>
+ * A recording starts with the magic bytes and a version, followed by records of
+ * {@code tag (byte), body length (int), body}; a zero tag marks the end of the written data:
+ * <ul>
+ *     <li>LAYOUT: step length (double), intersection count (short), then per intersection its traffic light id,
+ *     its flow history capacity in steps (int) and its lane count (short) followed by the lane ids.
+ *     Written at start and whenever the topology is rebuilt; later records refer to the latest layout.</li>
+ *     <li>STEP: simulation time after the step (double), then the vehicle count (unsigned short) of every lane
+ *     of the layout in layout order. {@link #MISSING_COUNT} marks a lane without a result in that step, which
+ *     reads back as {@link FlowHistory#MISSING}; larger counts are capped below it.</li>
+ *     <li>DECISION: outcome of an optimization for one intersection: simulation time (double), layout index
+ *     (short), cycle (double), Y ratio (double), stage count (short) and the green times (short).
+ *     An optimization writes one record per intersection it calculated.</li>
+ * </ul>
+ * Strings are stored as a short length followed by UTF-8 bytes. All numbers are big-endian.
+ */
+public final class FlowLog {
+    static final byte[] MAGIC = "SUMOFLOW".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = MAGIC.length + Integer.BYTES;
+    static final int RECORD_HEADER_SIZE = 1 + Integer.BYTES;
+    static final int MISSING_COUNT = 0xFFFF;
+
+    public static final byte END = 0;
+    public static final byte LAYOUT = 1;
+    public static final byte STEP = 2;
+    public static final byte DECISION = 3;
+
+    public static final String FILE_SUFFIX = ".flowlog";
+
+    private FlowLog() {
+    }
+
+    /**
+     * Monitored intersections and their lanes, in the order the step records list lane counts.
+     */
+    public record Layout(double stepLength, List<String> sumoIds, List<Integer> historyCapacities,
+                         List<List<String>> lanes) {
+        public int getLaneCount() {
+            return lanes.stream().mapToInt(List::size).sum();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.viettel.sumo.util;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams the records of a {@link FlowLog} file through a memory-mapped window.
+ * Call {@link #next()} until it returns {@link FlowLog#END}; the accessors describe the record just read and
+ * reuse their buffers, so reading steps does not allocate. A record cut off by a crash ends the recording.
+ */
+public class FlowLogReader implements Closeable {
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    @Getter
+    private FlowLog.Layout layout;
+    /**
+     * Simulation time of the last step or decision record
+     */
+    @Getter
+    private double time;
+    private int[] counts = new int[0];
+
+    @Getter
+    private int decisionIntersection;
+    @Getter
+    private double decisionCycle;
+    @Getter
+    private double decisionYRatio;
+    @Getter
+    private int decisionStageCount;
+    private int[] decisionGreenTimes = new int[8];
+
+    public FlowLogReader(Path path, int windowSize) throws IOException {
+        this.windowSize = windowSize;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+
+        if (!ensure(0, FlowLog.HEADER_SIZE)) {
+            close();
+            throw new IOException(path + " is not a flow recording");
+        }
+        byte[] magic = new byte[FlowLog.MAGIC.length];
+        window.get(magic);
+        int version = window.getInt();
+        if (!Arrays.equals(magic, FlowLog.MAGIC) || version != FlowLog.VERSION) {
+            close();
+            throw new IOException(path + " is not a flow recording of version " + FlowLog.VERSION);
+        }
+        position = FlowLog.HEADER_SIZE;
+    }
+
+    /**
+     * Read the next record.
+     * @return the tag of the record, {@link FlowLog#END} when the recording is exhausted
+     */
+    public byte next() throws IOException {
+        while (true) {
+            if (!ensure(position, FlowLog.RECORD_HEADER_SIZE)) {
+                return FlowLog.END;
+            }
+            byte tag = window.get();
+            if (tag == FlowLog.END) {
+                return FlowLog.END;
+            }
+            int length = window.getInt();
+            if (!ensure(position, FlowLog.RECORD_HEADER_SIZE + length)) {
+                return FlowLog.END;
+            }
+            window.position(window.position() + FlowLog.RECORD_HEADER_SIZE);
+            position += FlowLog.RECORD_HEADER_SIZE + length;
+
+            switch (tag) {
+                case FlowLog.LAYOUT -> readLayout();
+                case FlowLog.STEP -> readStep();
+                case FlowLog.DECISION -> readDecision();
+                default -> {
+                    // Unknown record of a newer writer, skip it
+                    continue;
+                }
+            }
+            return tag;
+        }
+    }
+
+    /**
+     * @return the lane counts of the last step record in layout order, {@link FlowHistory#MISSING} for lanes
+     * without a result; the array is reused by the next step
+     */
+    public int[] getCounts() {
+        return counts;
+    }
+
+    public int getDecisionGreenTime(int stage) {
+        return decisionGreenTimes[stage];
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private void readLayout() {
+        double stepLength = window.getDouble();
+        int intersections = window.getShort();
+        List<String> sumoIds = new ArrayList<>(intersections);
+        List<Integer> historyCapacities = new ArrayList<>(intersections);
+        List<List<String>> lanes = new ArrayList<>(intersections);
+        for (int i = 0; i < intersections; i++) {
+            sumoIds.add(getString());
+            historyCapacities.add(window.getInt());
+            int laneCount = window.getShort();
+            List<String> intersectionLanes = new ArrayList<>(laneCount);
+            for (int l = 0; l < laneCount; l++) {
+                intersectionLanes.add(getString());
+            }
+            lanes.add(List.copyOf(intersectionLanes));
+        }
+        layout = new FlowLog.Layout(stepLength, List.copyOf(sumoIds), List.copyOf(historyCapacities),
+                List.copyOf(lanes));
+        counts = new int[layout.getLaneCount()];
+    }
+
+    private void readStep() {
+        time = window.getDouble();
+        for (int l = 0; l < counts.length; l++) {
+            int count = Short.toUnsignedInt(window.getShort());
+            counts[l] = count == FlowLog.MISSING_COUNT ? FlowHistory.MISSING : count;
+        }
+    }
+
+    private void readDecision() {
+        time = window.getDouble();
+        decisionIntersection = window.getShort();
+        decisionCycle = window.getDouble();
+        decisionYRatio = window.getDouble();
+        decisionStageCount = window.getShort();
+        if (decisionGreenTimes.length < decisionStageCount) {
+            decisionGreenTimes = new int[decisionStageCount];
+        }
+        for (int s = 0; s < decisionStageCount; s++) {
+            decisionGreenTimes[s] = window.getShort();
+        }
+    }
+
+    private String getString() {
+        byte[] bytes = new byte[window.getShort()];
+        window.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Make the bytes [start, start + length) of the file readable and position the window at start.
+     * @return false if the file ends before
+     */
+    private boolean ensure(long start, int length) throws IOException {
+        if (start + length > size) {
+            return false;
+        }
+        if (window == null || start < windowStart || start + length > windowStart + window.capacity()) {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(size - start, Math.max(windowSize, length)));
+        }
+        window.position((int) (start - windowStart));
+        return true;
+    }
+}
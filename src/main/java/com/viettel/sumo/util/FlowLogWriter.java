@@ -0,0 +1,210 @@
+package com.viettel.sumo.util;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Appends the per-step lane counts and optimization decisions of a simulation to a memory-mapped
+ * {@link FlowLog} file. The file is mapped in regions of a fixed size and a new region is mapped when the
+ * current one is full, so recording a step is a handful of buffer writes without system calls.
+ * <p>
+ * An I/O error disables the writer instead of failing the simulation. Not thread-safe: a writer belongs to the
+ * stepping thread of one simulation.
+ */
+@Slf4j
+public class FlowLogWriter implements Closeable {
+    @Getter
+    private final Path path;
+    private final int regionSize;
+    private final FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    private Map<String, Integer> layoutIndices = Map.of();
+    private int layoutLaneCount;
+    private int stepRecordStart = -1;
+    private int stepCounts;
+    private boolean failed;
+
+    @Getter
+    private long steps;
+    @Getter
+    private long decisions;
+
+    public FlowLogWriter(Path path, int regionSize) throws IOException {
+        this.path = path;
+        this.regionSize = regionSize;
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        mapRegion(0, FlowLog.HEADER_SIZE);
+        region.put(FlowLog.MAGIC);
+        region.putInt(FlowLog.VERSION);
+    }
+
+    public void writeLayout(double stepLength, List<FlowHistory> histories) {
+        if (failed) {
+            return;
+        }
+
+        List<byte[]> strings = new ArrayList<>();
+        Map<String, Integer> indices = new HashMap<>();
+        int laneCount = 0;
+        int size = Double.BYTES + Short.BYTES;
+        for (int i = 0; i < histories.size(); i++) {
+            List<String> lanes = histories.get(i).getTopology().getIncomingLanes();
+            String sumoId = histories.get(i).getTopology().getSumoId();
+            indices.put(sumoId, i);
+            size += addString(strings, sumoId) + Integer.BYTES + Short.BYTES;
+            for (String lane : lanes) {
+                size += addString(strings, lane);
+            }
+            laneCount += lanes.size();
+        }
+
+        if (!beginRecord(FlowLog.LAYOUT, size)) {
+            return;
+        }
+        region.putDouble(stepLength);
+        region.putShort((short) histories.size());
+        Iterator<byte[]> string = strings.iterator();
+        for (FlowHistory history : histories) {
+            putString(string.next());
+            region.putInt(history.getCapacity());
+            region.putShort((short) history.getTopology().getLaneCount());
+            for (int l = 0; l < history.getTopology().getLaneCount(); l++) {
+                putString(string.next());
+            }
+        }
+        layoutIndices = Map.copyOf(indices);
+        layoutLaneCount = laneCount;
+    }
+
+    /**
+     * Start the step record; the lane counts of the layout follow in layout order.
+     */
+    public void beginStep() {
+        if (failed || !beginRecord(FlowLog.STEP, Double.BYTES + layoutLaneCount * Short.BYTES)) {
+            return;
+        }
+        stepRecordStart = region.position();
+        region.putDouble(0);
+        stepCounts = 0;
+    }
+
+    /**
+     * @param vehicles vehicles counted on the next lane of the layout, or {@link FlowHistory#MISSING}
+     */
+    public void count(int vehicles) {
+        if (stepRecordStart < 0 || stepCounts == layoutLaneCount) {
+            return;
+        }
+        region.putShort((short) (vehicles == FlowHistory.MISSING
+                ? FlowLog.MISSING_COUNT
+                : Math.min(vehicles, FlowLog.MISSING_COUNT - 1)));
+        stepCounts++;
+    }
+
+    public void endStep(double simTime) {
+        if (stepRecordStart < 0) {
+            return;
+        }
+        while (stepCounts < layoutLaneCount) {
+            region.putShort((short) 0);
+            stepCounts++;
+        }
+        region.putDouble(stepRecordStart, simTime);
+        stepRecordStart = -1;
+        steps++;
+    }
+
+    /**
+     * Record the cycle and green times an optimization computed for one intersection of the layout.
+     */
+    public void writeDecision(double simTime, String sumoId, double cycle, double yRatio,
+                              int[] greenTimes, int offset, int stageCount) {
+        Integer layoutIndex = layoutIndices.get(sumoId);
+        if (failed || layoutIndex == null
+                || !beginRecord(FlowLog.DECISION, Double.BYTES + Short.BYTES + 2 * Double.BYTES
+                + Short.BYTES + stageCount * Short.BYTES)) {
+            return;
+        }
+
+        region.putDouble(simTime);
+        region.putShort(layoutIndex.shortValue());
+        region.putDouble(cycle);
+        region.putDouble(yRatio);
+        region.putShort((short) stageCount);
+        for (int s = 0; s < stageCount; s++) {
+            region.putShort((short) greenTimes[offset + s]);
+        }
+        decisions++;
+    }
+
+    /**
+     * Flush the mapped data and cut the file to the written length.
+     */
+    @Override
+    public void close() {
+        if (region == null) {
+            return;
+        }
+        try {
+            long length = regionStart + region.position();
+            if (region.remaining() > 0) {
+                region.put(FlowLog.END);
+            }
+            region.force();
+            region = null;
+            channel.truncate(length + 1);
+            channel.close();
+            log.info("Closed flow recording {}: {} steps, {} decisions", path, steps, decisions);
+        } catch (IOException e) {
+            log.error("Failed to close flow recording {}", path, e);
+        }
+    }
+
+    private boolean beginRecord(byte tag, int bodySize) {
+        try {
+            int size = FlowLog.RECORD_HEADER_SIZE + bodySize;
+            // Keep room for the end marker behind every record
+            if (region.remaining() < size + 1) {
+                mapRegion(regionStart + region.position(), size + 1);
+            }
+            region.put(tag);
+            region.putInt(bodySize);
+            return true;
+        } catch (IOException e) {
+            failed = true;
+            stepRecordStart = -1;
+            log.error("Failed to extend flow recording {}, recording stopped", path, e);
+            return false;
+        }
+    }
+
+    private void mapRegion(long position, int minSize) throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(regionSize, minSize));
+        regionStart = position;
+    }
+
+    private static int addString(List<byte[]> strings, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        strings.add(bytes);
+        return Short.BYTES + bytes.length;
+    }
+
+    private void putString(byte[] bytes) {
+        region.putShort((short) bytes.length);
+        region.put(bytes);
+    }
+}
@@ -0,0 +1,280 @@
+package com.viettel.sumo.util;
+
+import com.viettel.sumo.model.IntersectionKpisDTO;
+import com.viettel.sumo.model.IntersectionTopology;
+import com.viettel.sumo.model.KpiReportDTO;
+import com.viettel.sumo.model.TrafficControlMode;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Accumulates delay, queue length and throughput of the monitored intersections step by step.
+ * An approach is an incoming edge of a light. Every lane sample adds to the step totals of its approach in
+ * constant time, and {@link #commit} folds the step into the window totals, so memory is fixed per approach and
+ * a step costs a few array writes per lane.
+ * <p>
+ * Lanes measured by an induction loop count the loop entries as served vehicles; other lanes use Edie's flow
+ * estimate vehicles * mean speed * step length / lane length, or serve nothing if the lane reports no length.
+ * Waiting time counts halted vehicle-seconds and the mean delay is the waiting time per served vehicle.
+ * <p>
+ * Samples are recorded by the stepping thread inside the simulator lock; reports may be taken from any thread.
+ */
+public class KpiAccumulator {
+    private final double stepLength;
+    private final Map<String, Double> laneLengths = new HashMap<>();
+
+    // Per monitored lane in collection order
+    private int[] laneApproaches = new int[0];
+    private boolean[] laneLoops = new boolean[0];
+    private double[] laneFlowFactors = new double[0]; // step length / lane length, 0 where the length is unknown
+
+    // Per approach, grouped by intersection
+    private String[] approachEdges = new String[0];
+    private int[] approachLanes = new int[0];
+    private boolean[] approachMeasured = new boolean[0];
+    private int[] stepHalting = new int[0];
+    private double[] stepServed = new double[0];
+    private long[] haltingSteps = new long[0];
+    private int[] maxHalting = new int[0];
+    private double[] served = new double[0];
+
+    // Per intersection; the approaches of intersection i are approachOffsets[i] until approachOffsets[i + 1]
+    private String[] intersections = new String[0];
+    private int[] approachOffsets = {0};
+    private int[] intersectionMaxHalting = new int[0];
+
+    private long steps;
+    private double windowStart;
+    private volatile int lastStepHalting;
+    private volatile long totalHaltingSteps;
+    private volatile double totalServed;
+
+    public KpiAccumulator(double stepLength) {
+        this.stepLength = stepLength;
+    }
+
+    /**
+     * Lay out the approaches of the monitored intersections, keeping the totals of approaches that stay monitored.
+     * Must be called inside the simulator lock, as it replaces the arrays samples are recorded into.
+     * @param detectors induction loop of each monitored lane in collection order, null where there is none
+     * @param laneLength reads the length of a lane without a loop; lengths are cached for the session
+     */
+    public synchronized void bind(List<FlowHistory> monitored, String[] detectors,
+                                  ToDoubleFunction<String> laneLength) {
+        Map<String, Integer> previousApproaches = new HashMap<>();
+        for (int i = 0; i < intersections.length; i++) {
+            for (int a = approachOffsets[i]; a < approachOffsets[i + 1]; a++) {
+                previousApproaches.put(approachKey(intersections[i], approachEdges[a]), a);
+            }
+        }
+        Map<String, Integer> previousIntersections = new HashMap<>();
+        for (int i = 0; i < intersections.length; i++) {
+            previousIntersections.put(intersections[i], i);
+        }
+
+        int laneCount = monitored.stream().mapToInt(history -> history.getTopology().getLaneCount()).sum();
+        int[] newLaneApproaches = new int[laneCount];
+        boolean[] newLaneLoops = new boolean[laneCount];
+        double[] newLaneFlowFactors = new double[laneCount];
+        List<String> edges = new ArrayList<>();
+        List<Integer> lanes = new ArrayList<>();
+        List<Boolean> measured = new ArrayList<>();
+        String[] newIntersections = new String[monitored.size()];
+        int[] newApproachOffsets = new int[monitored.size() + 1];
+        int laneIndex = 0;
+        for (int i = 0; i < monitored.size(); i++) {
+            IntersectionTopology topology = monitored.get(i).getTopology();
+            newIntersections[i] = topology.getSumoId();
+            newApproachOffsets[i] = edges.size();
+            Map<String, Integer> intersectionApproaches = new HashMap<>();
+            for (String lane : topology.getIncomingLanes()) {
+                String edge = edgeOf(lane);
+                Integer approach = intersectionApproaches.get(edge);
+                if (approach == null) {
+                    approach = edges.size();
+                    intersectionApproaches.put(edge, approach);
+                    edges.add(edge);
+                    lanes.add(0);
+                    measured.add(true);
+                }
+                lanes.set(approach, lanes.get(approach) + 1);
+
+                newLaneApproaches[laneIndex] = approach;
+                if (laneIndex < detectors.length && detectors[laneIndex] != null) {
+                    newLaneLoops[laneIndex] = true;
+                } else {
+                    double length = laneLengths.computeIfAbsent(lane, laneLength::applyAsDouble);
+                    newLaneFlowFactors[laneIndex] = length > 0 ? stepLength / length : 0;
+                    measured.set(approach, false);
+                }
+                laneIndex++;
+            }
+        }
+        newApproachOffsets[monitored.size()] = edges.size();
+
+        int approaches = edges.size();
+        long[] newHaltingSteps = new long[approaches];
+        int[] newMaxHalting = new int[approaches];
+        double[] newServed = new double[approaches];
+        int[] newIntersectionMaxHalting = new int[newIntersections.length];
+        for (int i = 0; i < newIntersections.length; i++) {
+            Integer previousIntersection = previousIntersections.get(newIntersections[i]);
+            if (previousIntersection != null) {
+                newIntersectionMaxHalting[i] = intersectionMaxHalting[previousIntersection];
+            }
+            for (int a = newApproachOffsets[i]; a < newApproachOffsets[i + 1]; a++) {
+                Integer previous = previousApproaches.get(approachKey(newIntersections[i], edges.get(a)));
+                if (previous != null) {
+                    newHaltingSteps[a] = haltingSteps[previous];
+                    newMaxHalting[a] = maxHalting[previous];
+                    newServed[a] = served[previous];
+                }
+            }
+        }
+
+        laneApproaches = newLaneApproaches;
+        laneLoops = newLaneLoops;
+        laneFlowFactors = newLaneFlowFactors;
+        approachEdges = edges.toArray(new String[0]);
+        approachLanes = lanes.stream().mapToInt(Integer::intValue).toArray();
+        approachMeasured = new boolean[approaches];
+        for (int a = 0; a < approaches; a++) {
+            approachMeasured[a] = measured.get(a);
+        }
+        stepHalting = new int[approaches];
+        stepServed = new double[approaches];
+        haltingSteps = newHaltingSteps;
+        maxHalting = newMaxHalting;
+        served = newServed;
+        intersections = newIntersections;
+        approachOffsets = newApproachOffsets;
+        intersectionMaxHalting = newIntersectionMaxHalting;
+    }
+
+    /**
+     * Start a new window at the given simulation time, e.g. after switching the control mode.
+     */
+    public synchronized void reset(double simulationTime) {
+        Arrays.fill(haltingSteps, 0);
+        Arrays.fill(maxHalting, 0);
+        Arrays.fill(served, 0);
+        Arrays.fill(intersectionMaxHalting, 0);
+        steps = 0;
+        windowStart = simulationTime;
+        lastStepHalting = 0;
+        totalHaltingSteps = 0;
+        totalServed = 0;
+    }
+
+    /**
+     * Record one monitored lane for the step being collected.
+     * @param lane index of the lane in collection order
+     * @param counted loop entries of a lane with a loop, vehicles on the lane otherwise
+     * @param meanSpeed mean speed of the vehicles on the lane, ignored for lanes with a loop
+     */
+    public void record(int lane, int halting, int counted, double meanSpeed) {
+        int approach = laneApproaches[lane];
+        stepHalting[approach] += halting;
+        stepServed[approach] += laneLoops[lane]
+                ? counted
+                : counted * Math.max(meanSpeed, 0) * laneFlowFactors[lane];
+    }
+
+    /**
+     * Complete the current step: fold the recorded samples into the window totals.
+     */
+    public synchronized void commit() {
+        int networkHalting = 0;
+        double networkServed = 0;
+        for (int i = 0; i < intersections.length; i++) {
+            int halting = 0;
+            for (int a = approachOffsets[i]; a < approachOffsets[i + 1]; a++) {
+                haltingSteps[a] += stepHalting[a];
+                maxHalting[a] = Math.max(maxHalting[a], stepHalting[a]);
+                served[a] += stepServed[a];
+                halting += stepHalting[a];
+                networkServed += stepServed[a];
+                stepHalting[a] = 0;
+                stepServed[a] = 0;
+            }
+            intersectionMaxHalting[i] = Math.max(intersectionMaxHalting[i], halting);
+            networkHalting += halting;
+        }
+        steps++;
+        lastStepHalting = networkHalting;
+        totalHaltingSteps += networkHalting;
+        totalServed += networkServed;
+    }
+
+    /**
+     * @return vehicles halting on the monitored approaches in the last step
+     */
+    public int getLastStepHalting() {
+        return lastStepHalting;
+    }
+
+    /**
+     * @return halted vehicle-seconds on the monitored approaches in the window
+     */
+    public double getWaitingTime() {
+        return totalHaltingSteps * stepLength;
+    }
+
+    public double getVehiclesServed() {
+        return totalServed;
+    }
+
+    public double getMeanDelay() {
+        return delay(getWaitingTime(), totalServed);
+    }
+
+    /**
+     * @param sumoId intersection to report, or null for all monitored intersections
+     */
+    public synchronized KpiReportDTO report(String sumoId, TrafficControlMode mode, double simulationTime) {
+        List<IntersectionKpisDTO> reported = new ArrayList<>();
+        for (int i = 0; i < intersections.length; i++) {
+            if (sumoId != null && !sumoId.equals(intersections[i])) {
+                continue;
+            }
+            List<IntersectionKpisDTO.ApproachKpis> approaches = new ArrayList<>();
+            long intersectionHaltingSteps = 0;
+            double intersectionServed = 0;
+            for (int a = approachOffsets[i]; a < approachOffsets[i + 1]; a++) {
+                double waiting = haltingSteps[a] * stepLength;
+                approaches.add(new IntersectionKpisDTO.ApproachKpis(approachEdges[a], approachLanes[a],
+                        approachMeasured[a], mean(haltingSteps[a]), maxHalting[a], waiting, served[a],
+                        delay(waiting, served[a])));
+                intersectionHaltingSteps += haltingSteps[a];
+                intersectionServed += served[a];
+            }
+            double waiting = intersectionHaltingSteps * stepLength;
+            reported.add(new IntersectionKpisDTO(intersections[i], mean(intersectionHaltingSteps),
+                    intersectionMaxHalting[i], waiting, intersectionServed, delay(waiting, intersectionServed),
+                    approaches));
+        }
+        return new KpiReportDTO(mode, windowStart, simulationTime, steps, getWaitingTime(), totalServed,
+                getMeanDelay(), reported);
+    }
+
+    private double mean(long haltingStepSum) {
+        return steps > 0 ? (double) haltingStepSum / steps : 0;
+    }
+
+    private static double delay(double waiting, double served) {
+        return served > 0 ? waiting / served : 0;
+    }
+
+    private static String approachKey(String sumoId, String edge) {
+        return sumoId + '\u0000' + edge;
+    }
+
+    /**
+     * SUMO names lanes after their edge with the lane index appended: "{edge}_{index}".
+     */
+    private static String edgeOf(String lane) {
+        int separator = lane.lastIndexOf('_');
+        return separator > 0 ? lane.substring(0, separator) : lane;
+    }
+}
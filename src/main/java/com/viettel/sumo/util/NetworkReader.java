@@ -0,0 +1,200 @@
+package com.viettel.sumo.util;
+
+import com.viettel.sumo.model.IntersectionTopology;
+import com.viettel.sumo.model.SignalPhase;
+import com.viettel.sumo.model.SignalProgram;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader for SUMO network files ({@code .net.xml}, optionally gzipped).
+ * Only junctions, lanes, traffic light programs and the connections they control are kept, so the memory
+ * needed does not depend on the size of the shapes and requests in the file. The topology of every light is
+ * built the way {@code TopologyIndex} builds it through TraCI: incoming lanes ordered by their first controlled
+ * link, and the first program the network defines for the light as its program.
+ */
+public final class NetworkReader {
+    private static final int GZIP_MAGIC = 0x1f8b;
+    private static final Map<String, Integer> PROGRAM_TYPES = Map.of(
+            "static", 0, "actuated", 3, "NEMA", 4, "delay_based", 5);
+
+    private NetworkReader() {
+    }
+
+    /**
+     * @return the network file named by a SUMO configuration, resolved against the configuration's directory
+     * @throws IOException if the configuration cannot be read or does not name a network file
+     */
+    public static Path resolveNetFile(Path sumoConfig) throws IOException {
+        try (InputStream in = Files.newInputStream(sumoConfig)) {
+            XMLStreamReader reader = createReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "net-file".equals(reader.getLocalName())) {
+                        String value = reader.getAttributeValue(null, "value");
+                        Path directory = sumoConfig.toAbsolutePath().getParent();
+                        return directory.resolve(value.trim()).normalize();
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot read SUMO configuration " + sumoConfig + ": " + e.getMessage(), e);
+        }
+        throw new IOException("SUMO configuration " + sumoConfig + " does not name a net-file");
+    }
+
+    /**
+     * Parse a network file into a snapshot.
+     * @param hash hash of the file the snapshot is stored under
+     */
+    public static NetworkSnapshot read(Path netFile, String hash) throws IOException {
+        Map<String, String> junctions = new LinkedHashMap<>();
+        List<String> lanes = new ArrayList<>();
+        Map<String, SignalProgram> programs = new LinkedHashMap<>();
+        Map<String, SortedMap<Integer, List<String>>> controlledLinks = new LinkedHashMap<>();
+
+        try (InputStream in = open(netFile)) {
+            XMLStreamReader reader = createReader(in);
+            try {
+                boolean internalEdge = false;
+                String programOwner = null;
+                String programId = null;
+                int programType = 0;
+                List<SignalPhase> phases = null;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.END_ELEMENT && "tlLogic".equals(reader.getLocalName())) {
+                        // A light keeps the first program it is given, as SUMO starts it with that one
+                        programs.putIfAbsent(programOwner, new SignalProgram(programId, programType, phases));
+                        phases = null;
+                        continue;
+                    }
+                    if (event != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+
+                    switch (reader.getLocalName()) {
+                        case "edge" -> internalEdge = "internal".equals(reader.getAttributeValue(null, "function"));
+                        case "lane" -> {
+                            if (!internalEdge) {
+                                lanes.add(reader.getAttributeValue(null, "id"));
+                            }
+                        }
+                        case "junction" -> {
+                            String type = reader.getAttributeValue(null, "type");
+                            if (!"internal".equals(type)) {
+                                junctions.put(reader.getAttributeValue(null, "id"), type);
+                            }
+                        }
+                        case "tlLogic" -> {
+                            programOwner = reader.getAttributeValue(null, "id");
+                            programId = reader.getAttributeValue(null, "programID");
+                            programType = PROGRAM_TYPES.getOrDefault(reader.getAttributeValue(null, "type"), 0);
+                            phases = new ArrayList<>();
+                        }
+                        case "phase" -> {
+                            if (phases != null) {
+                                phases.add(readPhase(reader));
+                            }
+                        }
+                        case "connection" -> {
+                            String tlID = reader.getAttributeValue(null, "tl");
+                            if (tlID != null) {
+                                String fromLane = reader.getAttributeValue(null, "from") + "_"
+                                        + reader.getAttributeValue(null, "fromLane");
+                                int linkIndex = Integer.parseInt(reader.getAttributeValue(null, "linkIndex"));
+                                controlledLinks.computeIfAbsent(tlID, k -> new TreeMap<>())
+                                        .computeIfAbsent(linkIndex, k -> new ArrayList<>())
+                                        .add(fromLane);
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("Cannot read network " + netFile + ": " + e.getMessage(), e);
+        }
+
+        Map<String, IntersectionTopology> trafficLights = new LinkedHashMap<>();
+        for (Map.Entry<String, SignalProgram> entry : programs.entrySet()) {
+            String tlID = entry.getKey();
+            trafficLights.put(tlID, buildTopology(tlID, entry.getValue(),
+                    controlledLinks.getOrDefault(tlID, Collections.emptySortedMap())));
+        }
+        return new NetworkSnapshot(hash, junctions, lanes, trafficLights);
+    }
+
+    private static IntersectionTopology buildTopology(String tlID, SignalProgram program,
+                                                      SortedMap<Integer, List<String>> controlledLinks) {
+        Map<String, List<Integer>> laneLinks = new LinkedHashMap<>();
+        for (Map.Entry<Integer, List<String>> link : controlledLinks.entrySet()) {
+            for (String fromLane : link.getValue()) {
+                List<Integer> links = laneLinks.computeIfAbsent(fromLane, k -> new ArrayList<>());
+                if (!links.contains(link.getKey())) {
+                    links.add(link.getKey());
+                }
+            }
+        }
+
+        List<String> lanes = new ArrayList<>(laneLinks.keySet());
+        int[][] laneLinkIndices = new int[lanes.size()][];
+        for (int i = 0; i < lanes.size(); i++) {
+            laneLinkIndices[i] = laneLinks.get(lanes.get(i)).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // SUMO sizes the controlled links by the signal state, which also covers unused link indices
+        int linkCount = controlledLinks.isEmpty() ? 0 : controlledLinks.lastKey() + 1;
+        if (program.getPhaseCount() > 0) {
+            linkCount = Math.max(linkCount, program.getPhases().get(0).state().length());
+        }
+        return new IntersectionTopology(tlID, lanes, laneLinkIndices, linkCount, program);
+    }
+
+    private static SignalPhase readPhase(XMLStreamReader reader) {
+        double duration = Double.parseDouble(reader.getAttributeValue(null, "duration"));
+        String minDur = reader.getAttributeValue(null, "minDur");
+        String maxDur = reader.getAttributeValue(null, "maxDur");
+        String next = reader.getAttributeValue(null, "next");
+        String name = reader.getAttributeValue(null, "name");
+        return new SignalPhase(
+                duration,
+                reader.getAttributeValue(null, "state"),
+                minDur != null ? Double.parseDouble(minDur) : duration,
+                maxDur != null ? Double.parseDouble(maxDur) : duration,
+                next != null && !next.isBlank()
+                        ? Arrays.stream(next.trim().split("\\s+")).mapToInt(Integer::parseInt).toArray()
+                        : new int[0],
+                name != null ? name : "");
+    }
+
+    private static InputStream open(Path netFile) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(Files.newInputStream(netFile), 1 << 16);
+        in.mark(2);
+        int magic = (in.read() << 8) | in.read();
+        in.reset();
+        return magic == GZIP_MAGIC ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+
+    private static XMLStreamReader createReader(InputStream in) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory.createXMLStreamReader(in);
+    }
+}
@@ -0,0 +1,246 @@
+package com.viettel.sumo.util;
+
+import com.viettel.sumo.model.IntersectionTopology;
+import com.viettel.sumo.model.SignalPhase;
+import com.viettel.sumo.model.SignalProgram;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * The parts of a SUMO network needed to check intersection configurations without running SUMO: junctions,
+ * lanes and the topology of every traffic light.
+ * Snapshots are stored in a compact binary form under the SHA-256 of the network file, so a network is only
+ * parsed again when its file changes.
+ * <pre>
+ * snapshot := MAGIC version:int hash:utf
+ *             junctions:int (id:utf type:utf)*
+ *             lanes:int (id:utf)*
+ *             lights:int light*
+ * light    := id:utf lanes:int (lane:int links:int (link:int)*)* linkCount:int program
+ * program  := id:utf type:int phases:int (duration:double state:utf minDur:double maxDur:double
+ *             next:int (phase:int)* name:utf)*
+ * </pre>
+ * Lanes of a light are positions in the lane table.
+ */
+@Slf4j
+@Getter
+public class NetworkSnapshot {
+    static final int MAGIC = 0x534E4554; // "SNET"
+    static final int VERSION = 1;
+    private static final String SUFFIX = ".topo";
+
+    private final String hash;
+    private final Map<String, String> junctions;
+    private final List<String> lanes;
+    private final Map<String, IntersectionTopology> trafficLights;
+    @Getter(AccessLevel.NONE)
+    private final Set<String> laneSet;
+
+    public NetworkSnapshot(String hash, Map<String, String> junctions, List<String> lanes,
+                           Map<String, IntersectionTopology> trafficLights) {
+        this.hash = hash;
+        this.junctions = Collections.unmodifiableMap(new LinkedHashMap<>(junctions));
+        this.lanes = List.copyOf(lanes);
+        this.laneSet = Set.copyOf(lanes);
+        this.trafficLights = Collections.unmodifiableMap(new LinkedHashMap<>(trafficLights));
+    }
+
+    /**
+     * Load the snapshot of a network file from the cache directory, parsing the file and storing its snapshot
+     * when there is none for the file's current content.
+     * @param cacheDirectory directory holding the snapshots, or null to always parse
+     */
+    public static NetworkSnapshot load(Path netFile, Path cacheDirectory) throws IOException {
+        long start = System.nanoTime();
+        String hash = hash(netFile);
+        Path cached = cacheDirectory != null ? cacheDirectory.resolve(hash + SUFFIX) : null;
+        if (cached != null && Files.isRegularFile(cached)) {
+            try {
+                NetworkSnapshot snapshot = read(cached);
+                log.info("Loaded network snapshot of {} ({} traffic lights) in {} ms",
+                        netFile, snapshot.trafficLights.size(), (System.nanoTime() - start) / 1_000_000);
+                return snapshot;
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable network snapshot {}: {}", cached, e.getMessage());
+            }
+        }
+
+        NetworkSnapshot snapshot = NetworkReader.read(netFile, hash);
+        log.info("Parsed network {} ({} junctions, {} lanes, {} traffic lights) in {} ms", netFile,
+                snapshot.junctions.size(), snapshot.lanes.size(), snapshot.trafficLights.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        if (cached != null) {
+            try {
+                snapshot.write(cached);
+            } catch (IOException e) {
+                log.warn("Failed to store network snapshot {}: {}", cached, e.getMessage());
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the hex SHA-256 of the file's bytes
+     */
+    public static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public boolean hasLane(String lane) {
+        return laneSet.contains(lane);
+    }
+
+    /**
+     * Write the snapshot to a temporary file first and move it into place, so readers never see half a snapshot.
+     */
+    public void write(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                write(out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    public static NetworkSnapshot read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return read(in);
+        } catch (EOFException e) {
+            throw new IOException("Truncated network snapshot " + file, e);
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(hash);
+
+        out.writeInt(junctions.size());
+        for (Map.Entry<String, String> junction : junctions.entrySet()) {
+            out.writeUTF(junction.getKey());
+            out.writeUTF(junction.getValue() != null ? junction.getValue() : "");
+        }
+
+        Map<String, Integer> laneIndices = new HashMap<>();
+        out.writeInt(lanes.size());
+        for (String lane : lanes) {
+            laneIndices.put(lane, laneIndices.size());
+            out.writeUTF(lane);
+        }
+
+        out.writeInt(trafficLights.size());
+        for (IntersectionTopology topology : trafficLights.values()) {
+            out.writeUTF(topology.getSumoId());
+            out.writeInt(topology.getLaneCount());
+            for (int i = 0; i < topology.getLaneCount(); i++) {
+                Integer laneIndex = laneIndices.get(topology.getIncomingLanes().get(i));
+                if (laneIndex == null) {
+                    throw new IOException("Lane " + topology.getIncomingLanes().get(i) + " of traffic light "
+                            + topology.getSumoId() + " is not part of the network");
+                }
+                out.writeInt(laneIndex);
+                int[] links = topology.getLinkIndices(i);
+                out.writeInt(links.length);
+                for (int link : links) {
+                    out.writeInt(link);
+                }
+            }
+            out.writeInt(topology.getLinkCount());
+
+            SignalProgram program = topology.getProgram();
+            out.writeUTF(program.getProgramId());
+            out.writeInt(program.getType());
+            out.writeInt(program.getPhaseCount());
+            for (SignalPhase phase : program.getPhases()) {
+                out.writeDouble(phase.duration());
+                out.writeUTF(phase.state());
+                out.writeDouble(phase.minDuration());
+                out.writeDouble(phase.maxDuration());
+                out.writeInt(phase.next().length);
+                for (int next : phase.next()) {
+                    out.writeInt(next);
+                }
+                out.writeUTF(phase.name());
+            }
+        }
+    }
+
+    private static NetworkSnapshot read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a network snapshot");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported network snapshot version " + version);
+        }
+        String hash = in.readUTF();
+
+        int junctionCount = in.readInt();
+        Map<String, String> junctions = new LinkedHashMap<>();
+        for (int i = 0; i < junctionCount; i++) {
+            junctions.put(in.readUTF(), in.readUTF());
+        }
+
+        String[] lanes = new String[in.readInt()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = in.readUTF();
+        }
+
+        int lightCount = in.readInt();
+        Map<String, IntersectionTopology> trafficLights = new LinkedHashMap<>();
+        for (int l = 0; l < lightCount; l++) {
+            String tlID = in.readUTF();
+            List<String> incomingLanes = new ArrayList<>();
+            int[][] laneLinkIndices = new int[in.readInt()][];
+            for (int i = 0; i < laneLinkIndices.length; i++) {
+                incomingLanes.add(lanes[in.readInt()]);
+                laneLinkIndices[i] = readInts(in);
+            }
+            int linkCount = in.readInt();
+
+            String programId = in.readUTF();
+            int type = in.readInt();
+            List<SignalPhase> phases = new ArrayList<>();
+            int phaseCount = in.readInt();
+            for (int p = 0; p < phaseCount; p++) {
+                phases.add(new SignalPhase(in.readDouble(), in.readUTF(), in.readDouble(), in.readDouble(),
+                        readInts(in), in.readUTF()));
+            }
+            trafficLights.put(tlID, new IntersectionTopology(tlID, incomingLanes, laneLinkIndices, linkCount,
+                    new SignalProgram(programId, type, phases)));
+        }
+        return new NetworkSnapshot(hash, junctions, Arrays.asList(lanes), trafficLights);
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
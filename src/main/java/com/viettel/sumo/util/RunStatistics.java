@@ -0,0 +1,50 @@
+package com.viettel.sumo.util;
+
+import com.viettel.sumo.model.SimulationKpis;
+
+/**
+ * Accumulates network-wide KPIs of a simulation run step by step.
+ * Written by the stepping thread; snapshots may be taken from any thread.
+ */
+public class RunStatistics {
+    private long steps;
+    private long arrivedVehicles;
+    private long teleports;
+    private long haltingVehicleSteps;
+    private int maxHaltingVehicles;
+
+    public synchronized void reset() {
+        steps = 0;
+        arrivedVehicles = 0;
+        teleports = 0;
+        haltingVehicleSteps = 0;
+        maxHaltingVehicles = 0;
+    }
+
+    /**
+     * @param arrived vehicles that reached their destination during the step
+     * @param teleported vehicles that started teleporting during the step
+     * @param halting vehicles halting on the monitored lanes
+     */
+    public synchronized void record(int arrived, int teleported, int halting) {
+        steps++;
+        arrivedVehicles += arrived;
+        teleports += teleported;
+        haltingVehicleSteps += halting;
+        maxHaltingVehicles = Math.max(maxHaltingVehicles, halting);
+    }
+
+    public synchronized SimulationKpis snapshot(double simulationTime, double stepLength) {
+        double haltedVehicleSeconds = haltingVehicleSteps * stepLength;
+        return new SimulationKpis(
+                steps,
+                simulationTime,
+                arrivedVehicles,
+                teleports,
+                steps > 0 ? (double) haltingVehicleSteps / steps : 0,
+                maxHaltingVehicles,
+                haltedVehicleSeconds,
+                haltedVehicleSeconds / Math.max(arrivedVehicles, 1)
+        );
+    }
+}
@@ -0,0 +1,139 @@
+package com.viettel.sumo.util;
+
+import com.viettel.sumo.model.SweepParameter;
+import com.viettel.sumo.model.SweepRequest;
+
+import java.util.*;
+
+/**
+ * Expands the parameter ranges of a sweep request into the parameter sets of the individual runs.
+ */
+public final class SweepSampler {
+    private SweepSampler() {
+    }
+
+    /**
+     * @return one map of property to value per run, in a deterministic order for a given request and seed
+     * @throws IllegalArgumentException if the request is invalid or would produce more than maxRuns runs
+     */
+    public static List<Map<String, Double>> sample(SweepRequest request, int maxRuns) {
+        Map<String, SweepRequest.Range> parameters = request.getParameters();
+        if (parameters == null || parameters.isEmpty()) {
+            throw new IllegalArgumentException("At least one parameter must be swept");
+        }
+        parameters.keySet().forEach(SweepParameter::fromProperty);
+
+        List<Map<String, Double>> runs = switch (request.getSampling()) {
+            case GRID -> grid(parameters, maxRuns);
+            case RANDOM -> random(parameters, checkSamples(request.getSamples(), maxRuns), random(request));
+            case LATIN_HYPERCUBE ->
+                    latinHypercube(parameters, checkSamples(request.getSamples(), maxRuns), random(request));
+        };
+
+        for (Map<String, Double> run : runs) {
+            run.replaceAll((property, value) -> {
+                SweepParameter parameter = SweepParameter.fromProperty(property);
+                parameter.validate(value);
+                return parameter.isInteger() ? (double) Math.round(value) : value;
+            });
+        }
+        return runs;
+    }
+
+    private static List<Map<String, Double>> grid(Map<String, SweepRequest.Range> parameters, int maxRuns) {
+        long combinations = 1;
+        for (Map.Entry<String, SweepRequest.Range> entry : parameters.entrySet()) {
+            List<Double> values = entry.getValue().getValues();
+            if (values == null || values.isEmpty()) {
+                throw new IllegalArgumentException("Grid sampling needs values for " + entry.getKey());
+            }
+            combinations *= values.size();
+            if (combinations > maxRuns) {
+                throw new IllegalArgumentException("Grid has more than " + maxRuns + " combinations");
+            }
+        }
+
+        List<Map<String, Double>> runs = new ArrayList<>();
+        runs.add(new LinkedHashMap<>());
+        for (Map.Entry<String, SweepRequest.Range> entry : parameters.entrySet()) {
+            List<Map<String, Double>> expanded = new ArrayList<>(runs.size() * entry.getValue().getValues().size());
+            for (Map<String, Double> run : runs) {
+                for (Double value : entry.getValue().getValues()) {
+                    Map<String, Double> next = new LinkedHashMap<>(run);
+                    next.put(entry.getKey(), value);
+                    expanded.add(next);
+                }
+            }
+            runs = expanded;
+        }
+        return runs;
+    }
+
+    private static List<Map<String, Double>> random(Map<String, SweepRequest.Range> parameters, int samples,
+                                                    Random random) {
+        List<Map<String, Double>> runs = new ArrayList<>(samples);
+        for (int i = 0; i < samples; i++) {
+            Map<String, Double> run = new LinkedHashMap<>();
+            for (Map.Entry<String, SweepRequest.Range> entry : parameters.entrySet()) {
+                SweepRequest.Range range = checkBounds(entry.getKey(), entry.getValue());
+                run.put(entry.getKey(), range.getMin() + random.nextDouble() * (range.getMax() - range.getMin()));
+            }
+            runs.add(run);
+        }
+        return runs;
+    }
+
+    /**
+     * Split every range into as many equal strata as there are samples, draw one value per stratum
+     * and pair the strata of different parameters by independent random permutations.
+     */
+    private static List<Map<String, Double>> latinHypercube(Map<String, SweepRequest.Range> parameters, int samples,
+                                                            Random random) {
+        List<Map<String, Double>> runs = new ArrayList<>(samples);
+        for (int i = 0; i < samples; i++) {
+            runs.add(new LinkedHashMap<>());
+        }
+
+        int[] strata = new int[samples];
+        for (Map.Entry<String, SweepRequest.Range> entry : parameters.entrySet()) {
+            SweepRequest.Range range = checkBounds(entry.getKey(), entry.getValue());
+            for (int i = 0; i < samples; i++) {
+                strata[i] = i;
+            }
+            for (int i = samples - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = strata[i];
+                strata[i] = strata[j];
+                strata[j] = swap;
+            }
+
+            for (int i = 0; i < samples; i++) {
+                double unit = (strata[i] + random.nextDouble()) / samples;
+                runs.get(i).put(entry.getKey(), range.getMin() + unit * (range.getMax() - range.getMin()));
+            }
+        }
+        return runs;
+    }
+
+    private static SweepRequest.Range checkBounds(String property, SweepRequest.Range range) {
+        if (range.getMin() == null || range.getMax() == null || range.getMin() > range.getMax()) {
+            throw new IllegalArgumentException("Parameter " + property + " needs min <= max");
+        }
+        // Rejects the whole range up front rather than depending on which values were drawn
+        SweepParameter parameter = SweepParameter.fromProperty(property);
+        parameter.validate(range.getMin());
+        parameter.validate(range.getMax());
+        return range;
+    }
+
+    private static int checkSamples(int samples, int maxRuns) {
+        if (samples <= 0 || samples > maxRuns) {
+            throw new IllegalArgumentException("Number of samples must be between 1 and " + maxRuns);
+        }
+        return samples;
+    }
+
+    private static Random random(SweepRequest request) {
+        return request.getSeed() != null ? new Random(request.getSeed()) : new Random();
+    }
+}
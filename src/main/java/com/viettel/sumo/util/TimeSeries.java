@@ -0,0 +1,214 @@
+package com.viettel.sumo.util;
+
+import com.viettel.sumo.model.TimeSeriesAggregation;
+import com.viettel.sumo.model.TimeSeriesDTO;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * One metric kept at several resolutions with fixed memory.
+ * Every tier is a ring of buckets of a fixed width holding min, max, sum and count of the samples that fell into
+ * it. A sample updates the current bucket of every tier, so the coarser tiers are downsampled as data arrives and
+ * reach further back than the finer ones; buckets sliding out of a tier are overwritten.
+ * <p>
+ * Written by the simulation stepping thread and read by queries; all access is synchronized on the series.
+ */
+public class TimeSeries {
+    static final int MAX_QUERY_BUCKETS = 10_000;
+
+    @Getter
+    private final String name;
+    private final Tier[] tiers;
+
+    /**
+     * @param bucketSeconds width of the buckets of each tier, finest first
+     * @param capacities    number of buckets kept by each tier
+     */
+    public TimeSeries(String name, int[] bucketSeconds, int[] capacities) {
+        this.name = name;
+        this.tiers = new Tier[bucketSeconds.length];
+        for (int i = 0; i < tiers.length; i++) {
+            tiers[i] = new Tier(bucketSeconds[i], capacities[i]);
+        }
+    }
+
+    /**
+     * @return the heap used by the buckets of a series with these tiers
+     */
+    public static long memoryBytes(int[] capacities) {
+        return Arrays.stream(capacities).asLongStream().sum() * Tier.BYTES_PER_BUCKET;
+    }
+
+    public synchronized void add(double time, double value) {
+        for (Tier tier : tiers) {
+            tier.add(time, (float) value);
+        }
+    }
+
+    public synchronized void clear() {
+        for (Tier tier : tiers) {
+            tier.clear();
+        }
+    }
+
+    /**
+     * Aggregate the samples between two times into buckets.
+     * The query reads the finest tier that still holds {@code from} and whose buckets are not wider than the
+     * requested resolution, falling back to the coarsest such tier when none reaches back far enough.
+     * @param resolution bucket width of the result in seconds, rounded up to a multiple of the tier read;
+     *                   0 for the width of the tier
+     * @throws IllegalArgumentException if the range is empty or would produce too many buckets
+     */
+    public synchronized TimeSeriesDTO query(double from, double to, int resolution, TimeSeriesAggregation aggregation) {
+        if (!(to >= from)) {
+            throw new IllegalArgumentException("Query range must not end before it starts");
+        }
+
+        Tier tier = selectTier(from, resolution);
+        int width = resolution <= 0
+                ? tier.bucketSeconds
+                : (resolution + tier.bucketSeconds - 1) / tier.bucketSeconds * tier.bucketSeconds;
+        long firstBucket = (long) Math.floor(from / width);
+        long lastBucket = (long) Math.floor(to / width);
+        if (lastBucket - firstBucket >= MAX_QUERY_BUCKETS) {
+            throw new IllegalArgumentException("Query would return more than " + MAX_QUERY_BUCKETS
+                    + " buckets; use a coarser resolution");
+        }
+
+        int buckets = (int) (lastBucket - firstBucket + 1);
+        float[] min = new float[buckets];
+        float[] max = new float[buckets];
+        double[] sum = new double[buckets];
+        int[] count = new int[buckets];
+        tier.merge(firstBucket * (width / tier.bucketSeconds), width / tier.bucketSeconds, min, max, sum, count);
+
+        int filled = 0;
+        for (int c : count) {
+            if (c > 0) {
+                filled++;
+            }
+        }
+        double[] times = new double[filled];
+        double[] values = new double[filled];
+        int next = 0;
+        for (int i = 0; i < buckets; i++) {
+            if (count[i] == 0) {
+                continue;
+            }
+            times[next] = (firstBucket + i) * (double) width;
+            values[next] = switch (aggregation) {
+                case MEAN -> sum[i] / count[i];
+                case MIN -> min[i];
+                case MAX -> max[i];
+                case SUM -> sum[i];
+                case COUNT -> count[i];
+            };
+            next++;
+        }
+        return new TimeSeriesDTO(name, aggregation, width, times, values);
+    }
+
+    private Tier selectTier(double from, int resolution) {
+        Tier selected = tiers[0];
+        for (Tier tier : tiers) {
+            if (resolution > 0 && tier.bucketSeconds > resolution && tier != tiers[0]) {
+                break;
+            }
+            selected = tier;
+            if (tier.covers(from)) {
+                break;
+            }
+        }
+        return selected;
+    }
+
+    private static class Tier {
+        static final int BYTES_PER_BUCKET = 3 * Float.BYTES + Integer.BYTES;
+
+        final int bucketSeconds;
+        final int capacity;
+        final float[] min;
+        final float[] max;
+        final float[] sum;
+        final int[] count;
+        long head = Long.MIN_VALUE; // newest bucket, buckets (head - capacity, head] are held
+        long first;                 // oldest bucket ever written
+
+        Tier(int bucketSeconds, int capacity) {
+            if (bucketSeconds <= 0 || capacity <= 0) {
+                throw new IllegalArgumentException("Time series tiers need a positive width and capacity");
+            }
+            this.bucketSeconds = bucketSeconds;
+            this.capacity = capacity;
+            this.min = new float[capacity];
+            this.max = new float[capacity];
+            this.sum = new float[capacity];
+            this.count = new int[capacity];
+        }
+
+        void add(double time, float value) {
+            long bucket = (long) Math.floor(time / bucketSeconds);
+            if (head == Long.MIN_VALUE || bucket > head) {
+                // Reset the buckets the ring moves over
+                long cleared = head == Long.MIN_VALUE ? capacity : Math.min(bucket - head, capacity);
+                for (long b = bucket - cleared + 1; b <= bucket; b++) {
+                    count[Math.floorMod(b, capacity)] = 0;
+                }
+                if (head == Long.MIN_VALUE) {
+                    first = bucket;
+                }
+                head = bucket;
+            } else if (bucket <= head - capacity) {
+                return;
+            }
+
+            int slot = Math.floorMod(bucket, capacity);
+            if (count[slot] == 0) {
+                min[slot] = value;
+                max[slot] = value;
+                sum[slot] = value;
+            } else {
+                min[slot] = Math.min(min[slot], value);
+                max[slot] = Math.max(max[slot], value);
+                sum[slot] += value;
+            }
+            count[slot]++;
+        }
+
+        /**
+         * Merge the held buckets from {@code start} on into result buckets each spanning {@code ratio} buckets.
+         */
+        void merge(long start, int ratio, float[] resultMin, float[] resultMax, double[] resultSum, int[] resultCount) {
+            if (head == Long.MIN_VALUE) {
+                return;
+            }
+            long end = Math.min(start + (long) resultCount.length * ratio - 1, head);
+            for (long bucket = Math.max(start, head - capacity + 1); bucket <= end; bucket++) {
+                int slot = Math.floorMod(bucket, capacity);
+                if (count[slot] == 0) {
+                    continue;
+                }
+                int target = (int) ((bucket - start) / ratio);
+                boolean empty = resultCount[target] == 0;
+                resultMin[target] = empty ? min[slot] : Math.min(resultMin[target], min[slot]);
+                resultMax[target] = empty ? max[slot] : Math.max(resultMax[target], max[slot]);
+                resultSum[target] += sum[slot];
+                resultCount[target] += count[slot];
+            }
+        }
+
+        /**
+         * @return whether no sample at or after the time has been evicted yet
+         */
+        boolean covers(double time) {
+            return head != Long.MIN_VALUE
+                    && (first > head - capacity || (long) Math.floor(time / bucketSeconds) > head - capacity);
+        }
+
+        void clear() {
+            Arrays.fill(count, 0);
+            head = Long.MIN_VALUE;
+        }
+    }
+}
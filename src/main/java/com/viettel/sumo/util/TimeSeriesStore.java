@@ -0,0 +1,102 @@
+package com.viettel.sumo.util;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The time series of one simulation, named {@code <metric>:<entity>} such as {@code lane.vehicles:N2C_1}.
+ * All series share the same tiers, and the number of series is capped, so the memory of the store is bounded
+ * by {@code maxSeries} times the size of one series however long the simulation runs.
+ */
+@Slf4j
+public class TimeSeriesStore {
+    public static final String LANE_VEHICLES = "lane.vehicles";
+    public static final String LANE_PASSED = "lane.passed";
+    public static final String LANE_HALTING = "lane.halting";
+    public static final String NETWORK_HALTING = "network.halting";
+    public static final String NETWORK_ARRIVED = "network.arrived";
+    public static final String INTERSECTION_CYCLE = "intersection.cycle";
+    public static final String INTERSECTION_Y = "intersection.y";
+
+    @Getter
+    private final int[] resolutions;
+    @Getter
+    private final int[] retentions;
+    @Getter
+    private final int maxSeries;
+    private final Map<String, TimeSeries> series = new ConcurrentHashMap<>();
+    private volatile boolean limitLogged;
+
+    /**
+     * @param resolutions bucket width of each tier in seconds, finest first
+     * @param retentions  number of buckets kept by each tier
+     */
+    public TimeSeriesStore(int[] resolutions, int[] retentions, int maxSeries) {
+        if (resolutions.length == 0 || resolutions.length != retentions.length) {
+            throw new IllegalArgumentException("Every time series tier needs a resolution and a retention");
+        }
+        for (int i = 1; i < resolutions.length; i++) {
+            if (resolutions[i] <= resolutions[i - 1]) {
+                throw new IllegalArgumentException("Time series resolutions must be increasing");
+            }
+        }
+        this.resolutions = resolutions.clone();
+        this.retentions = retentions.clone();
+        this.maxSeries = maxSeries;
+    }
+
+    public static String name(String metric, String entity) {
+        return metric + ":" + entity;
+    }
+
+    /**
+     * @return the series with this name, created if needed, or null if the store holds the maximum number of series
+     */
+    public TimeSeries series(String metric, String entity) {
+        String name = name(metric, entity);
+        TimeSeries existing = series.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        if (series.size() >= maxSeries) {
+            if (!limitLogged) {
+                limitLogged = true;
+                log.warn("Time series store is full ({} series), not recording {}", maxSeries, name);
+            }
+            return null;
+        }
+        return series.computeIfAbsent(name, key -> new TimeSeries(key, resolutions, retentions));
+    }
+
+    /**
+     * @return the series with this name, or null if nothing was recorded under it
+     */
+    public TimeSeries get(String name) {
+        return series.get(name);
+    }
+
+    /**
+     * @return the sorted names of all series starting with the prefix
+     */
+    public List<String> names(String prefix) {
+        return series.keySet().stream()
+                .filter(name -> prefix == null || name.startsWith(prefix))
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Drop the samples of every series, keeping the series and their memory for the next run.
+     */
+    public void clear() {
+        series.values().forEach(TimeSeries::clear);
+    }
+
+    public long memoryBytes() {
+        return series.size() * TimeSeries.memoryBytes(retentions);
+    }
+}
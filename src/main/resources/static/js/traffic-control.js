@@ -25,44 +25,48 @@ async function updateSimulationStatus() {
         }
 
         const statusText = await response.text();
-        const isRunning = statusText.includes("running");
-        simulationRunning = isRunning;
+        const isRunning = !statusText.includes("not running");
         debugLog(`Simulation status: ${statusText} (isRunning=${isRunning})`);
+        renderSimulationStatus(statusText, isRunning);
+    } catch (error) {
+        console.error('Failed to fetch simulation status:', error);
+        addLogEntry(`Failed to fetch simulation status: ${error.message}`, 'error');
+    }
+}
 
-        // Update status display
-        const statusElement = document.getElementById('simulationStatus');
-        if (statusElement) {
-            statusElement.textContent = statusText;
-
-            if (isRunning) {
-                statusElement.classList.add('running');
-                statusElement.classList.remove('stopped');
-                enableTrafficControls();
-            } else {
-                statusElement.classList.add('stopped');
-                statusElement.classList.remove('running');
-                disableTrafficControls();
-            }
+// Function to show the simulation status and enable the matching controls
+function renderSimulationStatus(statusText, isRunning) {
+    simulationRunning = isRunning;
+
+    // Update status display
+    const statusElement = document.getElementById('simulationStatus');
+    if (statusElement) {
+        statusElement.textContent = statusText;
+
+        if (isRunning) {
+            statusElement.classList.add('running');
+            statusElement.classList.remove('stopped');
+            enableTrafficControls();
+        } else {
+            statusElement.classList.add('stopped');
+            statusElement.classList.remove('running');
+            disableTrafficControls();
         }
+    }
 
-        // IMPORTANT: Explicitly update button states with direct assignments
-        const startButton = document.getElementById('startSimulation');
-        const stopButton = document.getElementById('stopSimulation');
-        const runStepsButton = document.getElementById('runSteps');
+    // IMPORTANT: Explicitly update button states with direct assignments
+    const startButton = document.getElementById('startSimulation');
+    const stopButton = document.getElementById('stopSimulation');
+    const runStepsButton = document.getElementById('runSteps');
 
-        if (startButton) {
-            startButton.disabled = isRunning;
-            debugLog(`Start button disabled set to: ${isRunning}`);
-        }
-        if (stopButton) {
-            stopButton.disabled = !isRunning;
-        }
-        if (runStepsButton) {
-            runStepsButton.disabled = !isRunning;
-        }
-    } catch (error) {
-        console.error('Failed to fetch simulation status:', error);
-        addLogEntry(`Failed to fetch simulation status: ${error.message}`, 'error');
+    if (startButton) {
+        startButton.disabled = isRunning;
+    }
+    if (stopButton) {
+        stopButton.disabled = !isRunning;
+    }
+    if (runStepsButton) {
+        runStepsButton.disabled = !isRunning;
     }
 }
 
@@ -158,30 +162,58 @@ async function updateTrafficControlStatus() {
             throw new Error(`HTTP error: ${response.status}`);
         }
 
-        const mode = await response.text();
-        const statusElement = document.getElementById('currentStatus');
-        if (statusElement) {
-            statusElement.textContent = `Traffic Control Mode: ${mode}`;
-        }
-
-        // Highlight the active button
-        document.querySelectorAll('.control-panel .control-button').forEach(button => {
-            button.classList.remove('active');
-        });
-
-        // Find the button for this mode and highlight it
-        const modeValue = mode.replace(/"/g, '');
-        document.querySelectorAll('.control-panel .control-button').forEach(button => {
-            if (button.getAttribute('data-mode') === modeValue) {
-                button.classList.add('active');
-            }
-        });
+        renderTrafficControlMode((await response.text()).replace(/"/g, ''));
     } catch (error) {
         console.error('Failed to fetch traffic control mode:', error);
         addLogEntry(`Failed to fetch traffic control mode: ${error.message}`, 'error');
     }
 }
 
+// Function to show the traffic control mode and highlight its button
+function renderTrafficControlMode(mode) {
+    const statusElement = document.getElementById('currentStatus');
+    if (statusElement) {
+        statusElement.textContent = `Traffic Control Mode: ${mode}`;
+    }
+
+    document.querySelectorAll('.control-panel .control-button').forEach(button => {
+        button.classList.toggle('active', button.getAttribute('data-mode') === mode);
+    });
+}
+
+// Function to subscribe to the live state stream of the simulation.
+// The server pushes the latest step summary, mode and optimization result; EventSource reconnects by itself.
+function connectLiveStream() {
+    const source = new EventSource(`${API_BASE}/simulation/stream`);
+
+    source.addEventListener('step', event => {
+        const frame = JSON.parse(event.data);
+        if (frame.running !== simulationRunning) {
+            renderSimulationStatus(frame.running ? 'Simulation is running' : 'Simulation is not running',
+                frame.running);
+        }
+        const timeElement = document.getElementById('simulationTime');
+        if (timeElement) {
+            timeElement.textContent = `t = ${frame.simulationTime.toFixed(1)} s, ${frame.haltingVehicles} halting, `
+                + `${frame.achievedSpeed.toFixed(1)}x${frame.paused ? ' (paused)' : ''}`;
+        }
+    });
+
+    source.addEventListener('mode', event => {
+        renderTrafficControlMode(JSON.parse(event.data));
+    });
+
+    source.addEventListener('optimization', event => {
+        const frame = JSON.parse(event.data);
+        addLogEntry(`Optimized ${frame.intersections} intersections at ${frame.simulationTime} s: `
+            + `${frame.changedLights} changed, ${frame.oversaturated} oversaturated, `
+            + `mean cycle ${frame.meanCycle.toFixed(1)} s`, 'info');
+    });
+
+    source.onerror = () => debugLog('Live stream disconnected, reconnecting...');
+    return source;
+}
+
 // Function to set traffic control mode
 function setTrafficControlMode(mode) {
     if (!simulationRunning) {
@@ -305,13 +337,8 @@ function initDashboard() {
     updateSimulationStatus();
     updateTrafficControlStatus();
 
-    // Set up periodic updates
-    setInterval(() => {
-        updateSimulationStatus();
-        if (simulationRunning) {
-            updateTrafficControlStatus();
-        }
-    }, 5000);
+    // Further updates are pushed by the server
+    connectLiveStream();
 
     // Force enable start button with a slight delay
     setTimeout(forceEnableStartButton, 1000);
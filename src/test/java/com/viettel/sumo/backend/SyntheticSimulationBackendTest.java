@@ -0,0 +1,130 @@
+package com.viettel.sumo.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.sumo.config.RecordingConfig;
+import com.viettel.sumo.config.SumoConfig;
+import com.viettel.sumo.config.SyntheticConfig;
+import com.viettel.sumo.config.WebsterConfig;
+import com.viettel.sumo.model.IntersectionConfiguration;
+import com.viettel.sumo.model.SignalProgram;
+import com.viettel.sumo.model.SimulationBackendType;
+import com.viettel.sumo.service.*;
+import com.viettel.sumo.util.FlowHistory;
+import com.viettel.sumo.util.SumoDataConverter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticSimulationBackendTest {
+
+    private final SyntheticConfig syntheticConfig = new SyntheticConfig();
+
+    @Test
+    void servesQueuesOnlyDuringGreen() {
+        syntheticConfig.setIntersections(1);
+        syntheticConfig.setApproaches(2);
+        syntheticConfig.setArrivalRate(1800);
+        SyntheticSimulationBackend backend = new SyntheticSimulationBackend(syntheticConfig);
+        backend.start(null, false, 1.0);
+
+        SignalProgram program = backend.getPrograms("S0").get(0);
+        backend.setPhase("S0", 0);
+        for (int t = 0; t < 20; t++) {
+            backend.step();
+            assertEquals(0, backend.getPhase("S0"));
+        }
+
+        // Approach 0 has green in phase 0, approach 1 keeps queueing
+        assertTrue(backend.getLaneHaltingNumber("S0_A1_0") > backend.getLaneHaltingNumber("S0_A0_0"));
+        assertEquals("Gr", program.getPhases().get(0).state());
+        assertEquals(20.0, backend.getTime());
+
+        assertEquals(-1, backend.getSubscribedPhase("S0"));
+        backend.subscribeProgramPositions(List.of("S0"));
+        assertEquals(0, backend.getSubscribedPhase("S0"));
+    }
+
+    @Test
+    void drivesTheControlLoopWithoutSumo() {
+        syntheticConfig.setIntersections(200);
+        SumoConfig sumoConfig = new SumoConfig();
+        sumoConfig.setOptimizationInterval(60);
+        WebsterConfig websterConfig = new WebsterConfig();
+        SumoService sumoService = new SumoService(sumoConfig, new SumoDataConverter(websterConfig),
+                new ObjectMapper(), new RecordingConfig());
+        WebsterService websterService = new WebsterService(websterConfig);
+
+        Map<String, IntersectionConfiguration> configs =
+                SyntheticSimulationBackend.intersectionConfigurations(syntheticConfig);
+        SimulationSession session = new SimulationSession("synthetic", null, null, false,
+                SimulationBackendType.SYNTHETIC, new SyntheticSimulationBackend(syntheticConfig),
+                configs, sumoService.compileIntersectionPlans(configs), 1.0, 0, new SimpleMeterRegistry());
+
+        sumoService.startSimulation(session);
+        assertTrue(session.isRunning());
+        assertEquals(200, session.getTopologyIndex().getTrafficLightIds().size());
+        for (int t = 0; t < 60; t++) {
+            sumoService.stepSimulation(session);
+        }
+
+        WebsterBatch batch = session.getWebsterBatch();
+        batch.loadFlows();
+        websterService.calculateBatch(batch);
+        sumoService.applyWebsterBatch(session, batch);
+
+        String tlID = batch.getPlan(0).getSumoId();
+        SignalProgram applied = session.getBackend().call(() -> session.getBackend().getPrograms(tlID).stream()
+                .filter(program -> program.getProgramId().equals("0"))
+                .findFirst().orElseThrow());
+        assertEquals(batch.getGreenTime(0, 0), (int) applied.getPhases().get(0).duration());
+        assertTrue(session.getRunStatistics().snapshot(60, 1.0).getArrivedVehicles() > 0);
+
+        sumoService.stopSimulation(session);
+        assertFalse(session.isRunning());
+    }
+
+    @Test
+    void countsVehiclesPassingInductionLoops() {
+        syntheticConfig.setIntersections(4);
+        SumoConfig sumoConfig = new SumoConfig();
+        sumoConfig.setOptimizationInterval(60);
+        SumoService sumoService = new SumoService(sumoConfig, new SumoDataConverter(new WebsterConfig()),
+                new ObjectMapper(), new RecordingConfig());
+
+        Map<String, IntersectionConfiguration> configs =
+                SyntheticSimulationBackend.intersectionConfigurations(syntheticConfig);
+        configs.values().forEach(config -> config.getRoads().forEach(road -> road.getFlows().forEach(flow ->
+                flow.setDetector("e1_" + flow.getLane().substring(0, flow.getLane().lastIndexOf('_'))))));
+        SimulationSession session = new SimulationSession("detectors", null, null, false,
+                SimulationBackendType.SYNTHETIC, new SyntheticSimulationBackend(syntheticConfig),
+                configs, sumoService.compileIntersectionPlans(configs), 1.0, 0, new SimpleMeterRegistry());
+
+        sumoService.startSimulation(session);
+        assertEquals(16, Arrays.stream(session.getLaneDetectors()).filter(Objects::nonNull).count());
+        int departed = 0;
+        for (int t = 0; t < 60; t++) {
+            sumoService.stepSimulation(session);
+            if (t < 59) {
+                departed += session.getBackend().call(() -> session.getBackend().getArrivedNumber());
+            }
+        }
+
+        // Counts are read before each step, so the window holds the departures of all but the last step
+        double counted = 0;
+        for (FlowHistory history : session.getMonitoredHistories()) {
+            for (int lane = 0; lane < history.getTopology().getLaneCount(); lane++) {
+                counted += history.getAverage(lane) * history.size();
+            }
+        }
+        assertTrue(departed > 0);
+        assertEquals(departed, counted, 1e-6);
+
+        sumoService.stopSimulation(session);
+    }
+}
@@ -0,0 +1,115 @@
+package com.viettel.sumo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntersectionPlanTest {
+
+    @Test
+    void compilesStageToFlowTable() {
+        IntersectionPlan plan = IntersectionPlan.compile(configuration(), 1900);
+
+        assertEquals(1800, plan.getSaturationVolume());
+        assertEquals(2, plan.getStageCount());
+        assertArrayEquals(new String[]{"N2C_0", "N2C_1", "E2W_0", null}, plan.getFlowLanes());
+
+        // Stage 1 is fed by both north lanes, stage 2 by the east lane
+        assertArrayEquals(new int[]{0, 1}, flowsOf(plan, 0));
+        assertArrayEquals(new int[]{2}, flowsOf(plan, 1));
+    }
+
+    @Test
+    void reportsConfigurationProblems() {
+        IntersectionPlan plan = IntersectionPlan.compile(configuration(), 1900);
+
+        assertEquals(List.of(
+                "flow west straight has no lane",
+                "lamp south straight of stage 2 matches no flow"), plan.getWarnings());
+        assertEquals(List.of(2L), plan.findInvalidPhases(program("Gr", "yr", "rr")));
+        assertEquals(List.of(), plan.findInvalidPhases(program("Gr", "yr", "rG", "ry")));
+    }
+
+    @Test
+    void resolvesLanesAgainstTopology() {
+        IntersectionPlan plan = IntersectionPlan.compile(configuration(), 1900);
+        IntersectionTopology topology = new IntersectionTopology(
+                "C", List.of("E2W_0", "N2C_0"), new int[][]{{0}, {1}}, 2, program("Gr", "yr", "rG", "ry"));
+
+        assertArrayEquals(new int[]{1, -1, 0, -1}, plan.resolveLanes(topology));
+    }
+
+    @Test
+    void rejectsStagesWithoutTimings() {
+        IntersectionConfiguration config = configuration();
+        config.getStages().get(0).setMaxGreenTime(null);
+
+        assertThrows(IllegalArgumentException.class, () -> IntersectionPlan.compile(config, 1900));
+    }
+
+    private static SignalProgram program(String... states) {
+        List<SignalPhase> phases = new ArrayList<>();
+        for (String state : states) {
+            phases.add(new SignalPhase(30, state, 30, 30, new int[0], ""));
+        }
+        return new SignalProgram("0", 0, phases);
+    }
+
+    private static int[] flowsOf(IntersectionPlan plan, int stage) {
+        return Arrays.copyOfRange(plan.getStageFlowIndices(),
+                plan.getStageFlowStart(stage), plan.getStageFlowEnd(stage));
+    }
+
+    private static IntersectionConfiguration configuration() {
+        IntersectionConfiguration config = new IntersectionConfiguration();
+        config.setSumoId("C");
+        config.setSaturationVolume(1800.0);
+        config.setStages(List.of(
+                stage(1L, 0, lamp("north", "straight")),
+                stage(2L, 1, lamp("east", "straight"), lamp("south", "straight"))));
+        config.setRoads(List.of(
+                road(flow("north", "straight", "N2C_0"), flow("north", "straight", "N2C_1")),
+                road(flow("east", "straight", "E2W_0")),
+                road(flow("west", "straight", null))));
+        return config;
+    }
+
+    private static IntersectionConfiguration.StageConfig stage(Long id, int phaseIndex,
+                                                               IntersectionConfiguration.LampConfig... lamps) {
+        IntersectionConfiguration.StageConfig stage = new IntersectionConfiguration.StageConfig();
+        stage.setId(id);
+        stage.setPhaseIndex(phaseIndex);
+        stage.setMinGreenTime(10);
+        stage.setMaxGreenTime(60);
+        stage.setYellow(3);
+        stage.setRedClear(2);
+        stage.setWeight(0.5);
+        stage.setLamps(List.of(lamps));
+        return stage;
+    }
+
+    private static IntersectionConfiguration.LampConfig lamp(String direction, String route) {
+        IntersectionConfiguration.LampConfig lamp = new IntersectionConfiguration.LampConfig();
+        lamp.setDirection(direction);
+        lamp.setRoute(route);
+        return lamp;
+    }
+
+    private static IntersectionConfiguration.RoadConfig road(IntersectionConfiguration.FlowConfig... flows) {
+        IntersectionConfiguration.RoadConfig road = new IntersectionConfiguration.RoadConfig();
+        road.setFlows(List.of(flows));
+        return road;
+    }
+
+    private static IntersectionConfiguration.FlowConfig flow(String direction, String route, String lane) {
+        IntersectionConfiguration.FlowConfig flow = new IntersectionConfiguration.FlowConfig();
+        flow.setDirection(direction);
+        flow.setRoute(route);
+        flow.setLane(lane);
+        return flow;
+    }
+}
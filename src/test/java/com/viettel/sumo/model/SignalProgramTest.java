@@ -0,0 +1,73 @@
+package com.viettel.sumo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignalProgramTest {
+
+    // Layout of the PVB junction: three stages of green, yellow and all-red
+    private final SignalProgram threeStage = program(
+            "rrrGGGGrGr", "rrryyyyryr", "rrrrrrrrrr",
+            "GGgrrrrrrr", "yyyrrrrrrr", "rrrrrrrrrr",
+            "rrrrrrrgrg", "rrrrrrryry", "rrrrrrrrrr");
+
+    @Test
+    void discoversGreenPhases() {
+        assertArrayEquals(new int[]{0, 3, 6}, threeStage.getGreenPhaseIndices());
+        assertEquals(6, threeStage.getGreenPhaseIndex(2));
+        assertEquals(-1, threeStage.getGreenPhaseIndex(3));
+
+        // Two stages without red-clear phases
+        SignalProgram twoStage = program("GGrr", "yyrr", "rrGG", "rryy");
+        assertArrayEquals(new int[]{0, 2}, twoStage.getGreenPhaseIndices());
+    }
+
+    @Test
+    void advancesToNextGreenPhase() {
+        assertEquals(3, threeStage.getNextGreenPhaseIndex(0));
+        assertEquals(3, threeStage.getNextGreenPhaseIndex(2));
+        assertEquals(0, threeStage.getNextGreenPhaseIndex(7));
+    }
+
+    @Test
+    void keepsProgramWhenDurationsAreUnchanged() {
+        int[] greenPhases = {0, 3, 6};
+
+        assertSame(threeStage, threeStage.withDurations(greenPhases, new int[]{30, 30, 30}, 0));
+
+        SignalProgram updated = threeStage.withDurations(greenPhases, new int[]{99, 45, 30, 20}, 1);
+        assertNotSame(threeStage, updated);
+        assertEquals(45, updated.getPhases().get(0).duration());
+        assertEquals(30, updated.getPhases().get(3).duration());
+        assertEquals(20, updated.getPhases().get(6).duration());
+        assertEquals(3, updated.getPhases().get(1).duration());
+        assertEquals(threeStage.getPhases().get(0).state(), updated.getPhases().get(0).state());
+    }
+
+    @Test
+    void buildsOverrideProgramsForLinkCount() {
+        SignalProgram allRed = OverrideProgram.ALL_RED.build(20);
+        assertEquals("override-red", allRed.getProgramId());
+        assertEquals("r".repeat(20), allRed.getPhases().get(0).state());
+        assertEquals(0, allRed.getGreenPhaseCount());
+
+        SignalProgram flashing = OverrideProgram.FLASHING_YELLOW.build(4);
+        assertEquals(List.of(SignalPhaseKind.YELLOW, SignalPhaseKind.RED_CLEAR),
+                flashing.getPhases().stream().map(SignalPhase::kind).toList());
+        assertTrue(OverrideProgram.isOverride("override-off"));
+        assertFalse(OverrideProgram.isOverride("0"));
+    }
+
+    private static SignalProgram program(String... states) {
+        List<SignalPhase> phases = new ArrayList<>();
+        for (String state : states) {
+            double duration = SignalPhaseKind.of(state) == SignalPhaseKind.GREEN ? 30 : 3;
+            phases.add(new SignalPhase(duration, state, duration, duration, new int[0], ""));
+        }
+        return new SignalProgram("0", 0, phases);
+    }
+}
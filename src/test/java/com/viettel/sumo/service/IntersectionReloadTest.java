@@ -0,0 +1,81 @@
+package com.viettel.sumo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.sumo.backend.SyntheticSimulationBackend;
+import com.viettel.sumo.config.RecordingConfig;
+import com.viettel.sumo.config.SumoConfig;
+import com.viettel.sumo.config.SyntheticConfig;
+import com.viettel.sumo.config.WebsterConfig;
+import com.viettel.sumo.model.IntersectionConfiguration;
+import com.viettel.sumo.model.IntersectionReloadDTO;
+import com.viettel.sumo.model.SimulationBackendType;
+import com.viettel.sumo.util.FlowHistory;
+import com.viettel.sumo.util.SumoDataConverter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntersectionReloadTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void swapsConfigurationsOfRunningSimulation() throws IOException {
+        SyntheticConfig syntheticConfig = new SyntheticConfig();
+        syntheticConfig.setIntersections(3);
+        syntheticConfig.setApproaches(2);
+        SumoConfig sumoConfig = new SumoConfig();
+        sumoConfig.setOptimizationInterval(10);
+        SumoService sumoService = new SumoService(sumoConfig, new SumoDataConverter(new WebsterConfig()),
+                objectMapper, new RecordingConfig());
+
+        Path file = directory.resolve("intersections.json");
+        List<IntersectionConfiguration> configs =
+                new ArrayList<>(SyntheticSimulationBackend.intersectionConfigurations(syntheticConfig).values());
+        objectMapper.writeValue(file.toFile(), configs);
+        Map<String, IntersectionConfiguration> loaded = sumoService.loadIntersectionConfigurations(file.toString());
+        // The synthetic model stands in for SUMO; the session reads its configurations from the file
+        SimulationSession session = new SimulationSession("reload", null, file.toString(), false,
+                SimulationBackendType.TRACI, new SyntheticSimulationBackend(syntheticConfig),
+                loaded, sumoService.compileIntersectionPlans(loaded), 1.0, 0, new SimpleMeterRegistry());
+        sumoService.startSimulation(session);
+        for (int t = 0; t < 5; t++) {
+            sumoService.stepSimulation(session);
+        }
+        FlowHistory keptHistory = session.getFlowHistories().get("S0");
+
+        configs.get(1).getStages().get(0).setMinGreenTime(20);
+        configs.remove(2);
+        objectMapper.writeValue(file.toFile(), configs);
+        IntersectionReloadDTO result = sumoService.reloadIntersectionConfigurations(session).join();
+
+        assertEquals(List.of(), result.getAdded());
+        assertEquals(List.of("S1"), result.getChanged());
+        assertEquals(List.of("S2"), result.getRemoved());
+        assertEquals(20, session.getIntersectionPlans().get("S1").getMinGreenTimes()[0]);
+        assertEquals(2, session.getWebsterBatch().size());
+        assertSame(keptHistory, session.getFlowHistories().get("S0"));
+        assertEquals(5, keptHistory.size());
+        assertFalse(session.getFlowHistories().containsKey("S2"));
+
+        // A stage without timings does not compile, so nothing is swapped in
+        configs.get(0).getStages().get(0).setYellow(null);
+        objectMapper.writeValue(file.toFile(), configs);
+        assertThrows(IllegalArgumentException.class, () -> sumoService.reloadIntersectionConfigurations(session));
+        Files.writeString(file, "[{");
+        assertThrows(IllegalArgumentException.class, () -> sumoService.reloadIntersectionConfigurations(session));
+        assertEquals(2, session.getIntersectionConfigs().size());
+        assertEquals(2, session.getWebsterBatch().size());
+    }
+}
@@ -0,0 +1,66 @@
+package com.viettel.sumo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.sumo.backend.SyntheticSimulationBackend;
+import com.viettel.sumo.config.RecordingConfig;
+import com.viettel.sumo.config.SnapshotConfig;
+import com.viettel.sumo.config.StreamConfig;
+import com.viettel.sumo.config.SumoConfig;
+import com.viettel.sumo.config.SyntheticConfig;
+import com.viettel.sumo.config.WebsterConfig;
+import com.viettel.sumo.model.IntersectionConfiguration;
+import com.viettel.sumo.model.SimulationBackendType;
+import com.viettel.sumo.model.SimulationJob;
+import com.viettel.sumo.model.SimulationJobStatus;
+import com.viettel.sumo.util.SumoDataConverter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationServiceTest {
+
+    @Test
+    void handsTheLoopToANewJobWhileTheLastOneFinishes() {
+        SyntheticConfig syntheticConfig = new SyntheticConfig();
+        syntheticConfig.setIntersections(2);
+        syntheticConfig.setApproaches(2);
+        SumoConfig sumoConfig = new SumoConfig();
+        ObjectMapper objectMapper = new ObjectMapper();
+        SumoService sumoService = new SumoService(sumoConfig, new SumoDataConverter(new WebsterConfig()),
+                objectMapper, new RecordingConfig());
+        LiveStateService liveStateService = new LiveStateService(new StreamConfig(), objectMapper);
+        SimulationService simulationService = new SimulationService(sumoService,
+                new WebsterService(new WebsterConfig()), sumoConfig, new TrafficControlService(liveStateService),
+                liveStateService, new SimulationSnapshotService(new SnapshotConfig(), objectMapper));
+        Map<String, IntersectionConfiguration> configs =
+                SyntheticSimulationBackend.intersectionConfigurations(syntheticConfig);
+        SimulationSession session = new SimulationSession("jobs", null, null, false,
+                SimulationBackendType.SYNTHETIC, new SyntheticSimulationBackend(syntheticConfig),
+                configs, sumoService.compileIntersectionPlans(configs), 1.0, 0, new SimpleMeterRegistry());
+
+        // One-step jobs finish on the step after their hand-over, racing the submission of the next job
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            SimulationJob previous = null;
+            for (int i = 0; i < 200; i++) {
+                SimulationJob job = null;
+                while (job == null) {
+                    try {
+                        job = simulationService.startJob(session, "job-" + i, 1, 0);
+                    } catch (IllegalStateException e) {
+                        assertTrue(e.getMessage().contains("already running"), e.getMessage());
+                    }
+                }
+                if (previous != null) {
+                    assertEquals(SimulationJobStatus.COMPLETED, previous.getStatus());
+                }
+                previous = job;
+            }
+            simulationService.stopSimulation(session);
+        });
+        assertFalse(session.getStepper().isRunning());
+    }
+}
@@ -0,0 +1,89 @@
+package com.viettel.sumo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationStepperTest {
+
+    @Test
+    void runsCommandsOnTheSteppingThreadAndCoalescesThem() throws Exception {
+        SimulationStepper stepper = new SimulationStepper("test", 1.0, 0);
+        List<String> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch stepping = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        stepper.start(() -> {
+            stepping.countDown();
+            await(release);
+            return true;
+        });
+
+        // The loop is inside a step, so all three commands queue up behind it
+        assertTrue(stepping.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> red = stepper.submit("mode", () -> record(executed, "red"));
+        CompletableFuture<String> action = stepper.submit(null, () -> record(executed, "next-phase"));
+        CompletableFuture<String> yellow = stepper.submit("mode", () -> record(executed, "yellow"));
+        release.countDown();
+
+        assertEquals("yellow", red.get(5, TimeUnit.SECONDS));
+        assertEquals("yellow", yellow.get(5, TimeUnit.SECONDS));
+        assertEquals("next-phase", action.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("next-phase", "yellow"), executed.stream().map(e -> e.split("@")[0]).toList());
+        assertTrue(executed.stream().allMatch(e -> e.endsWith("@sumo-stepper-test")));
+
+        // A paused loop still runs commands
+        stepper.pause();
+        assertEquals("paused", stepper.submit(null, () -> "paused").get(5, TimeUnit.SECONDS));
+        stepper.stop();
+
+        CompletableFuture<String> direct = stepper.submit(null, () -> Thread.currentThread().getName());
+        assertEquals(Thread.currentThread().getName(), direct.getNow(null));
+        assertTrue(stepper.submit(null, () -> {
+            throw new IllegalStateException("failed");
+        }).isCompletedExceptionally());
+    }
+
+    @Test
+    void failsQueuedCommandsWhenACommandThrowsAnError() throws Exception {
+        SimulationStepper stepper = new SimulationStepper("error", 1.0, 0);
+        CountDownLatch stepping = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        stepper.start(() -> {
+            stepping.countDown();
+            await(release);
+            return true;
+        });
+
+        assertTrue(stepping.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> failing = stepper.submit(null, () -> {
+            throw new AssertionError("native failure");
+        });
+        CompletableFuture<String> behind = stepper.submit("mode", () -> "never");
+        release.countDown();
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(AssertionError.class, error.getCause());
+        assertThrows(ExecutionException.class, () -> behind.get(5, TimeUnit.SECONDS));
+        stepper.stop();
+    }
+
+    private static String record(List<String> executed, String command) {
+        executed.add(command + "@" + Thread.currentThread().getName());
+        return command;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
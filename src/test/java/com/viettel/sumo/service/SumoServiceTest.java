@@ -0,0 +1,40 @@
+package com.viettel.sumo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.sumo.config.RecordingConfig;
+import com.viettel.sumo.config.SumoConfig;
+import com.viettel.sumo.config.WebsterConfig;
+import com.viettel.sumo.util.SumoDataConverter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SumoServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void resolvesScenarioPathsInsideTheScenariosDirectoryOnly() throws IOException {
+        Path scenarios = Files.createDirectories(directory.resolve("scenarios"));
+        Files.createDirectories(scenarios.resolve("PVB"));
+        Files.createSymbolicLink(scenarios.resolve("escape"), directory);
+        SumoConfig sumoConfig = new SumoConfig();
+        sumoConfig.setScenariosPath(scenarios.toString());
+        SumoService sumoService = new SumoService(sumoConfig, new SumoDataConverter(new WebsterConfig()),
+                new ObjectMapper(), new RecordingConfig());
+
+        assertEquals(scenarios.resolve("PVB/osm.sumocfg").toString(),
+                sumoService.resolveScenarioPath("PVB/osm.sumocfg"));
+        assertEquals(scenarios.resolve("PVB.json").toString(),
+                sumoService.resolveScenarioPath("PVB/../PVB.json"));
+        assertThrows(IllegalArgumentException.class, () -> sumoService.resolveScenarioPath("../other.sumocfg"));
+        assertThrows(IllegalArgumentException.class, () -> sumoService.resolveScenarioPath("/etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> sumoService.resolveScenarioPath("escape"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.viettel.sumo.service;
+
+import com.viettel.sumo.backend.SyntheticSimulationBackend;
+import com.viettel.sumo.config.SyntheticConfig;
+import com.viettel.sumo.model.IntersectionConfiguration;
+import com.viettel.sumo.model.IntersectionPlan;
+import com.viettel.sumo.model.IntersectionTopology;
+import com.viettel.sumo.model.SignalProgram;
+import com.viettel.sumo.util.FlowHistory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebsterBatchTest {
+
+    private final List<IntersectionPlan> plans = new ArrayList<>();
+    private final List<FlowHistory> histories = new ArrayList<>();
+
+    @Test
+    void spreadsIntersectionsOverTheInterval() {
+        WebsterBatch batch = batch(4);
+        batch.schedule(new int[]{8, 8, 8, 8}, 0);
+        record(1, 1);
+
+        int due = 0;
+        for (long step = 1; step <= 16; step++) {
+            batch.loadDueFlows(step, 0);
+            assertTrue(batch.getLastDue() <= 1, "more than one intersection due at step " + step);
+            due += batch.getLastDue();
+        }
+        // First slots at steps 8, 10, 12 and 14, then the first intersection again at 16
+        assertEquals(5, due);
+    }
+
+    @Test
+    void keepsPlansWhoseFlowsBarelyChanged() {
+        WebsterBatch batch = batch(1);
+        batch.schedule(new int[]{4}, 0);
+
+        record(10, 10);
+        assertEquals(1, batch.loadDueFlows(4, 0.1));
+        assertTrue(batch.isReady(0));
+
+        record(10, 11);
+        assertEquals(0, batch.loadDueFlows(8, 0.1));
+        assertEquals(1, batch.getLastDue());
+        assertFalse(batch.isReady(0));
+
+        record(20, 20);
+        assertEquals(1, batch.loadDueFlows(12, 0.1));
+    }
+
+    @Test
+    void convertsCountsPerStepIntoVehiclesPerHour() {
+        batch(1);
+        WebsterBatch halfSecondSteps = new WebsterBatch(plans, histories, 0.5);
+        record(1, 2);
+
+        halfSecondSteps.loadFlows();
+        assertEquals(7200, halfSecondSteps.flows[0]);
+        assertEquals(14400, halfSecondSteps.flows[1]);
+    }
+
+    private WebsterBatch batch(int intersections) {
+        SyntheticConfig config = new SyntheticConfig();
+        config.setIntersections(intersections);
+        config.setApproaches(2);
+        for (IntersectionConfiguration intersection :
+                SyntheticSimulationBackend.intersectionConfigurations(config).values()) {
+            String tlID = intersection.getSumoId();
+            IntersectionTopology topology = new IntersectionTopology(tlID, List.of(tlID + "_A0_0", tlID + "_A1_0"),
+                    new int[][]{{0}, {1}}, 2, new SignalProgram("0", 0, List.of()));
+            plans.add(IntersectionPlan.compile(intersection, 1800));
+            histories.add(new FlowHistory(topology, 4));
+        }
+        return new WebsterBatch(plans, histories);
+    }
+
+    /**
+     * Fill the windows of all histories with constant counts on both lanes.
+     */
+    private void record(int first, int second) {
+        for (FlowHistory history : histories) {
+            for (int step = 0; step < history.getCapacity(); step++) {
+                history.record(0, first);
+                history.record(1, second);
+                history.commit();
+            }
+        }
+    }
+}
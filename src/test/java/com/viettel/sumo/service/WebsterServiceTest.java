@@ -0,0 +1,160 @@
+package com.viettel.sumo.service;
+
+import com.viettel.sumo.config.WebsterConfig;
+import com.viettel.sumo.model.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class WebsterServiceTest {
+
+    private final WebsterService websterService = new WebsterService(new WebsterConfig());
+
+    @Test
+    void splitsGreenTimeByCriticalVolume() {
+        WebsterOutputDTO output = websterService.calculateWebster(input(1800, 600, 900, 300));
+
+        assertEquals(100.0, output.getCycleLength());
+        assertEquals(60, output.getEffectiveGreenTimes().get(0).getGreenTime());
+        assertEquals(30, output.getEffectiveGreenTimes().get(1).getGreenTime());
+        assertEquals("stage2", output.getEffectiveGreenTimes().get(1).getOldId());
+    }
+
+    @Test
+    void fallsBackToMaxGreenWhenOversaturated() {
+        WebsterOutputDTO output = websterService.calculateWebster(input(1000, 600, 900, 300));
+
+        assertEquals(190.0, output.getCycleLength());
+        assertEquals(90, output.getEffectiveGreenTimes().get(0).getGreenTime());
+        assertEquals(90, output.getEffectiveGreenTimes().get(1).getGreenTime());
+    }
+
+    @Test
+    void usesMinimumGreenWithoutTraffic() {
+        WebsterOutputDTO output = websterService.calculateWebster(input(1800, 0, 0, 0));
+
+        assertEquals(40.0, output.getCycleLength());
+        assertEquals(15, output.getEffectiveGreenTimes().get(0).getGreenTime());
+        assertEquals(15, output.getEffectiveGreenTimes().get(1).getGreenTime());
+    }
+
+    @Test
+    void batchMatchesSingleIntersectionCalculations() {
+        List<WebsterInputDTO> inputs = List.of(
+                input(1800, 600, 900, 300),
+                input(1000, 600, 900, 300),
+                input(1800, 0, 0, 0),
+                input(2400, 100, 50, 1200));
+
+        List<IntersectionPlan> plans = new ArrayList<>();
+        for (WebsterInputDTO input : inputs) {
+            plans.add(IntersectionPlan.compile(input));
+        }
+        WebsterBatch batch = new WebsterBatch(plans, null);
+        for (int i = 0; i < inputs.size(); i++) {
+            int flow = 0;
+            for (RoadDTO road : inputs.get(i).getRoads()) {
+                for (FlowDataDTO flowData : road.getFlows()) {
+                    batch.setFlow(i, flow++, flowData.getFlowData());
+                }
+            }
+        }
+        websterService.calculateBatch(batch);
+
+        for (int i = 0; i < inputs.size(); i++) {
+            WebsterOutputDTO expected = websterService.calculateWebster(inputs.get(i));
+            assertEquals(expected.getCycleLength(), batch.getCycle(i));
+            for (int s = 0; s < expected.getEffectiveGreenTimes().size(); s++) {
+                assertEquals(expected.getEffectiveGreenTimes().get(s).getGreenTime(), batch.getGreenTime(i, s));
+            }
+        }
+    }
+
+    @Test
+    void parallelBatchMatchesSequentialBatch() {
+        WebsterConfig parallelConfig = new WebsterConfig();
+        parallelConfig.setParallelThreshold(1);
+        parallelConfig.setParallelChunk(7);
+        WebsterService parallelService = new WebsterService(parallelConfig);
+
+        List<IntersectionPlan> plans = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            plans.add(IntersectionPlan.compile(input(1800, 0, 0, 0)));
+        }
+        WebsterBatch sequential = new WebsterBatch(plans, null);
+        WebsterBatch parallel = new WebsterBatch(plans, null);
+        for (int i = 0; i < plans.size(); i++) {
+            for (int flow = 0; flow < 3; flow++) {
+                sequential.setFlow(i, flow, (i * 37 + flow * 101) % 700);
+                parallel.setFlow(i, flow, (i * 37 + flow * 101) % 700);
+            }
+        }
+        websterService.calculateBatch(sequential);
+        parallelService.calculateBatch(parallel);
+
+        for (int i = 0; i < plans.size(); i++) {
+            assertEquals(sequential.getCycle(i), parallel.getCycle(i));
+            assertEquals(sequential.getGreenTime(i, 0), parallel.getGreenTime(i, 0));
+            assertEquals(sequential.getGreenTime(i, 1), parallel.getGreenTime(i, 1));
+        }
+    }
+
+    @Test
+    void skipsIntersectionsWithoutFlows() {
+        WebsterBatch batch = new WebsterBatch(List.of(IntersectionPlan.compile(input(1800, 0, 0, 0))), null);
+        websterService.calculateBatch(batch);
+
+        assertFalse(batch.isReady(0));
+        assertEquals(0.0, batch.getCycle(0));
+    }
+
+    /**
+     * Two stages (north and east straight movements) fed by two north lanes and one east lane.
+     */
+    private static WebsterInputDTO input(double saturationVolume, double north1, double north2, double east) {
+        WebsterInputDTO input = new WebsterInputDTO();
+        input.setSaturationVolume(saturationVolume);
+        input.setStages(List.of(stage(1, "north"), stage(2, "east")));
+        input.setRoads(List.of(
+                road("north", flow("north", north1), flow("north", north2)),
+                road("east", flow("east", east))));
+        return input;
+    }
+
+    private static StageDTO stage(long id, String direction) {
+        LampDTO lamp = new LampDTO();
+        lamp.setDirection(direction);
+        lamp.setRoute("straight");
+
+        StageDTO stage = new StageDTO();
+        stage.setId(id);
+        stage.setOldId("stage" + id);
+        stage.setWeight(0.5);
+        stage.setMinGreenTime(10);
+        stage.setMaxGreenTime(90);
+        stage.setYellow(3);
+        stage.setRedClear(2);
+        stage.setLamps(List.of(lamp));
+        return stage;
+    }
+
+    private static RoadDTO road(String direction, FlowDataDTO... flows) {
+        RoadDTO road = new RoadDTO();
+        road.setDirection(direction);
+        road.setNumberOfLanes(flows.length);
+        road.setFlows(List.of(flows));
+        return road;
+    }
+
+    private static FlowDataDTO flow(String direction, double vehiclesPerHour) {
+        FlowDataDTO flow = new FlowDataDTO();
+        flow.setDirection(direction);
+        flow.setRoute("straight");
+        flow.setFlowData(vehiclesPerHour);
+        return flow;
+    }
+}
@@ -0,0 +1,88 @@
+package com.viettel.sumo.util;
+
+import com.viettel.sumo.model.IntersectionTopology;
+import com.viettel.sumo.model.SignalProgram;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlowHistoryTest {
+
+    private final IntersectionTopology topology = new IntersectionTopology(
+            "C", List.of("N2C_0", "S2C_0"), new int[][]{{0}, {1}}, 2, new SignalProgram("0", 0, List.of()));
+
+    @Test
+    void averagesOverPartiallyFilledWindow() {
+        FlowHistory history = new FlowHistory(topology, 4);
+        assertTrue(history.isEmpty());
+        assertEquals(0, history.getAverage("N2C_0"));
+
+        record(history, 2, 10);
+        record(history, 4, 20);
+
+        assertEquals(2, history.size());
+        assertEquals(3.0, history.getAverage("N2C_0"));
+        assertEquals(15.0, history.getAverage("S2C_0"));
+    }
+
+    @Test
+    void evictsOldestSampleOnceFull() {
+        FlowHistory history = new FlowHistory(topology, 3);
+        for (int step = 1; step <= 5; step++) {
+            record(history, step, step * 10);
+        }
+
+        // Window now holds steps 3, 4 and 5
+        assertEquals(3, history.size());
+        assertEquals(4.0, history.getAverage(0));
+        assertEquals(40.0, history.getAverage(1));
+    }
+
+    @Test
+    void unknownLaneAveragesToZero() {
+        FlowHistory history = new FlowHistory(topology, 3);
+        record(history, 5, 5);
+
+        assertEquals(0, history.getAverage("E2C_0"));
+    }
+
+    @Test
+    void restoresWindowIntoSmallerHistory() {
+        FlowHistory history = new FlowHistory(topology, 4);
+        for (int step = 1; step <= 6; step++) {
+            record(history, step, step * 10);
+        }
+        assertArrayEquals(new int[]{3, 30, 4, 40, 5, 50, 6, 60}, history.toArray());
+
+        FlowHistory restored = new FlowHistory(topology, 2);
+        restored.restore(history.toArray());
+        assertArrayEquals(new int[]{5, 50, 6, 60}, restored.toArray());
+        assertEquals(5.5, restored.getAverage(0));
+    }
+
+    @Test
+    void leavesMissingSamplesOutOfTheAverage() {
+        FlowHistory history = new FlowHistory(topology, 2);
+        record(history, 4, FlowHistory.MISSING);
+        record(history, 6, 10);
+        assertEquals(5.0, history.getAverage(0));
+        assertEquals(10.0, history.getAverage(1));
+
+        // Evicting the missing sample does not touch the sum
+        record(history, 8, 20);
+        assertEquals(15.0, history.getAverage(1));
+        record(history, 8, FlowHistory.MISSING);
+        record(history, 8, FlowHistory.MISSING);
+        assertEquals(0, history.getAverage(1));
+    }
+
+    private void record(FlowHistory history, int north, int south) {
+        history.record(0, north);
+        history.record(1, south);
+        history.commit();
+    }
+}
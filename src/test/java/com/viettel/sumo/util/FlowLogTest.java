@@ -0,0 +1,85 @@
+package com.viettel.sumo.util;
+
+import com.viettel.sumo.model.IntersectionTopology;
+import com.viettel.sumo.model.SignalProgram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FlowLogTest {
+
+    @TempDir
+    Path directory;
+
+    private final FlowHistory north = history("C", List.of("N2C_0", "N2C_1"), 60);
+    private final FlowHistory south = history("S", List.of("S2C_0"), 30);
+
+    @Test
+    void readsBackStepsAndDecisionsAcrossRegions() throws IOException {
+        Path path = directory.resolve("run" + FlowLog.FILE_SUFFIX);
+        // Regions smaller than a few records force remapping while writing and reading
+        try (FlowLogWriter writer = new FlowLogWriter(path, 64)) {
+            writer.writeLayout(1.0, List.of(north, south));
+            for (int t = 1; t <= 100; t++) {
+                writer.beginStep();
+                writer.count(t);
+                writer.count(2 * t);
+                writer.count(70_000);
+                writer.endStep(t);
+            }
+            writer.writeDecision(100, "S", 80.5, 0.4, new int[]{0, 30, 40}, 1, 2);
+            writer.writeDecision(100, "unknown", 80.5, 0.4, new int[]{30, 40}, 0, 2);
+        }
+
+        try (FlowLogReader reader = new FlowLogReader(path, 64)) {
+            assertEquals(FlowLog.LAYOUT, reader.next());
+            assertEquals(List.of("C", "S"), reader.getLayout().sumoIds());
+            assertEquals(List.of("N2C_0", "N2C_1"), reader.getLayout().lanes().get(0));
+            assertEquals(List.of(60, 30), reader.getLayout().historyCapacities());
+
+            for (int t = 1; t <= 100; t++) {
+                assertEquals(FlowLog.STEP, reader.next());
+                assertEquals(t, reader.getTime());
+                assertArrayEquals(new int[]{t, 2 * t, 0xFFFE}, reader.getCounts());
+            }
+
+            assertEquals(FlowLog.DECISION, reader.next());
+            assertEquals(1, reader.getDecisionIntersection());
+            assertEquals(80.5, reader.getDecisionCycle());
+            assertEquals(2, reader.getDecisionStageCount());
+            assertEquals(40, reader.getDecisionGreenTime(1));
+            assertEquals(FlowLog.END, reader.next());
+        }
+    }
+
+    @Test
+    void padsUnwrittenCountsAndKeepsMissingOnes() throws IOException {
+        Path path = directory.resolve("partial" + FlowLog.FILE_SUFFIX);
+        try (FlowLogWriter writer = new FlowLogWriter(path, 1 << 16)) {
+            writer.writeLayout(1.0, List.of(north, south));
+            writer.beginStep();
+            writer.count(5);
+            writer.count(FlowHistory.MISSING);
+            writer.endStep(1);
+        }
+
+        try (FlowLogReader reader = new FlowLogReader(path, 1 << 16)) {
+            reader.next();
+            assertEquals(FlowLog.STEP, reader.next());
+            assertArrayEquals(new int[]{5, FlowHistory.MISSING, 0}, reader.getCounts());
+            assertEquals(FlowLog.END, reader.next());
+        }
+    }
+
+    private static FlowHistory history(String sumoId, List<String> lanes, int capacity) {
+        IntersectionTopology topology = new IntersectionTopology(
+                sumoId, lanes, new int[lanes.size()][0], 0, new SignalProgram("0", 0, List.of()));
+        return new FlowHistory(topology, capacity);
+    }
+}
@@ -0,0 +1,123 @@
+package com.viettel.sumo.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viettel.sumo.backend.SyntheticSimulationBackend;
+import com.viettel.sumo.config.RecordingConfig;
+import com.viettel.sumo.config.SumoConfig;
+import com.viettel.sumo.config.SyntheticConfig;
+import com.viettel.sumo.config.WebsterConfig;
+import com.viettel.sumo.model.IntersectionConfiguration;
+import com.viettel.sumo.model.IntersectionKpisDTO;
+import com.viettel.sumo.model.IntersectionTopology;
+import com.viettel.sumo.model.KpiReportDTO;
+import com.viettel.sumo.model.SignalProgram;
+import com.viettel.sumo.model.SimulationBackendType;
+import com.viettel.sumo.model.TrafficControlMode;
+import com.viettel.sumo.service.SimulationSession;
+import com.viettel.sumo.service.SumoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KpiAccumulatorTest {
+
+    private final IntersectionTopology topology = new IntersectionTopology(
+            "C", List.of("N2C_0", "N2C_1", "S2C_0"), new int[][]{{0}, {1}, {2}}, 3,
+            new SignalProgram("0", 0, List.of()));
+
+    @Test
+    void aggregatesLanesIntoApproachesAndKeepsTotalsOnRebind() {
+        KpiAccumulator kpis = new KpiAccumulator(0.5);
+        // S2C_0 has a loop at the stop line, the north lanes are 100 m long
+        String[] detectors = {null, null, "e1_S2C_0"};
+        kpis.bind(List.of(new FlowHistory(topology, 4)), detectors, lane -> 100);
+
+        kpis.record(0, 2, 4, 10);
+        kpis.record(1, 1, 2, 0);
+        kpis.record(2, 3, 1, 99);
+        kpis.commit();
+        kpis.record(0, 0, 0, 0);
+        kpis.record(1, 0, 0, 0);
+        kpis.record(2, 1, 2, 0);
+        kpis.commit();
+
+        KpiReportDTO report = kpis.report(null, TrafficControlMode.ADAPTIVE_MODE, 1.0);
+        assertEquals(2, report.getSteps());
+        assertEquals(3.5, report.getWaitingTime());
+        // 4 vehicles at 10 m/s cover 20 m of the 100 m lane in half a second, plus 3 loop entries
+        assertEquals(3.2, report.getVehiclesServed(), 1e-9);
+
+        IntersectionKpisDTO intersection = report.getIntersections().get(0);
+        assertEquals(6, intersection.getMaxHaltingVehicles());
+        assertEquals(3.5, intersection.getMeanHaltingVehicles());
+        IntersectionKpisDTO.ApproachKpis north = intersection.getApproaches().get(0);
+        assertEquals("N2C", north.getEdge());
+        assertEquals(2, north.getLanes());
+        assertFalse(north.isMeasured());
+        assertEquals(3, north.getMaxHaltingVehicles());
+        assertEquals(1.5 / 0.2, north.getMeanDelay(), 1e-9);
+        IntersectionKpisDTO.ApproachKpis south = intersection.getApproaches().get(1);
+        assertTrue(south.isMeasured());
+        assertEquals(3.0, south.getVehiclesServed());
+        assertEquals(3, south.getMaxHaltingVehicles());
+
+        // Rebinding the same light keeps its window, a reset starts a new one
+        kpis.bind(List.of(new FlowHistory(topology, 8)), detectors, lane -> {
+            throw new AssertionError("Lane lengths are cached");
+        });
+        assertEquals(3.2, kpis.report("C", null, 1.0).getVehiclesServed(), 1e-9);
+        assertEquals(List.of(), kpis.report("X", null, 1.0).getIntersections());
+        kpis.reset(1.0);
+        assertEquals(0, kpis.report(null, null, 1.0).getIntersections().get(0).getMaxHaltingVehicles());
+        assertEquals(0, kpis.getMeanDelay());
+    }
+
+    @Test
+    void lanesWithoutLengthServeNothing() {
+        KpiAccumulator kpis = new KpiAccumulator(1.0);
+        kpis.bind(List.of(new FlowHistory(topology, 4)), new String[3], lane -> lane.equals("S2C_0") ? 0 : 50);
+
+        kpis.record(0, 0, 5, 10);
+        kpis.record(1, 0, 0, 0);
+        kpis.record(2, 2, 8, 10);
+        kpis.commit();
+
+        // Only the north lane with a known length contributes; S2C_0 neither counts its vehicles nor divides by 0
+        assertEquals(1.0, kpis.getVehiclesServed(), 1e-9);
+        assertEquals(2.0, kpis.getWaitingTime());
+    }
+
+    @Test
+    void estimatedThroughputMatchesSyntheticDepartures() {
+        SyntheticConfig syntheticConfig = new SyntheticConfig();
+        syntheticConfig.setIntersections(4);
+        syntheticConfig.setApproaches(2);
+        SumoService sumoService = new SumoService(new SumoConfig(), new SumoDataConverter(new WebsterConfig()),
+                new ObjectMapper(), new RecordingConfig());
+        Map<String, IntersectionConfiguration> configs =
+                SyntheticSimulationBackend.intersectionConfigurations(syntheticConfig);
+        SimulationSession session = new SimulationSession("kpis", null, null, false,
+                SimulationBackendType.SYNTHETIC, new SyntheticSimulationBackend(syntheticConfig),
+                configs, sumoService.compileIntersectionPlans(configs), 1.0, 0, new SimpleMeterRegistry());
+        sumoService.startSimulation(session);
+
+        long departed = 0;
+        int lastDeparted = 0;
+        for (int t = 0; t < 300; t++) {
+            sumoService.stepSimulation(session);
+            lastDeparted = session.getBackend().getArrivedNumber();
+            departed += lastDeparted;
+        }
+
+        // A step collects the counts of the previous one, so the departures of the last step are not served yet
+        KpiAccumulator kpis = session.getKpis();
+        assertTrue(departed > 0);
+        assertEquals(departed - lastDeparted, kpis.getVehiclesServed(), 1e-6);
+        assertEquals(session.getRunStatistics().snapshot(300, 1.0).getHaltedVehicleSeconds(), kpis.getWaitingTime());
+        assertEquals(4, kpis.report(null, null, 300).getIntersections().size());
+    }
+}
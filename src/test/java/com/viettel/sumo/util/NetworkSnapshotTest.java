@@ -0,0 +1,66 @@
+package com.viettel.sumo.util;
+
+import com.viettel.sumo.model.IntersectionTopology;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkSnapshotTest {
+    private static final Path SUMO_CONFIG = Path.of("sumo/PVB/osm.sumocfg");
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    void readsTrafficLightTopologyFromTheNetwork() throws IOException {
+        Path netFile = NetworkReader.resolveNetFile(SUMO_CONFIG);
+        assertEquals("osm.net.xml", netFile.getFileName().toString());
+
+        NetworkSnapshot network = NetworkReader.read(netFile, "test");
+        IntersectionTopology topology = network.getTrafficLights().get("C");
+        assertNotNull(topology);
+        assertEquals("traffic_light", network.getJunctions().get("C"));
+        assertTrue(network.hasLane("N2C_2"));
+        assertFalse(network.getLanes().stream().anyMatch(lane -> lane.startsWith(":")));
+
+        // Lanes are ordered by their first controlled link, as TraCI reports them
+        assertEquals(List.of("E2W_0", "S2C_0", "S2C_1", "S2C_2", "W2C_0", "N2C_0", "N2C_1", "N2C_2"),
+                topology.getIncomingLanes());
+        assertArrayEquals(new int[]{13, 14}, topology.getLinkIndices(topology.getLaneIndex("N2C_0")));
+        assertEquals(20, topology.getLinkCount());
+        assertEquals("0", topology.getProgramId());
+        assertEquals(9, topology.getPhaseCount());
+        assertEquals(3, topology.getProgram().getGreenPhaseCount());
+    }
+
+    @Test
+    void storesSnapshotUnderTheHashOfTheNetwork() throws IOException {
+        Path netFile = NetworkReader.resolveNetFile(SUMO_CONFIG);
+        NetworkSnapshot parsed = NetworkSnapshot.load(netFile, cacheDirectory);
+        Path stored = cacheDirectory.resolve(NetworkSnapshot.hash(netFile) + ".topo");
+        assertTrue(Files.isRegularFile(stored));
+        assertTrue(Files.size(stored) < Files.size(netFile));
+
+        NetworkSnapshot loaded = NetworkSnapshot.read(stored);
+        assertEquals(parsed.getHash(), loaded.getHash());
+        assertEquals(parsed.getJunctions(), loaded.getJunctions());
+        assertEquals(parsed.getLanes(), loaded.getLanes());
+        IntersectionTopology expected = parsed.getTrafficLights().get("C");
+        IntersectionTopology actual = loaded.getTrafficLights().get("C");
+        assertEquals(expected.getIncomingLanes(), actual.getIncomingLanes());
+        for (int i = 0; i < expected.getLaneCount(); i++) {
+            assertArrayEquals(expected.getLinkIndices(i), actual.getLinkIndices(i));
+        }
+        assertEquals(expected.getLinkCount(), actual.getLinkCount());
+        assertEquals(expected.getProgram().getPhases().get(0).state(), actual.getProgram().getPhases().get(0).state());
+
+        Files.write(stored, new byte[]{1, 2, 3});
+        assertEquals(parsed.getLanes(), NetworkSnapshot.load(netFile, cacheDirectory).getLanes());
+    }
+}
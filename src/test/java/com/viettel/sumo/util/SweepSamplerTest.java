@@ -0,0 +1,89 @@
+package com.viettel.sumo.util;
+
+import com.viettel.sumo.model.SweepRequest;
+import com.viettel.sumo.model.SweepSamplingMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SweepSamplerTest {
+
+    @Test
+    void gridExpandsEveryCombination() {
+        SweepRequest request = new SweepRequest();
+        request.getParameters().put("webster.baseLostTime", values(10.0, 15.0, 20.0));
+        request.getParameters().put("webster.defaultSaturationVolume", values(1800.0, 1900.0));
+
+        List<Map<String, Double>> runs = SweepSampler.sample(request, 100);
+
+        assertEquals(6, runs.size());
+        assertEquals(Map.of("webster.baseLostTime", 10.0, "webster.defaultSaturationVolume", 1800.0), runs.get(0));
+        assertEquals(Map.of("webster.baseLostTime", 20.0, "webster.defaultSaturationVolume", 1900.0), runs.get(5));
+        assertThrows(IllegalArgumentException.class, () -> SweepSampler.sample(request, 5));
+    }
+
+    @Test
+    void latinHypercubePlacesOneSamplePerStratum() {
+        SweepRequest request = new SweepRequest();
+        request.setSampling(SweepSamplingMode.LATIN_HYPERCUBE);
+        request.setSamples(10);
+        request.setSeed(42L);
+        request.getParameters().put("webster.defaultSaturationVolume", range(1000, 2000));
+        request.getParameters().put("sumo.optimizationInterval", range(1, 100));
+
+        List<Map<String, Double>> runs = SweepSampler.sample(request, 100);
+
+        boolean[] covered = new boolean[10];
+        for (Map<String, Double> run : runs) {
+            double volume = run.get("webster.defaultSaturationVolume");
+            covered[(int) ((volume - 1000) / 100)] = true;
+            double interval = run.get("sumo.optimizationInterval");
+            assertEquals(Math.rint(interval), interval);
+        }
+        for (boolean stratum : covered) {
+            assertTrue(stratum);
+        }
+        assertEquals(runs, SweepSampler.sample(request, 100));
+    }
+
+    @Test
+    void rejectsUnknownParameters() {
+        SweepRequest request = new SweepRequest();
+        request.getParameters().put("server.port", values(8080.0));
+
+        assertThrows(IllegalArgumentException.class, () -> SweepSampler.sample(request, 100));
+    }
+
+    @Test
+    void rejectsValuesRunsCannotUse() {
+        SweepRequest grid = new SweepRequest();
+        grid.getParameters().put("sumo.optimizationInterval", values(60.0, 0.0));
+        assertThrows(IllegalArgumentException.class, () -> SweepSampler.sample(grid, 100));
+
+        SweepRequest sampled = new SweepRequest();
+        sampled.setSampling(SweepSamplingMode.RANDOM);
+        sampled.setSamples(10);
+        sampled.getParameters().put("webster.baseLostTime", range(-5, 10));
+        assertThrows(IllegalArgumentException.class, () -> SweepSampler.sample(sampled, 100));
+        // An interval range rounding down to 0 is rejected whatever the draws
+        sampled.getParameters().put("webster.baseLostTime", range(0, 10));
+        sampled.getParameters().put("sumo.optimizationInterval", range(0.4, 30));
+        assertThrows(IllegalArgumentException.class, () -> SweepSampler.sample(sampled, 100));
+    }
+
+    private static SweepRequest.Range values(Double... values) {
+        SweepRequest.Range range = new SweepRequest.Range();
+        range.setValues(List.of(values));
+        return range;
+    }
+
+    private static SweepRequest.Range range(double min, double max) {
+        SweepRequest.Range range = new SweepRequest.Range();
+        range.setMin(min);
+        range.setMax(max);
+        return range;
+    }
+}
@@ -0,0 +1,61 @@
+package com.viettel.sumo.util;
+
+import com.viettel.sumo.model.TimeSeriesAggregation;
+import com.viettel.sumo.model.TimeSeriesDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TimeSeriesTest {
+
+    @Test
+    void aggregatesRawSamplesIntoCoarserBuckets() {
+        TimeSeries series = new TimeSeries("lane.vehicles:N2C_0", new int[]{1, 60}, new int[]{300, 60});
+        for (int t = 0; t < 120; t++) {
+            series.add(t, t < 60 ? 2 : 4);
+        }
+
+        TimeSeriesDTO mean = series.query(0, 119, 60, TimeSeriesAggregation.MEAN);
+        assertEquals(60, mean.getResolution());
+        assertArrayEquals(new double[]{0, 60}, mean.getTimes());
+        assertArrayEquals(new double[]{2, 4}, mean.getValues());
+
+        TimeSeriesDTO sum = series.query(0, 119, 30, TimeSeriesAggregation.SUM);
+        assertArrayEquals(new double[]{60, 60, 120, 120}, sum.getValues());
+    }
+
+    @Test
+    void fallsBackToCoarserTierOnceRawSamplesAreEvicted() {
+        TimeSeries series = new TimeSeries("lane.vehicles:N2C_0", new int[]{1, 60}, new int[]{60, 60});
+        for (int t = 0; t < 600; t++) {
+            series.add(t, t);
+        }
+
+        // The raw tier only holds the last minute, so older ranges come from the 60 s tier
+        TimeSeriesDTO recent = series.query(590, 599, 0, TimeSeriesAggregation.MAX);
+        assertEquals(1, recent.getResolution());
+        assertEquals(10, recent.getValues().length);
+
+        TimeSeriesDTO old = series.query(0, 599, 0, TimeSeriesAggregation.MAX);
+        assertEquals(60, old.getResolution());
+        assertEquals(10, old.getValues().length);
+        assertEquals(59, old.getValues()[0]);
+        assertEquals(599, old.getValues()[9]);
+    }
+
+    @Test
+    void storeCapsTheNumberOfSeries() {
+        TimeSeriesStore store = new TimeSeriesStore(new int[]{1, 60}, new int[]{10, 10}, 2);
+        store.series(TimeSeriesStore.LANE_VEHICLES, "A");
+        store.series(TimeSeriesStore.LANE_VEHICLES, "B");
+
+        assertNull(store.series(TimeSeriesStore.LANE_VEHICLES, "C"));
+        assertEquals(2, store.names("lane.vehicles:").size());
+        assertEquals(2 * 20 * 16, store.memoryBytes());
+        assertThrows(IllegalArgumentException.class,
+                () -> store.get("lane.vehicles:A").query(0, 100_000, 1, TimeSeriesAggregation.MEAN));
+    }
+}